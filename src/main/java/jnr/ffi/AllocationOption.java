@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+/**
+ * Options that control how large blocks of native memory are allocated.
+ *
+ * <p>All options are best effort: if the operating system cannot honour one, the memory
+ * is allocated without it.
+ *
+ * @see Memory#allocateDirect(Runtime, long, java.util.Map)
+ */
+public enum AllocationOption {
+    /**
+     * Ask the kernel to back the memory with transparent huge pages.  The memory is aligned
+     * to a huge page boundary.  The value is a {@link Boolean}.
+     */
+    TransparentHugePages,
+
+    /**
+     * Back the memory with pages from the reserved huge page pool (MAP_HUGETLB).  If the pool is
+     * empty, transparent huge pages are used instead.  The value is a {@link Boolean}.
+     */
+    HugePages,
+
+    /**
+     * Bind the memory to a NUMA node.  The value is an {@link Integer} node number.
+     * Requires libnuma.
+     */
+    NumaNode;
+}
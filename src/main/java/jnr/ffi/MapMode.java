@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+/**
+ * The access mode of a memory-mapped file region.
+ *
+ * @see Memory#map(Runtime, java.io.File, MapMode, long, long)
+ */
+public enum MapMode {
+    /**
+     * The region can only be read.  Writing to it will crash the process.
+     */
+    READ_ONLY,
+    /**
+     * The region can be read and written, and changes are written back to the file.
+     */
+    READ_WRITE,
+    /**
+     * The region can be read and written, but changes are private to this process
+     * and never written back to the file (copy-on-write).
+     */
+    PRIVATE;
+}
@@ -18,7 +18,11 @@
 
 package jnr.ffi;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Map;
 
 
 /**
@@ -96,6 +100,11 @@ public final class Memory {
      * accessor.  The memory returned by this method should not be passed to native methods
      * that store the address for later use, as it may change each time it is passed to native code.
      *
+     * <p>If a temporary memory scope is open on the current thread, the memory is carved
+     * from the thread's temporary memory stack, and is released when the scope is closed.
+     * Otherwise it is carved from a block of the thread's temporary memory, which is released
+     * once the memory allocated from it is no longer referenced.
+     *
      * @param type The native type to allocate memory for.
      *
      * @return a {@code Pointer} instance that can access the memory.
@@ -109,6 +118,11 @@ public final class Memory {
      * accessor.  The memory returned by this method should not be passed to native methods
      * that store the address for later use, as it may change each time it is passed to native code.
      *
+     * <p>If a temporary memory scope is open on the current thread, the memory is carved
+     * from the thread's temporary memory stack, and is released when the scope is closed.
+     * Otherwise it is carved from a block of the thread's temporary memory, which is released
+     * once the memory allocated from it is no longer referenced.
+     *
      * @param type The native type to allocate memory for.
      * @param clear Whether the memory contents should be cleared, or left as
      * random data.
@@ -118,4 +132,198 @@ public final class Memory {
     public static final Pointer allocateTemporary(Runtime runtime, NativeType type, boolean clear) {
         return runtime.getMemoryManager().allocateTemporary(runtime.findType(type).size(), clear);
     }
+
+    /**
+     * Creates a new {@link MemoryArena} that native memory blocks can be allocated from,
+     * and then all freed at once when the arena is closed.
+     *
+     * @return a new {@code MemoryArena} instance.
+     */
+    public static final MemoryArena newArena(Runtime runtime) {
+        return runtime.getMemoryManager().newArena();
+    }
+
+    /**
+     * Creates a new {@link MemoryArena} that native memory blocks can be allocated from,
+     * and then all freed at once when the arena is closed.
+     *
+     * @param chunkSize The size in bytes of each native memory chunk the arena allocates.
+     *
+     * @return a new {@code MemoryArena} instance.
+     */
+    public static final MemoryArena newArena(Runtime runtime, int chunkSize) {
+        return runtime.getMemoryManager().newArena(chunkSize);
+    }
+
+    /**
+     * Allocates a large block of native memory directly from the operating system, and wraps
+     * it in a {@link Pointer} accessor.
+     *
+     * <p>This is intended for large, long-lived working sets, which can be backed by huge pages
+     * to reduce TLB misses, or bound to a NUMA node to keep memory local to the threads using it.
+     * The memory is always zeroed, and is rounded up to a whole number of pages, so it should
+     * not be used for small allocations.
+     *
+     * @param size The size in bytes of memory to allocate.
+     * @param options How the memory should be allocated.  Options the platform does not
+     * support are ignored.
+     *
+     * @return a {@code Pointer} instance that can access the memory.
+     * @see AllocationOption
+     */
+    public static final Pointer allocateDirect(Runtime runtime, long size, Map<AllocationOption, ?> options) {
+        return runtime.getMemoryManager().allocateDirect(size, options);
+    }
+
+    /**
+     * Allocates a new block of transient native memory and wraps it in a {@link Pointer}
+     * accessor.
+     *
+     * @param size The size in bytes of memory to allocate.
+     * @param clear Whether the memory contents should be cleared, or left as
+     * random data.
+     *
+     * @return a {@code Pointer} instance that can access the memory.
+     * @see #allocateTemporary(Runtime, NativeType, boolean)
+     */
+    public static final Pointer allocateTemporary(Runtime runtime, int size, boolean clear) {
+        return runtime.getMemoryManager().allocateTemporary(size, clear);
+    }
+
+    /**
+     * Opens a new scope on the current thread's temporary memory stack.
+     *
+     * <p>Until the scope is closed, all temporary memory allocated on this thread is carved
+     * from the stack with a simple pointer bump, and closing the scope releases it all at once.
+     * Scopes must be closed in the reverse order they were opened, typically in a
+     * {@code finally} block.
+     *
+     * @return a {@link MemoryArena} representing the scope.
+     */
+    public static final MemoryArena openTemporaryScope(Runtime runtime) {
+        return runtime.getMemoryManager().openTemporaryScope();
+    }
+
+    /**
+     * Creates a view of direct memory which does not check that accesses are within its bounds.
+     *
+     * <p>Bounded pointers, such as those returned by {@link #allocateDirect(Runtime, int)} and
+     * {@link Pointer#slice(long, long)}, check every access and then delegate to the memory they
+     * are a view of.  An unchecked view reads and writes the memory directly, which roughly halves
+     * the cost of each access in a tight loop, but an out of bounds access will corrupt memory or
+     * crash instead of throwing an exception.  Slices of an unchecked view are also unchecked.
+     *
+     * <p>Setting the {@code jnr.ffi.memory.unchecked} system property to {@code true} makes all
+     * direct memory unchecked.
+     *
+     * @param ptr The memory to create a view of.
+     *
+     * @return an unchecked {@code Pointer} to the same memory, or {@code ptr} itself if it is not direct.
+     */
+    public static final Pointer unchecked(Pointer ptr) {
+        return ptr.getRuntime().getMemoryManager().unchecked(ptr);
+    }
+
+    /**
+     * Creates a new {@link MemoryCursor} that can be moved around native memory without
+     * allocating a new {@code Pointer} for every address it visits.
+     *
+     * @param address The native address the cursor starts at.
+     *
+     * @return a new {@code MemoryCursor} instance.
+     */
+    public static final MemoryCursor newCursor(Runtime runtime, long address) {
+        return runtime.getMemoryManager().newCursor(address);
+    }
+
+    /**
+     * Immediately frees a block of native memory allocated by one of the
+     * {@code allocateDirect} methods, instead of waiting for it to be garbage collected.
+     *
+     * @param ptr The memory to free.  It, and any slices of it, must not be accessed after this call.
+     * @throws IllegalArgumentException if {@code ptr} is a slice of the memory returned by {@code allocateDirect}.
+     */
+    public static final void dispose(Pointer ptr) {
+        ptr.getRuntime().getMemoryManager().dispose(ptr);
+    }
+
+    /**
+     * Maps the whole of a file into memory.
+     *
+     * @param file The file to map.
+     * @param mode How the memory is to be accessed.
+     *
+     * @return a direct {@code Pointer} instance bounded to the mapped file.
+     * @throws IOException if the file could not be opened or mapped.
+     * @see #map(Runtime, File, MapMode, long, long)
+     */
+    public static final Pointer map(Runtime runtime, File file, MapMode mode) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+
+        return runtime.getMemoryManager().map(file, mode, 0, file.length());
+    }
+
+    /**
+     * Maps a region of a file into memory.
+     *
+     * <p>The memory is accessed directly, without copying, and remains mapped until it is
+     * explicitly unmapped with {@link #unmap(Pointer)}, or garbage collected.  The region does not need
+     * to start on a page boundary.
+     *
+     * @param file The file to map.
+     * @param mode How the memory is to be accessed.
+     * @param offset The offset in the file of the start of the region.
+     * @param length The length in bytes of the region.
+     *
+     * @return a direct {@code Pointer} instance bounded to the mapped region.
+     * @throws IOException if the file could not be opened or mapped.
+     */
+    public static final Pointer map(Runtime runtime, File file, MapMode mode, long offset, long length) throws IOException {
+        return runtime.getMemoryManager().map(file, mode, offset, length);
+    }
+
+    /**
+     * Immediately unmaps memory mapped by one of the {@code map} methods.
+     *
+     * @param ptr The mapped memory.  It, and any slices of it, must not be accessed after this call.
+     * @throws IllegalArgumentException if {@code ptr} is not mapped memory, or is a slice of it.
+     */
+    public static final void unmap(Pointer ptr) {
+        ptr.getRuntime().getMemoryManager().unmap(ptr);
+    }
+
+    /**
+     * Advises the operating system how mapped memory will be accessed.
+     *
+     * @param ptr The mapped memory, or a slice of it to limit the advice to that range.
+     * @param advice The expected access pattern.
+     * @return true if the operating system accepted the advice.  The advice is only a hint, so
+     * a failure does not affect the memory.
+     */
+    public static final boolean advise(Pointer ptr, MemoryAdvice advice) {
+        return ptr.getRuntime().getMemoryManager().advise(ptr, advice);
+    }
+
+    /**
+     * Writes changes made to mapped memory back to the file, and waits for them to complete.
+     *
+     * @param ptr The mapped memory, or a slice of it to limit the write to that range.
+     * @throws IOException if the changes could not be written.
+     */
+    public static final void sync(Pointer ptr) throws IOException {
+        ptr.getRuntime().getMemoryManager().sync(ptr, false);
+    }
+
+    /**
+     * Writes changes made to mapped memory back to the file.
+     *
+     * @param ptr The mapped memory, or a slice of it to limit the write to that range.
+     * @param async Whether to schedule the write and return immediately, instead of waiting for it.
+     * @throws IOException if the changes could not be written.
+     */
+    public static final void sync(Pointer ptr, boolean async) throws IOException {
+        ptr.getRuntime().getMemoryManager().sync(ptr, async);
+    }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+/**
+ * Hints to the operating system about how a region of mapped memory will be accessed.
+ *
+ * @see Memory#advise(Pointer, MemoryAdvice)
+ */
+public enum MemoryAdvice {
+    /**
+     * No special treatment.
+     */
+    NORMAL,
+    /**
+     * Pages will be accessed in random order, so read-ahead is of little use.
+     */
+    RANDOM,
+    /**
+     * Pages will be accessed in sequential order, so they can be read ahead aggressively.
+     */
+    SEQUENTIAL,
+    /**
+     * Pages will be accessed soon, so they should be read in now.
+     */
+    WILL_NEED,
+    /**
+     * Pages will not be accessed soon, so they can be dropped from memory.
+     */
+    DONT_NEED;
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import java.io.Closeable;
+
+/**
+ * A region of native memory from which many small blocks can be allocated, and
+ * then all released at once.
+ *
+ * <p>An arena allocates native memory in large chunks, and hands out slices of
+ * those chunks to callers.  Allocating from an arena is just a pointer bump, and
+ * closing the arena frees every chunk in one go, so request-scoped native memory
+ * costs a single malloc/free pair instead of one per allocation.
+ *
+ * <p>Memory allocated from an arena is <b>not</b> freed by the garbage collector;
+ * the arena must be explicitly closed, after which all {@code Pointer} instances
+ * obtained from it are invalid and must not be accessed.
+ *
+ * <p>Arena instances are not thread-safe.
+ */
+public abstract class MemoryArena implements Closeable {
+
+    /**
+     * Allocates a new block of native memory from this arena.
+     *
+     * @param size The size in bytes of memory to allocate.
+     *
+     * @return a {@code Pointer} instance that can access the memory.
+     */
+    public abstract Pointer allocate(int size);
+
+    /**
+     * Allocates a new block of native memory from this arena.
+     *
+     * @param size The size in bytes of memory to allocate.
+     * @param clear Whether the memory contents should be cleared, or left as
+     * random data.
+     *
+     * @return a {@code Pointer} instance that can access the memory.
+     */
+    public abstract Pointer allocate(int size, boolean clear);
+
+    /**
+     * Allocates a new block of native memory from this arena, aligned to a specific boundary.
+     *
+     * @param size The size in bytes of memory to allocate.
+     * @param alignment The alignment of the start of the memory block.  Must be a power of two.
+     * @param clear Whether the memory contents should be cleared, or left as
+     * random data.
+     *
+     * @return a {@code Pointer} instance that can access the memory.
+     */
+    public abstract Pointer allocate(int size, int alignment, boolean clear);
+
+    /**
+     * Gets the total number of bytes of native memory currently held by this arena.
+     *
+     * @return the number of bytes of native memory allocated by this arena.
+     */
+    public abstract long capacity();
+
+    /**
+     * Releases all memory allocated from this arena, but keeps the most recently
+     * allocated chunk of native memory around, so the arena can be re-used.
+     */
+    public abstract void reset();
+
+    /**
+     * Frees all native memory held by this arena.
+     */
+    public abstract void close();
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+/**
+ * A view of native memory that can be re-pointed at a different address.
+ *
+ * <p>Reading a pointer out of native memory with {@link Pointer#getPointer(long)} creates a
+ * new {@code Pointer} object every time, so walking a linked list or a table of pointers
+ * allocates one object per element.  A cursor instead moves along the data structure
+ * in place, and its memory is read and written through the {@code Pointer} returned by
+ * {@link #pointer()}, which moves with it:
+ *
+ * <pre>
+ *     MemoryCursor node = Memory.newCursor(runtime, head.address());
+ *     Pointer p = node.pointer();
+ *     while (!node.isNull()) {
+ *         total += p.getInt(VALUE_OFFSET);
+ *         node.follow(NEXT_OFFSET);
+ *     }
+ * </pre>
+ *
+ * <p>Because the address can change, the cursor's pointer should not be stored or handed to code that
+ * expects a {@code Pointer} to stay put; use {@link #toPointer()} to capture the current position.
+ * Slices of the cursor's pointer are fixed at the address the cursor had when they were created.
+ *
+ * <p>Cursors are not thread-safe.
+ */
+public interface MemoryCursor {
+
+    /**
+     * Gets the {@code Pointer} used to access the memory at this cursor's current address.
+     * The same object is returned every time, and it moves when the cursor does.
+     *
+     * @return a {@code Pointer} that follows this cursor.
+     */
+    Pointer pointer();
+
+    /**
+     * Gets the address this cursor is currently at.
+     *
+     * @return the native memory address.
+     */
+    long address();
+
+    /**
+     * Moves this cursor to a new address.
+     *
+     * @param address the native memory address.
+     * @return this cursor.
+     */
+    MemoryCursor bind(long address);
+
+    /**
+     * Moves this cursor to the address of a direct {@code Pointer}.
+     *
+     * @param ptr the pointer to move to, or {@code null} to make this cursor null.
+     * @return this cursor.
+     * @throws IllegalArgumentException if {@code ptr} is not direct memory.
+     */
+    MemoryCursor bind(Pointer ptr);
+
+    /**
+     * Moves this cursor to the address stored at an offset from its current address, e.g.
+     * to the next element of a linked list.
+     *
+     * @param offset the offset of the pointer to follow.
+     * @return true if the new address is not {@code NULL}.
+     */
+    boolean follow(long offset);
+
+    /**
+     * Moves this cursor by a number of bytes, e.g. to the next element of an array.
+     *
+     * @param delta the number of bytes to move by.
+     * @return this cursor.
+     */
+    MemoryCursor advance(long delta);
+
+    /**
+     * Tests if this cursor is at the {@code NULL} address.
+     *
+     * @return true if the address is zero.
+     */
+    boolean isNull();
+
+    /**
+     * Creates a {@code Pointer} to the address this cursor is currently at, which does not
+     * move when the cursor does.
+     *
+     * @return a new {@code Pointer}, or {@code null} if this cursor is at the {@code NULL} address.
+     */
+    Pointer toPointer();
+}
@@ -426,6 +426,92 @@ abstract public class Pointer {
      */
     abstract public void put(long offset, double[] dst, int idx, int len);
 
+    /**
+     * Bulk get method for multiple native {@code long} values.
+     *
+     * This method reads multiple C {@code long} values of the platform width from consecutive
+     * addresses, beginning at the given offset, and stores them sign extended in an array.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be read.
+     * @param dst The array into which values are to be stored.
+     * @param idx the start index in the {@code dst} array to begin storing the values.
+     * @param len the number of values to be read.
+     */
+    public void getNativeLongs(long offset, long[] dst, int idx, int len) {
+        getWords(offset, dst, idx, len, getRuntime().longSize(), false);
+    }
+
+    /**
+     * Bulk put method for multiple native {@code long} values.
+     *
+     * This method writes multiple C {@code long} values of the platform width to consecutive
+     * addresses, beginning at the given offset, from an array.
+     *
+     * @param offset the offset from the start of the memory this {@code Pointer} represents at which the first value will be written.
+     * @param src the array to get values from.
+     * @param idx the start index in the {@code src} array to begin reading values.
+     * @param len the number of values to be written.
+     */
+    public void putNativeLongs(long offset, long[] src, int idx, int len) {
+        putWords(offset, src, idx, len, getRuntime().longSize());
+    }
+
+    /**
+     * Bulk get method for multiple native memory addresses.
+     *
+     * This method reads multiple addresses of the platform width from consecutive
+     * addresses, beginning at the given offset, and stores them in an array.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be read.
+     * @param dst The array into which values are to be stored.
+     * @param idx the start index in the {@code dst} array to begin storing the values.
+     * @param len the number of values to be read.
+     */
+    public void getAddresses(long offset, long[] dst, int idx, int len) {
+        getWords(offset, dst, idx, len, getRuntime().addressSize(), true);
+    }
+
+    /**
+     * Bulk put method for multiple native memory addresses.
+     *
+     * This method writes multiple addresses of the platform width to consecutive
+     * addresses, beginning at the given offset, from an array.
+     *
+     * @param offset the offset from the start of the memory this {@code Pointer} represents at which the first value will be written.
+     * @param src the array to get values from.
+     * @param idx the start index in the {@code src} array to begin reading values.
+     * @param len the number of values to be written.
+     */
+    public void putAddresses(long offset, long[] src, int idx, int len) {
+        putWords(offset, src, idx, len, getRuntime().addressSize());
+    }
+
+    private void getWords(long offset, long[] dst, int idx, int len, int size, boolean unsigned) {
+        if (size == 8) {
+            get(offset, dst, idx, len);
+
+        } else {
+            int[] tmp = new int[len];
+            get(offset, tmp, 0, len);
+            for (int i = 0; i < len; i++) {
+                dst[idx + i] = unsigned ? tmp[i] & 0xffffffffL : tmp[i];
+            }
+        }
+    }
+
+    private void putWords(long offset, long[] src, int idx, int len, int size) {
+        if (size == 8) {
+            put(offset, src, idx, len);
+
+        } else {
+            int[] tmp = new int[len];
+            for (int i = 0; i < len; i++) {
+                tmp[i] = (int) src[idx + i];
+            }
+            put(offset, tmp, 0, len);
+        }
+    }
+
     /**
      * Reads an {@code Pointer} value at the given offset.
      *
@@ -557,4 +643,217 @@ abstract public class Pointer {
      * @return the offset from the start of the search area (i.e. relative to the offset parameter), or -1 if not found.
      */
     abstract public int indexOf(long offset, byte value, int maxlen);
+
+    /*
+     * Atomic and volatile access.
+     *
+     * Implementations backed by native memory perform these with the processor's atomic
+     * instructions, so they interoperate with native code using the same memory.  The default
+     * implementations below serialize access with a lock, and are only atomic with respect to
+     * other callers of these methods from java.
+     */
+
+    private static final Object[] LOCKS = new Object[64];
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private Object lock(long offset) {
+        return LOCKS[(int) ((address() + offset) >>> 3) & (LOCKS.length - 1)];
+    }
+
+    /**
+     * Reads an {@code int} (32 bit) value at the given offset, with volatile semantics.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the value will be read.
+     * @return the {@code int} value contained in the memory at the offset.
+     */
+    public int getIntVolatile(long offset) {
+        synchronized (lock(offset)) {
+            return getInt(offset);
+        }
+    }
+
+    /**
+     * Writes an {@code int} (32 bit) value at the given offset, with volatile semantics.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the value will be written.
+     * @param value the {@code int} value to be written.
+     */
+    public void putIntVolatile(long offset, int value) {
+        synchronized (lock(offset)) {
+            putInt(offset, value);
+        }
+    }
+
+    /**
+     * Writes an {@code int} (32 bit) value at the given offset, ordered after all preceding
+     * writes but without waiting for it to become visible to other threads.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the value will be written.
+     * @param value the {@code int} value to be written.
+     */
+    public void putIntOrdered(long offset, int value) {
+        putIntVolatile(offset, value);
+    }
+
+    /**
+     * Atomically sets the {@code int} (32 bit) value at the given offset, if it currently holds
+     * the expected value.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents.
+     * @param expected the expected current value.
+     * @param value the new value.
+     * @return true if the value was updated.
+     */
+    public boolean compareAndSetInt(long offset, int expected, int value) {
+        synchronized (lock(offset)) {
+            if (getInt(offset) != expected) {
+                return false;
+            }
+            putInt(offset, value);
+            return true;
+        }
+    }
+
+    /**
+     * Atomically adds to the {@code int} (32 bit) value at the given offset.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents.
+     * @param delta the value to add.
+     * @return the previous value.
+     */
+    public int getAndAddInt(long offset, int delta) {
+        synchronized (lock(offset)) {
+            int value = getInt(offset);
+            putInt(offset, value + delta);
+            return value;
+        }
+    }
+
+    /**
+     * Reads a {@code long} (64 bit) value at the given offset, with volatile semantics.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the value will be read.
+     * @return the {@code long} value at the offset.
+     */
+    public long getLongLongVolatile(long offset) {
+        synchronized (lock(offset)) {
+            return getLongLong(offset);
+        }
+    }
+
+    /**
+     * Writes a {@code long} (64 bit) value at the given offset, with volatile semantics.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the value will be written.
+     * @param value the {@code long} value to be written.
+     */
+    public void putLongLongVolatile(long offset, long value) {
+        synchronized (lock(offset)) {
+            putLongLong(offset, value);
+        }
+    }
+
+    /**
+     * Writes a {@code long} (64 bit) value at the given offset, ordered after all preceding
+     * writes but without waiting for it to become visible to other threads.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the value will be written.
+     * @param value the {@code long} value to be written.
+     */
+    public void putLongLongOrdered(long offset, long value) {
+        putLongLongVolatile(offset, value);
+    }
+
+    /**
+     * Atomically sets the {@code long} (64 bit) value at the given offset, if it currently holds
+     * the expected value.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents.
+     * @param expected the expected current value.
+     * @param value the new value.
+     * @return true if the value was updated.
+     */
+    public boolean compareAndSetLongLong(long offset, long expected, long value) {
+        synchronized (lock(offset)) {
+            if (getLongLong(offset) != expected) {
+                return false;
+            }
+            putLongLong(offset, value);
+            return true;
+        }
+    }
+
+    /**
+     * Atomically adds to the {@code long} (64 bit) value at the given offset.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents.
+     * @param delta the value to add.
+     * @return the previous value.
+     */
+    public long getAndAddLongLong(long offset, long delta) {
+        synchronized (lock(offset)) {
+            long value = getLongLong(offset);
+            putLongLong(offset, value + delta);
+            return value;
+        }
+    }
+
+    /**
+     * Reads a native memory address at the given offset, with volatile semantics.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the value will be read.
+     * @return the native address at the offset.
+     */
+    public long getAddressVolatile(long offset) {
+        return getRuntime().addressSize() == 4
+                ? (long) getIntVolatile(offset) & 0xffffffffL : getLongLongVolatile(offset);
+    }
+
+    /**
+     * Writes a native memory address at the given offset, with volatile semantics.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the value will be written.
+     * @param value the native address to be written.
+     */
+    public void putAddressVolatile(long offset, long value) {
+        if (getRuntime().addressSize() == 4) {
+            putIntVolatile(offset, (int) value);
+        } else {
+            putLongLongVolatile(offset, value);
+        }
+    }
+
+    /**
+     * Writes a native memory address at the given offset, ordered after all preceding
+     * writes but without waiting for it to become visible to other threads.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the value will be written.
+     * @param value the native address to be written.
+     */
+    public void putAddressOrdered(long offset, long value) {
+        if (getRuntime().addressSize() == 4) {
+            putIntOrdered(offset, (int) value);
+        } else {
+            putLongLongOrdered(offset, value);
+        }
+    }
+
+    /**
+     * Atomically sets the native memory address at the given offset, if it currently holds
+     * the expected value.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents.
+     * @param expected the expected current address.
+     * @param value the new address.
+     * @return true if the value was updated.
+     */
+    public boolean compareAndSetAddress(long offset, long expected, long value) {
+        return getRuntime().addressSize() == 4
+                ? compareAndSetInt(offset, (int) expected, (int) value)
+                : compareAndSetLongLong(offset, expected, value);
+    }
 }
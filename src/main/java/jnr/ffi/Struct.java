@@ -27,15 +27,33 @@
 
 package jnr.ffi;
 
+import jnr.ffi.annotations.Direct;
 import jnr.ffi.provider.ParameterFlags;
 import jnr.ffi.util.EnumMapper;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Representation of C structures in java.
+ *
+ * <p>Each field of a {@code Struct} is an object bound to its struct instance, holding only its
+ * offset, so a struct costs one small object per field.  The field offsets are computed by the first
+ * instance of each struct class that is used, and taken as-is by later instances.  When allocating
+ * very many small structs, consider a {@link StructLayout}, whose fields are shared and access any
+ * {@link Pointer}.
+ *
+ * <p>Unless a {@link StructAllocator} is supplied, or the struct class is annotated with
+ * {@link Direct}, the memory of a struct is allocated on the java heap when it is first used.
  * 
  * <b>Note:</b> This class is not threadsafe.
  */
@@ -43,8 +61,77 @@ public abstract class Struct {
     static final Charset ASCII = Charset.forName("ASCII");
     static final Charset UTF8 = Charset.forName("UTF-8");
 
+    /**
+     * The field layout of a struct class, recorded by the first instance of the class to be used.
+     *
+     * <p>The offset of a field depends only on its type or size, any explicit offset, and the
+     * fields laid out before it.  So a later instance takes the recorded offsets for as long as
+     * its fields match the recorded ones, and lays out the rest itself from the first field that
+     * differs, e.g. an array sized by a constructor parameter.  Only the fields laid out before
+     * the struct is first used, or before an inner struct is added, are recorded.
+     */
+    static final class Layout {
+        private static volatile Map<Class, Layout> LAYOUTS = Collections.emptyMap();
+
+        /** Each field is recorded as its size and alignment in bits, requested offset, offset, and the struct size and alignment after it */
+        private static final int SIZE_BITS = 0, ALIGN_BITS = 1, REQUESTED = 2, OFFSET = 3, SIZE = 4, MIN_ALIGN = 5, STRIDE = 6;
+        /** The requested offset of a field laid out after the previous one */
+        static final int NEXT = Integer.MIN_VALUE;
+
+        final Runtime runtime;
+        private NativeType[] types = new NativeType[8];
+        private int[] fields = new int[8 * STRIDE];
+        int count;
+
+        Layout(Runtime runtime) {
+            this.runtime = runtime;
+        }
+
+        static Layout get(Class structClass) {
+            return LAYOUTS.get(structClass);
+        }
+
+        static synchronized void put(Class structClass, Layout layout) {
+            if (!LAYOUTS.containsKey(structClass)) {
+                Map<Class, Layout> m = new IdentityHashMap<Class, Layout>(LAYOUTS);
+                m.put(structClass, layout);
+                LAYOUTS = m;
+            }
+        }
+
+        final boolean matches(int index, NativeType type, int sizeBits, int alignBits, int requested) {
+            final int i = index * STRIDE;
+            return index < count && types[index] == type && fields[i + REQUESTED] == requested
+                    && (type != null || (fields[i + SIZE_BITS] == sizeBits && fields[i + ALIGN_BITS] == alignBits));
+        }
+
+        final void add(NativeType type, int sizeBits, int alignBits, int requested, int offset, int size, int minAlign) {
+            if (count == types.length) {
+                NativeType[] t = new NativeType[count * 2];
+                System.arraycopy(types, 0, t, 0, count);
+                types = t;
+                int[] f = new int[count * 2 * STRIDE];
+                System.arraycopy(fields, 0, f, 0, count * STRIDE);
+                fields = f;
+            }
+
+            final int i = count * STRIDE;
+            types[count++] = type;
+            fields[i + SIZE_BITS] = sizeBits;
+            fields[i + ALIGN_BITS] = alignBits;
+            fields[i + REQUESTED] = requested;
+            fields[i + OFFSET] = offset;
+            fields[i + SIZE] = size;
+            fields[i + MIN_ALIGN] = minAlign;
+        }
+    }
+
     static final class Info {
+        private static volatile Map<Class, java.lang.Boolean> DIRECT_CLASSES = Collections.emptyMap();
+
         private final Runtime runtime;
+        private final Class structClass;
+        private StructAllocator allocator;
         private jnr.ffi.Pointer memory = null;
         Struct enclosing = null;
         int offset = 0; // offset within enclosing Struct
@@ -53,9 +140,24 @@ public abstract class Struct {
         int minAlign = 1;
         boolean isUnion = false;
         boolean resetIndex = false;
+        /** The members and inner structs of the struct, in the order they were created */
+        final List<Object> fields;
+
+        /** The recorded layout being replayed, or null once a field differs from it */
+        private Layout layout;
+        /** The layout being recorded, if this is the first instance of its class */
+        private Layout recording;
 
-        public Info(Runtime runtime) {
+        public Info(Runtime runtime, Class structClass) {
             this.runtime = runtime;
+            this.structClass = structClass;
+            Layout layout = Layout.get(structClass);
+            if (layout == null) {
+                this.recording = new Layout(runtime);
+            } else if (layout.runtime == runtime) {
+                this.layout = layout;
+            }
+            this.fields = new ArrayList<Object>(layout != null ? layout.count : 10);
         }
 
         public final jnr.ffi.Pointer getMemory(int flags) {
@@ -71,39 +173,118 @@ public abstract class Struct {
         }
 
         final int size() {
+            complete();
             return size;
         }
 
+        /** Gets the offset of the struct within {@link #getMemory()} */
+        final int memoryOffset() {
+            return enclosing != null ? enclosing.__info.memoryOffset() + offset : 0;
+        }
+
         final int getMinimumAlignment() {
+            complete();
             return minAlign;
         }
 
         private final jnr.ffi.Pointer allocateMemory(int flags) {
-            if (ParameterFlags.isDirect(flags)) {
+            if (allocator == null && isDirectClass(structClass)) {
+                allocator = StructAllocator.DIRECT;
+            }
+
+            if (allocator != null) {
+                return allocator.allocate(runtime, size(), minAlign);
+            } else if (ParameterFlags.isDirect(flags)) {
                 return runtime.getMemoryManager().allocateDirect(size(), true);
             } else {
                 return runtime.getMemoryManager().allocate(size());
             }
         }
 
+        private static boolean isDirectClass(Class structClass) {
+            java.lang.Boolean direct = DIRECT_CLASSES.get(structClass);
+            if (direct == null) {
+                direct = structClass.isAnnotationPresent(Direct.class);
+                synchronized (Info.class) {
+                    Map<Class, java.lang.Boolean> m = new IdentityHashMap<Class, java.lang.Boolean>(DIRECT_CLASSES);
+                    m.put(structClass, direct);
+                    DIRECT_CLASSES = m;
+                }
+            }
+
+            return direct;
+        }
+
         public final void useMemory(jnr.ffi.Pointer io) {
+            complete();
             this.memory = io;
         }
-        
-        protected final int addField(int sizeBits, int alignBits, Offset offset) {
-            this.size = Math.max(this.size, offset.intValue() + (sizeBits >> 3));
-            this.minAlign = Math.max(this.minAlign, alignBits >> 3);
-            return offset.intValue();
+
+        /**
+         * Publishes the layout recorded so far, and stops recording.  Called when the struct is
+         * first used, or an inner struct is added to it.
+         */
+        final void complete() {
+            if (recording != null) {
+                Layout.put(structClass, recording);
+                recording = null;
+            }
+        }
+
+        /**
+         * Stops replaying the recorded layout, once the struct's layout diverges from it.
+         */
+        final void diverge() {
+            complete();
+            layout = null;
+        }
+
+        protected final int addField(Member member, NativeType type, Offset offset) {
+            fields.add(member);
+            final int requested = offset != null ? offset.intValue() : resetIndex ? 0 : Layout.NEXT;
+            if (layout != null && layout.matches(fields.size() - 1, type, 0, 0, requested)) {
+                return replay();
+            }
+
+            final Type t = runtime.findType(type);
+            return addField(type, t.size() * 8, t.alignment() * 8, requested);
+        }
+
+        protected final int addField(Member member, int sizeBits, int alignBits, Offset offset) {
+            fields.add(member);
+            return addField(null, sizeBits, alignBits, offset.intValue());
         }
         
-        protected final int addField(int sizeBits, int alignBits) {
-            final int off = resetIndex ? 0 : align(this.size, alignBits >> 3);
+        protected final int addField(Member member, int sizeBits, int alignBits) {
+            fields.add(member);
+            return addField(null, sizeBits, alignBits, resetIndex ? 0 : Layout.NEXT);
+        }
+
+        private int addField(NativeType type, int sizeBits, int alignBits, int requested) {
+            final int index = fields.size() - 1;
+            if (layout != null) {
+                if (type == null && layout.matches(index, null, sizeBits, alignBits, requested)) {
+                    return replay();
+                }
+                layout = null;
+            }
+
+            final int off = requested != Layout.NEXT ? requested : align(this.size, alignBits >> 3);
             this.size = Math.max(this.size, off + (sizeBits >> 3));
             this.minAlign = Math.max(this.minAlign, alignBits >> 3);
+            if (recording != null) {
+                recording.add(type, sizeBits, alignBits, requested, off, size, minAlign);
+            }
+
             return off;
         }
 
-        
+        private int replay() {
+            final int i = (fields.size() - 1) * Layout.STRIDE;
+            this.size = layout.fields[i + Layout.SIZE];
+            this.minAlign = layout.fields[i + Layout.MIN_ALIGN];
+            return layout.fields[i + Layout.OFFSET];
+        }
     }
     final Info __info;
 
@@ -111,7 +292,17 @@ public abstract class Struct {
      * Creates a new <tt>Struct</tt>.
      */
     protected Struct(Runtime runtime) {
-        this.__info = new Info(runtime);
+        this.__info = new Info(runtime, getClass());
+    }
+
+    /**
+     * Creates a new <tt>Struct</tt> whose memory is allocated by <tt>allocator</tt>.
+     *
+     * @param allocator the allocator to get the native memory of the struct from.
+     */
+    protected Struct(Runtime runtime, StructAllocator allocator) {
+        this(runtime);
+        __info.allocator = allocator;
     }
 
     /**
@@ -157,10 +348,155 @@ public abstract class Struct {
         return struct.__info.isDirect();
     }
 
+    /**
+     * Copies the contents of a struct to a java array in a single bulk transfer.
+     *
+     * @param struct the struct to copy.
+     * @param dst the array to copy the struct to.
+     * @param idx the index in {@code dst} to copy the struct to.
+     */
+    public static void copyTo(Struct struct, byte[] dst, int idx) {
+        struct.__info.getMemory().get(struct.__info.memoryOffset(), dst, idx, size(struct));
+    }
+
+    /**
+     * Copies the contents of a struct from a java array in a single bulk transfer.
+     *
+     * @param struct the struct to copy to.
+     * @param src the array to copy the struct from.
+     * @param idx the index in {@code src} to copy the struct from.
+     */
+    public static void copyFrom(Struct struct, byte[] src, int idx) {
+        struct.__info.getMemory().put(struct.__info.memoryOffset(), src, idx, size(struct));
+    }
+
+    /**
+     * Copies the contents of a struct to other memory in a single bulk transfer.
+     *
+     * @param struct the struct to copy.
+     * @param dst the memory to copy the struct to.
+     * @param offset the offset in {@code dst} to copy the struct to.
+     */
+    public static void copyTo(Struct struct, jnr.ffi.Pointer dst, long offset) {
+        struct.__info.getMemory().transferTo(struct.__info.memoryOffset(), dst, offset, size(struct));
+    }
+
+    /**
+     * Copies the contents of a struct from other memory in a single bulk transfer.
+     *
+     * @param struct the struct to copy to.
+     * @param src the memory to copy the struct from.
+     * @param offset the offset in {@code src} to copy the struct from.
+     */
+    public static void copyFrom(Struct struct, jnr.ffi.Pointer src, long offset) {
+        struct.__info.getMemory().transferFrom(struct.__info.memoryOffset(), src, offset, size(struct));
+    }
+
+    /**
+     * Copies the contents of a struct to the current position of a buffer, and advances
+     * the position past it.
+     *
+     * @param struct the struct to copy.
+     * @param dst the buffer to copy the struct to.
+     * @throws BufferOverflowException if the struct does not fit in the remaining space in {@code dst}.
+     */
+    public static void copyTo(Struct struct, ByteBuffer dst) {
+        copyTo(struct.__info.getMemory(), struct.__info.memoryOffset(), size(struct), dst);
+    }
+
+    /**
+     * Copies the contents of a struct from the current position of a buffer, and advances
+     * the position past it.
+     *
+     * @param struct the struct to copy to.
+     * @param src the buffer to copy the struct from.
+     * @throws BufferUnderflowException if fewer than {@code Struct.size(struct)} bytes remain in {@code src}.
+     */
+    public static void copyFrom(Struct struct, ByteBuffer src) {
+        copyFrom(src, struct.__info.getMemory(), struct.__info.memoryOffset(), size(struct));
+    }
+
+    /**
+     * Copies an array of structs to the current position of a buffer, laid out as a C array
+     * of structs would be, and advances the position past them.
+     *
+     * @param array the structs to copy.
+     * @param dst the buffer to copy the structs to.
+     * @throws BufferOverflowException if the structs do not fit in the remaining space in {@code dst}.
+     */
+    public static void copyTo(Struct[] array, ByteBuffer dst) {
+        if (array.length < 1) {
+            return;
+        }
+
+        final int stride = align(size(array[0]), alignment(array[0]));
+        if (dst.remaining() < (long) stride * array.length) {
+            throw new BufferOverflowException();
+        }
+
+        for (Struct struct : array) {
+            final int position = dst.position();
+            copyTo(struct, dst);
+            dst.position(position + stride);
+        }
+    }
+
+    /**
+     * Copies an array of structs from the current position of a buffer, laid out as a C array
+     * of structs would be, and advances the position past them.
+     *
+     * @param array the structs to copy to.
+     * @param src the buffer to copy the structs from.
+     * @throws BufferUnderflowException if the buffer does not hold enough structs.
+     */
+    public static void copyFrom(Struct[] array, ByteBuffer src) {
+        if (array.length < 1) {
+            return;
+        }
+
+        final int stride = align(size(array[0]), alignment(array[0]));
+        if (src.remaining() < (long) stride * array.length) {
+            throw new BufferUnderflowException();
+        }
+
+        for (Struct struct : array) {
+            final int position = src.position();
+            copyFrom(struct, src);
+            src.position(position + stride);
+        }
+    }
+
+    static void copyTo(jnr.ffi.Pointer memory, long offset, int size, ByteBuffer dst) {
+        if (dst.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+
+        memory.transferTo(offset, jnr.ffi.Pointer.wrap(memory.getRuntime(), dst.slice()), 0, size);
+        dst.position(dst.position() + size);
+    }
+
+    static void copyFrom(ByteBuffer src, jnr.ffi.Pointer memory, long offset, int size) {
+        if (src.remaining() < size) {
+            throw new BufferUnderflowException();
+        }
+
+        memory.transferFrom(offset, jnr.ffi.Pointer.wrap(memory.getRuntime(), src.slice()), 0, size);
+        src.position(src.position() + size);
+    }
+
     private static int align(int offset, int align) {
         return (offset + align - 1) & ~(align - 1);
     }
 
+    /**
+     * Creates an array of structs in one block of native memory.  Each element is a separate
+     * <tt>Struct</tt>; use {@link StructArray} to work with large arrays without an object per element.
+     *
+     * @param runtime the runtime the structs belong to.
+     * @param type the struct class.
+     * @param length the number of elements.
+     * @return a new array of structs.
+     */
     @SuppressWarnings("unchecked")
     public static <T extends Struct> T[] arrayOf(Runtime runtime, Class<T> type, int length) {
         try {
@@ -196,23 +532,44 @@ public abstract class Struct {
      */
     @Override
     public java.lang.String toString() {
-        StringBuilder sb = new StringBuilder();
-        java.lang.reflect.Field[] fields = getClass().getDeclaredFields();
+        final StringBuilder sb = new StringBuilder();
         sb.append(getClass().getSimpleName()).append(" { \n");
-        final java.lang.String fieldPrefix = "    ";
-        for (java.lang.reflect.Field field : fields) {
-            try {
-                sb.append(fieldPrefix);
-                sb.append(field.getName()).append(" = ");
-                sb.append(field.get(this).toString());
-                sb.append("\n");
-            } catch (Throwable ex) {
-                throw new RuntimeException(ex);
+        StructDescriptor.of(getClass()).accept(this, new StructDescriptor.Visitor() {
+            public void visit(java.lang.String name, Object field, jnr.ffi.Pointer memory, long offset) {
+                if (!(field instanceof Padding)) {
+                    sb.append("    ").append(name).append(" = ").append(field).append('\n');
+                }
             }
-        }
+        });
         sb.append("}\n");
         return sb.toString();
     }
+
+    /**
+     * Compares the memory of two structs byte for byte.
+     *
+     * @param a a struct.
+     * @param b another struct.
+     * @return <tt>true</tt> if the structs are the same size and their memory holds the same bytes.
+     */
+    public static boolean contentEquals(Struct a, Struct b) {
+        if (a == b) {
+            return true;
+        }
+
+        return size(a) == size(b) && StructDescriptor.contentEquals(a.__info.getMemory(), a.__info.memoryOffset(),
+                b.__info.getMemory(), b.__info.memoryOffset(), size(a));
+    }
+
+    /**
+     * Computes a hash code from the memory of a struct, consistent with {@link #contentEquals}.
+     *
+     * @param struct a struct.
+     * @return a hash code of the struct memory.
+     */
+    public static int contentHashCode(Struct struct) {
+        return StructDescriptor.contentHashCode(struct.__info.getMemory(), struct.__info.memoryOffset(), size(struct));
+    }
     
     public static final class Offset extends java.lang.Number {
         private final int offset;
@@ -510,10 +867,12 @@ public abstract class Struct {
     }
 
     protected final <T extends Struct> T inner(Struct struct) {
+        __info.diverge();
         int off = align(__info.size, struct.__info.getMinimumAlignment());
         struct.__info.enclosing = this;
         struct.__info.offset = off;
         __info.size = off + struct.__info.size;
+        __info.fields.add(struct);
 
         return (T) struct;
     }
@@ -527,20 +886,18 @@ public abstract class Struct {
             this(size, size);
         }
         protected AbstractMember(int size, int align, Offset offset) {
-            this.offset = __info.addField(size, align, offset);
+            this.offset = __info.addField(this, size, align, offset);
         }
         protected AbstractMember(int size, int align) {
-            this.offset = __info.addField(size, align);
+            this.offset = __info.addField(this, size, align);
         }
 
         protected AbstractMember(NativeType type) {
-            final Type t = getRuntime().findType(type);
-            this.offset = __info.addField(t.size() * 8, t.alignment() * 8);
+            this.offset = __info.addField(this, type, null);
         }
 
         protected AbstractMember(NativeType type, Offset offset) {
-            final Type t = getRuntime().findType(type);
-            this.offset = __info.addField(t.size() * 8, t.alignment() * 8, offset);
+            this.offset = __info.addField(this, type, offset);
         }
 
         public final jnr.ffi.Pointer getMemory() {
@@ -645,13 +1002,11 @@ public abstract class Struct {
         private final int offset;
   
         protected NumberField(NativeType type) {
-            Type t = getRuntime().findType(type);
-            this.offset = __info.addField(t.size() * 8, t.alignment() * 8);
+            this.offset = __info.addField(this, type, null);
         }
 
         protected NumberField(NativeType type, Offset offset) {
-            Type t = getRuntime().findType(type);
-            this.offset = __info.addField(t.size() * 8, t.alignment() * 8, offset);
+            this.offset = __info.addField(this, type, offset);
         }
         
         public final jnr.ffi.Pointer getMemory() {
@@ -1647,6 +2002,7 @@ public abstract class Struct {
      */
     protected abstract class EnumField<E> extends NumberField {
         protected final Class<E> enumClass;
+        protected final EnumMapper mapper;
 
         /**
          * Constructs a new Enum field.
@@ -1654,9 +2010,11 @@ public abstract class Struct {
          * @param type the native type of the enum.
          * @param enumClass the Enum class.
          */
+        @SuppressWarnings("unchecked")
         public EnumField(NativeType type, Class<E> enumClass) {
             super(type);
             this.enumClass = enumClass;
+            this.mapper = EnumMapper.getInstance((Class<? extends java.lang.Enum>) enumClass);
         }
         
         /**
@@ -1697,7 +2055,7 @@ public abstract class Struct {
          * @return a java Enum value.
          */
         public final E get() {
-            return enumClass.cast(EnumMapper.getInstance(enumClass).valueOf(intValue()));
+            return enumClass.cast(mapper.valueOf(intValue()));
         }
         
         /**
@@ -1706,7 +2064,7 @@ public abstract class Struct {
          * @param value the java <tt>Enum</tt> value.
          */
         public final void set(E value) {
-            getMemory().putByte(offset(), (byte) EnumMapper.getInstance(enumClass).intValue(value));
+            getMemory().putByte(offset(), (byte) mapper.intValue(value));
         }
 
         public void set(java.lang.Number value) {
@@ -1728,10 +2086,10 @@ public abstract class Struct {
             super(NativeType.SSHORT, enumClass);
         }
         public final E get() {
-            return enumClass.cast(EnumMapper.getInstance(enumClass).valueOf(intValue()));
+            return enumClass.cast(mapper.valueOf(intValue()));
         }
         public final void set(E value) {
-            getMemory().putShort(offset(), (short) EnumMapper.getInstance(enumClass).intValue(value));
+            getMemory().putShort(offset(), (short) mapper.intValue(value));
         }
         public void set(java.lang.Number value) {
             getMemory().putShort(offset(), value.shortValue());
@@ -1747,10 +2105,10 @@ public abstract class Struct {
             super(NativeType.SINT, enumClass);
         }
         public final E get() {
-            return enumClass.cast(EnumMapper.getInstance(enumClass).valueOf(intValue()));
+            return enumClass.cast(mapper.valueOf(intValue()));
         }
         public final void set(E value) {
-            getMemory().putInt(offset(), EnumMapper.getInstance(enumClass).intValue(value));
+            getMemory().putInt(offset(), mapper.intValue(value));
         }
         public void set(java.lang.Number value) {
             getMemory().putInt(offset(), value.intValue());
@@ -1766,10 +2124,10 @@ public abstract class Struct {
             super(NativeType.SLONGLONG, enumClass);
         }
         public final E get() {
-            return enumClass.cast(EnumMapper.getInstance(enumClass).valueOf(intValue()));
+            return enumClass.cast(mapper.valueOf(intValue()));
         }
         public final void set(E value) {
-            getMemory().putLong(offset(), EnumMapper.getInstance(enumClass).intValue(value));
+            getMemory().putLong(offset(), mapper.intValue(value));
         }
         public void set(java.lang.Number value) {
             getMemory().putLong(offset(), value.longValue());
@@ -1790,10 +2148,10 @@ public abstract class Struct {
         }
         
         public final E get() {
-            return enumClass.cast(EnumMapper.getInstance(enumClass).valueOf(intValue()));
+            return enumClass.cast(mapper.valueOf(intValue()));
         }
         public final void set(E value) {
-            getMemory().putNativeLong(offset(), EnumMapper.getInstance(enumClass).intValue(value));
+            getMemory().putNativeLong(offset(), mapper.intValue(value));
         }
         public void set(java.lang.Number value) {
             getMemory().putNativeLong(offset(), value.longValue());
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+/**
+ * Decides where the memory backing a {@link Struct} comes from.
+ *
+ * <p>By default a <tt>Struct</tt> lazily allocates java heap memory the first time it is used,
+ * and native memory only when it is first passed to a native function as a {@link jnr.ffi.annotations.Direct}
+ * parameter.  A heap backed struct has to be copied in and out of temporary native memory on
+ * every native call.  A struct which uses an allocator is always backed by native memory, so it
+ * is passed to native functions by address.
+ *
+ * <p>An allocator can be passed to the {@link Struct#Struct(Runtime, StructAllocator)} constructor,
+ * or a struct class can be annotated with {@link jnr.ffi.annotations.Direct} to use {@link #DIRECT}
+ * for all its instances.
+ */
+public abstract class StructAllocator {
+
+    /**
+     * Allocates a separate block of cleared native memory for each struct.  The memory is freed
+     * when the struct is garbage collected.
+     */
+    public static final StructAllocator DIRECT = new StructAllocator() {
+        public Pointer allocate(Runtime runtime, int size, int alignment) {
+            return runtime.getMemoryManager().allocateDirect(size, true);
+        }
+    };
+
+    /**
+     * Allocates the memory for a struct.
+     *
+     * @param runtime the runtime of the struct.
+     * @param size the size of the struct in bytes.
+     * @param alignment the minimum alignment of the struct.
+     * @return cleared native memory of at least {@code size} bytes.
+     */
+    public abstract Pointer allocate(Runtime runtime, int size, int alignment);
+
+    /**
+     * Creates an allocator which carves structs out of large blocks of native memory, so many
+     * small structs cost one native allocation.  A block is freed when all the structs allocated
+     * from it have been garbage collected.  Structs larger than half a block are allocated separately.
+     *
+     * @param blockSize the size in bytes of each block of native memory.
+     * @return a new, thread-safe, {@code StructAllocator}.
+     */
+    public static StructAllocator pooled(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("invalid block size " + blockSize);
+        }
+
+        return new Pooled(blockSize);
+    }
+
+    /**
+     * Creates an allocator which allocates structs from a {@link MemoryArena}.  The structs must not
+     * be used after the arena is closed or reset.
+     *
+     * @param arena the arena to allocate from.
+     * @return a new {@code StructAllocator}.
+     */
+    public static StructAllocator arena(final MemoryArena arena) {
+        return new StructAllocator() {
+            public Pointer allocate(Runtime runtime, int size, int alignment) {
+                return arena.allocate(size, alignment, true);
+            }
+        };
+    }
+
+    private static final class Pooled extends StructAllocator {
+        private final int blockSize;
+        private Pointer block;
+        private int position;
+
+        Pooled(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        public synchronized Pointer allocate(Runtime runtime, int size, int alignment) {
+            if (size > blockSize / 2) {
+                return runtime.getMemoryManager().allocateDirect(size, true);
+            }
+
+            int offset = (position + alignment - 1) & ~(alignment - 1);
+            if (block == null || block.getRuntime() != runtime || offset + size > blockSize) {
+                block = runtime.getMemoryManager().allocateDirect(blockSize, true);
+                offset = 0;
+            }
+            position = offset + size;
+
+            return block.slice(offset, size);
+        }
+    }
+}
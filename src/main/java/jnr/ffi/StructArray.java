@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import jnr.ffi.provider.AbstractBufferMemoryIO;
+import jnr.ffi.provider.DelegatingMemoryIO;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+/**
+ * An array of structs in a single block of native memory, described by one {@link StructLayout}.
+ *
+ * <p>Unlike {@link Struct#arrayOf}, which creates a {@code Struct} and a slice of memory for each
+ * element, a {@code StructArray} creates no per-element objects.  Elements are visited with a
+ * {@link MemoryCursor} moved from element to element, whose pointer is passed to the layout's fields:
+ *
+ * <pre>
+ *     StructArray&lt;Event&gt; events = StructArray.allocate(layout, 1024);
+ *     MemoryCursor event = events.cursor();
+ *     for (int i = 0; i &lt; events.length(); i++, event.advance(events.stride())) {
+ *         total += layout.value.get(event.pointer());
+ *     }
+ * </pre>
+ *
+ * Whole columns (one field of every element) can also be copied to and from java arrays.
+ *
+ * @param <T> the type of the struct layout.
+ */
+public final class StructArray<T extends StructLayout> {
+    private final T layout;
+    private final Pointer memory;
+    private final int length;
+    private final int stride;
+
+    private StructArray(T layout, Pointer memory, int length) {
+        this.layout = layout;
+        this.memory = memory;
+        this.length = length;
+        this.stride = layout.size();
+    }
+
+    /**
+     * Allocates a new, zeroed array of structs in native memory.
+     *
+     * @param layout the layout of each element.
+     * @param length the number of elements.
+     * @return a new {@code StructArray}.
+     */
+    public static <T extends StructLayout> StructArray<T> allocate(T layout, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("negative array length");
+        }
+
+        long size = (long) layout.size() * length;
+        Runtime runtime = layout.getRuntime();
+        Pointer memory = size <= Integer.MAX_VALUE
+                ? Memory.allocateDirect(runtime, (int) size, true)
+                : Memory.allocateDirect(runtime, size, Collections.<AllocationOption, Object>emptyMap());
+
+        return new StructArray<T>(layout, memory, length);
+    }
+
+    /**
+     * Creates a {@code StructArray} over existing native memory, e.g. an array returned from a native function.
+     *
+     * @param layout the layout of each element.
+     * @param memory the native memory containing the array.
+     * @param length the number of elements.
+     * @return a new {@code StructArray}.
+     * @throws IllegalArgumentException if {@code memory} is java heap memory or a direct {@code ByteBuffer}.
+     */
+    public static <T extends StructLayout> StructArray<T> wrap(T layout, Pointer memory, int length) {
+        if (!memory.isDirect() || backing(memory) instanceof AbstractBufferMemoryIO) {
+            throw new IllegalArgumentException("struct arrays must be in native memory");
+        }
+
+        if (length < 0 || (long) layout.size() * length > memory.size()) {
+            throw new IndexOutOfBoundsException("memory too small for " + length + " elements");
+        }
+
+        return new StructArray<T>(layout, memory, length);
+    }
+
+    /**
+     * Gets the layout of the elements of this array.
+     *
+     * @return the struct layout.
+     */
+    public T layout() {
+        return layout;
+    }
+
+    /**
+     * Gets the native memory containing this array.
+     *
+     * @return the array memory.
+     */
+    public Pointer getMemory() {
+        return memory;
+    }
+
+    /**
+     * Gets the number of elements in this array.
+     *
+     * @return the array length.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Gets the distance in bytes between the start of one element and the next.
+     *
+     * @return the size of an element, including padding.
+     */
+    public int stride() {
+        return stride;
+    }
+
+    /**
+     * Gets the offset within {@link #getMemory()} of an element.
+     *
+     * @param index the index of the element.
+     * @return the offset of the element.
+     */
+    public long offsetOf(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+        }
+
+        return (long) index * stride;
+    }
+
+    /**
+     * Creates a {@code Pointer} to one element.  This allocates a new object, so prefer a
+     * {@link #cursor()} when visiting many elements.
+     *
+     * @param index the index of the element.
+     * @return the memory of the element.
+     */
+    public Pointer get(int index) {
+        return memory.slice(offsetOf(index), stride);
+    }
+
+    /**
+     * Creates a cursor positioned at the first element.  Move it to the next element with
+     * {@code cursor.advance(stride())}, or to any element with {@link #seek}.  The cursor is not
+     * bounds checked.
+     *
+     * @return a new cursor.
+     */
+    public MemoryCursor cursor() {
+        return Memory.newCursor(layout.getRuntime(), memory.address());
+    }
+
+    /**
+     * Moves a cursor to an element of this array.
+     *
+     * @param cursor the cursor to move.
+     * @param index the index of the element.
+     * @return the cursor.
+     */
+    public MemoryCursor seek(MemoryCursor cursor, int index) {
+        return cursor.bind(memory.address() + offsetOf(index));
+    }
+
+    /**
+     * Copies a range of elements to a java array in a single bulk transfer.
+     *
+     * @param first the index of the first element.
+     * @param count the number of elements.
+     * @param dst the array to copy the elements to.
+     * @param idx the index in {@code dst} to copy the elements to.
+     */
+    public void copyTo(int first, int count, byte[] dst, int idx) {
+        memory.get(rangeOffset(first, count), dst, idx, count * stride);
+    }
+
+    /**
+     * Copies a range of elements from a java array in a single bulk transfer.
+     *
+     * @param first the index of the first element.
+     * @param count the number of elements.
+     * @param src the array to copy the elements from.
+     * @param idx the index in {@code src} to copy the elements from.
+     */
+    public void copyFrom(int first, int count, byte[] src, int idx) {
+        memory.put(rangeOffset(first, count), src, idx, count * stride);
+    }
+
+    /**
+     * Copies a range of elements to the current position of a buffer, and advances the position past them.
+     *
+     * @param first the index of the first element.
+     * @param count the number of elements.
+     * @param dst the buffer to copy the elements to.
+     * @throws BufferOverflowException if the elements do not fit in the remaining space in {@code dst}.
+     */
+    public void copyTo(int first, int count, ByteBuffer dst) {
+        Struct.copyTo(memory, rangeOffset(first, count), count * stride, dst);
+    }
+
+    /**
+     * Copies a range of elements from the current position of a buffer, and advances the position past them.
+     *
+     * @param first the index of the first element.
+     * @param count the number of elements.
+     * @param src the buffer to copy the elements from.
+     * @throws BufferUnderflowException if fewer than {@code count * stride()} bytes remain in {@code src}.
+     */
+    public void copyFrom(int first, int count, ByteBuffer src) {
+        Struct.copyFrom(src, memory, rangeOffset(first, count), count * stride);
+    }
+
+    private long rangeOffset(int first, int count) {
+        if (first < 0 || count < 0 || first + count > length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return (long) first * stride;
+    }
+
+    private long columnOffset(StructLayout.Field field, int size, boolean floatingPoint, int first, int count, int arrayLength, int arrayIndex) {
+        if (field.enclosing() != layout && !isEnclosedBy(field.enclosing())) {
+            throw new IllegalArgumentException("field is not a member of this array's layout");
+        }
+
+        if (!(field instanceof StructLayout.NumberField)) {
+            throw new IllegalArgumentException("field is not a numeric field");
+        }
+
+        NativeType type = ((StructLayout.NumberField) field).type;
+        boolean floatingType = type == NativeType.FLOAT || type == NativeType.DOUBLE;
+        if (layout.getRuntime().findType(type).size() != size || floatingType != floatingPoint) {
+            throw new IllegalArgumentException("field of type " + type + " does not match a "
+                    + size + " byte " + (floatingPoint ? "floating point" : "integer") + " array");
+        }
+
+        if (first < 0 || count < 0 || first + count > length || arrayIndex < 0 || arrayIndex + count > arrayLength) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return (long) first * stride + field.offset();
+    }
+
+    /** Finds the memory at the bottom of a chain of slices; direct byte buffers do not report their address */
+    private static Pointer backing(Pointer memory) {
+        while (memory instanceof DelegatingMemoryIO) {
+            memory = ((DelegatingMemoryIO) memory).getDelegatedMemoryIO();
+        }
+
+        return memory;
+    }
+
+    private boolean isEnclosedBy(StructLayout inner) {
+        for (StructLayout l = inner; l != null; l = l.enclosing) {
+            if (l == layout) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Copies a column of 8 bit values, one from each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param dst the array to copy values into.
+     * @param idx the index in {@code dst} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void getColumn(StructLayout.Field field, int first, byte[] dst, int idx, int count) {
+        long offset = columnOffset(field, 1, false, first, count, dst.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            dst[idx + i] = memory.getByte(offset);
+        }
+    }
+
+    /**
+     * Copies a column of 16 bit values, one from each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param dst the array to copy values into.
+     * @param idx the index in {@code dst} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void getColumn(StructLayout.Field field, int first, short[] dst, int idx, int count) {
+        long offset = columnOffset(field, 2, false, first, count, dst.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            dst[idx + i] = memory.getShort(offset);
+        }
+    }
+
+    /**
+     * Copies a column of 32 bit values, one from each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param dst the array to copy values into.
+     * @param idx the index in {@code dst} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void getColumn(StructLayout.Field field, int first, int[] dst, int idx, int count) {
+        long offset = columnOffset(field, 4, false, first, count, dst.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            dst[idx + i] = memory.getInt(offset);
+        }
+    }
+
+    /**
+     * Copies a column of 64 bit values, one from each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param dst the array to copy values into.
+     * @param idx the index in {@code dst} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void getColumn(StructLayout.Field field, int first, long[] dst, int idx, int count) {
+        long offset = columnOffset(field, 8, false, first, count, dst.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            dst[idx + i] = memory.getLongLong(offset);
+        }
+    }
+
+    /**
+     * Copies a column of {@code float} values, one from each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param dst the array to copy values into.
+     * @param idx the index in {@code dst} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void getColumn(StructLayout.Field field, int first, float[] dst, int idx, int count) {
+        long offset = columnOffset(field, 4, true, first, count, dst.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            dst[idx + i] = memory.getFloat(offset);
+        }
+    }
+
+    /**
+     * Copies a column of {@code double} values, one from each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param dst the array to copy values into.
+     * @param idx the index in {@code dst} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void getColumn(StructLayout.Field field, int first, double[] dst, int idx, int count) {
+        long offset = columnOffset(field, 8, true, first, count, dst.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            dst[idx + i] = memory.getDouble(offset);
+        }
+    }
+
+    /**
+     * Sets a column of 8 bit values, one in each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param src the array to copy values from.
+     * @param idx the index in {@code src} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void putColumn(StructLayout.Field field, int first, byte[] src, int idx, int count) {
+        long offset = columnOffset(field, 1, false, first, count, src.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            memory.putByte(offset, src[idx + i]);
+        }
+    }
+
+    /**
+     * Sets a column of 16 bit values, one in each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param src the array to copy values from.
+     * @param idx the index in {@code src} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void putColumn(StructLayout.Field field, int first, short[] src, int idx, int count) {
+        long offset = columnOffset(field, 2, false, first, count, src.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            memory.putShort(offset, src[idx + i]);
+        }
+    }
+
+    /**
+     * Sets a column of 32 bit values, one in each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param src the array to copy values from.
+     * @param idx the index in {@code src} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void putColumn(StructLayout.Field field, int first, int[] src, int idx, int count) {
+        long offset = columnOffset(field, 4, false, first, count, src.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            memory.putInt(offset, src[idx + i]);
+        }
+    }
+
+    /**
+     * Sets a column of 64 bit values, one in each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param src the array to copy values from.
+     * @param idx the index in {@code src} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void putColumn(StructLayout.Field field, int first, long[] src, int idx, int count) {
+        long offset = columnOffset(field, 8, false, first, count, src.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            memory.putLongLong(offset, src[idx + i]);
+        }
+    }
+
+    /**
+     * Sets a column of {@code float} values, one in each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param src the array to copy values from.
+     * @param idx the index in {@code src} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void putColumn(StructLayout.Field field, int first, float[] src, int idx, int count) {
+        long offset = columnOffset(field, 4, true, first, count, src.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            memory.putFloat(offset, src[idx + i]);
+        }
+    }
+
+    /**
+     * Sets a column of {@code double} values, one in each of a range of elements.
+     *
+     * @param field a field of the element layout.
+     * @param first the index of the first element.
+     * @param src the array to copy values from.
+     * @param idx the index in {@code src} of the first value.
+     * @param count the number of elements.
+     * @throws IllegalArgumentException if {@code field} is not a numeric field of the element layout
+     *         whose native type has the same size and kind as the array elements.
+     */
+    public void putColumn(StructLayout.Field field, int first, double[] src, int idx, int count) {
+        long offset = columnOffset(field, 8, true, first, count, src.length, idx);
+        for (int i = 0; i < count; i++, offset += stride) {
+            memory.putDouble(offset, src[idx + i]);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of the fields of a {@link Struct} class or a {@link StructLayout}, in declaration order.
+ *
+ * <p>The table is built with reflection the first time it is needed, and then cached, so walking
+ * the fields of a struct - to print it, or to serialize it - does not need to look up the declared
+ * fields of its class every time.  The fields of a {@code StructLayout} are shared objects, so its
+ * table holds the fields themselves.  The members of a {@code Struct} belong to each instance, which
+ * records them as they are created, so its table holds the name of each recorded member, found by
+ * reflection on the first instance visited.
+ *
+ * <p>Fields of inner structs and layouts are visited as {@code inner.field}, and elements of
+ * arrays of fields as {@code field[index]}.
+ */
+public final class StructDescriptor {
+    private static volatile Map<Class, StructDescriptor> DESCRIPTORS = Collections.emptyMap();
+
+    /**
+     * Receives the fields of a struct.
+     */
+    public interface Visitor {
+        /**
+         * Called for each field of a struct.
+         *
+         * @param name the name of the field.
+         * @param field the field: a member of a {@link Struct}, or a field of a {@link StructLayout}.
+         * @param memory the memory the field is stored in.
+         * @param offset the offset of the field within {@code memory}.
+         */
+        void visit(String name, Object field, Pointer memory, long offset);
+    }
+
+    private final String[] names;
+    private final java.lang.reflect.Field[] accessors;
+    private final StructLayout layout;
+    private final Object[] fields;
+    /** The names of the members a {@code Struct} records, or null until an instance has been visited */
+    private volatile String[] memberNames;
+
+    private StructDescriptor(String[] names, java.lang.reflect.Field[] accessors, StructLayout layout, Object[] fields) {
+        this.names = names;
+        this.accessors = accessors;
+        this.layout = layout;
+        this.fields = fields;
+    }
+
+    /**
+     * Gets the descriptor of a struct class.
+     *
+     * @param structClass the struct class.
+     * @return the descriptor of the struct class.
+     */
+    public static StructDescriptor of(Class<? extends Struct> structClass) {
+        StructDescriptor descriptor = DESCRIPTORS.get(structClass);
+        return descriptor != null ? descriptor : put(structClass, build(structClass, Struct.class, null));
+    }
+
+    /**
+     * Gets the descriptor of a struct layout.
+     *
+     * @param layout the struct layout.
+     * @return the descriptor of the layout.
+     */
+    public static StructDescriptor of(StructLayout layout) {
+        StructDescriptor descriptor = layout.descriptor;
+        return descriptor != null ? descriptor : (layout.descriptor = build(layout.getClass(), StructLayout.class, layout));
+    }
+
+    private static synchronized StructDescriptor put(Class structClass, StructDescriptor descriptor) {
+        StructDescriptor existing = DESCRIPTORS.get(structClass);
+        if (existing != null) {
+            return existing;
+        }
+
+        Map<Class, StructDescriptor> m = new IdentityHashMap<Class, StructDescriptor>(DESCRIPTORS);
+        m.put(structClass, descriptor);
+        DESCRIPTORS = m;
+
+        return descriptor;
+    }
+
+    private static StructDescriptor build(Class klass, Class base, StructLayout layout) {
+        List<Class> hierarchy = new ArrayList<Class>();
+        for (Class c = klass; c != null && c != base; c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+
+        List<java.lang.reflect.Field> declared = new ArrayList<java.lang.reflect.Field>();
+        for (Class c : hierarchy) {
+            for (java.lang.reflect.Field f : c.getDeclaredFields()) {
+                Class type = f.getType().isArray() ? f.getType().getComponentType() : f.getType();
+                if (!Modifier.isStatic(f.getModifiers()) && !f.isSynthetic() && isField(type)) {
+                    declared.add(f);
+                }
+            }
+        }
+
+        String[] names = new String[declared.size()];
+        java.lang.reflect.Field[] accessors = new java.lang.reflect.Field[declared.size()];
+        Object[] fields = layout != null ? new Object[declared.size()] : null;
+        for (int i = 0; i < names.length; i++) {
+            java.lang.reflect.Field f = declared.get(i);
+            f.setAccessible(true);
+            names[i] = f.getName();
+            accessors[i] = f;
+            if (layout != null) {
+                try {
+                    fields[i] = f.get(layout);
+                } catch (IllegalAccessException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+
+        return new StructDescriptor(names, layout == null ? accessors : null, layout, fields);
+    }
+
+    private static boolean isField(Class type) {
+        return Struct.Member.class.isAssignableFrom(type) || Struct.class.isAssignableFrom(type)
+                || StructLayout.Field.class.isAssignableFrom(type) || StructLayout.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Gets the number of fields declared by the struct, not counting the fields of inner structs
+     * or the elements of arrays separately.
+     *
+     * @return the number of fields.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Gets the name of a field.
+     *
+     * @param index the index of the field, in declaration order.
+     * @return the name of the field.
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Visits each field of a struct instance.
+     *
+     * @param struct an instance of the struct class this descriptor was created for.
+     * @param visitor the visitor to call for each field.
+     */
+    public void accept(Struct struct, Visitor visitor) {
+        if (accessors == null) {
+            throw new UnsupportedOperationException("not a Struct descriptor");
+        }
+
+        accept(struct, "", visitor);
+    }
+
+    private void accept(Struct struct, String prefix, Visitor visitor) {
+        List<Object> members = struct.__info.fields;
+        String[] memberNames = this.memberNames;
+        if (memberNames == null || memberNames.length != members.size()) {
+            // An instance with a different number of members, e.g. an array sized by its constructor
+            String[] names = nameMembers(struct, members);
+            if (memberNames == null) {
+                this.memberNames = names;
+            }
+            memberNames = names;
+        }
+
+        for (int i = 0; i < memberNames.length; i++) {
+            Object value = members.get(i);
+            if (memberNames[i] == null) {
+                continue;
+
+            } else if (value instanceof Struct.Member) {
+                Struct.Member member = (Struct.Member) value;
+                visitor.visit(prefix + memberNames[i], member, member.getMemory(), member.offset());
+
+            } else if (value instanceof Struct && ((Struct) value).__info.enclosing == struct) {
+                Struct inner = (Struct) value;
+                of(inner.getClass()).accept(inner, prefix + memberNames[i] + ".", visitor);
+            }
+        }
+    }
+
+    /**
+     * Finds the name of the field holding each recorded member of a struct, or null for a member
+     * that is not held by any field.
+     */
+    private String[] nameMembers(Struct struct, List<Object> members) {
+        Map<Object, String> fieldNames = new IdentityHashMap<Object, String>();
+        for (int i = 0; i < accessors.length; i++) {
+            try {
+                nameField(names[i], accessors[i].get(struct), fieldNames);
+            } catch (IllegalAccessException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        String[] memberNames = new String[members.size()];
+        for (int i = 0; i < memberNames.length; i++) {
+            memberNames[i] = fieldNames.get(members.get(i));
+        }
+
+        return memberNames;
+    }
+
+    private static void nameField(String name, Object value, Map<Object, String> fieldNames) {
+        if (value instanceof Struct.Member || value instanceof Struct) {
+            if (!fieldNames.containsKey(value)) {
+                fieldNames.put(value, name);
+            }
+
+        } else if (value != null && value.getClass().isArray()) {
+            for (int i = 0; i < Array.getLength(value); i++) {
+                nameField(name + "[" + i + "]", Array.get(value, i), fieldNames);
+            }
+        }
+    }
+
+    /**
+     * Visits each field of a struct described by a layout.
+     *
+     * @param memory the memory of the struct.
+     * @param visitor the visitor to call for each field.
+     */
+    public void accept(Pointer memory, Visitor visitor) {
+        if (fields == null) {
+            throw new UnsupportedOperationException("not a StructLayout descriptor");
+        }
+
+        for (int i = 0; i < fields.length; i++) {
+            accept(memory, layout, names[i], fields[i], visitor);
+        }
+    }
+
+    private static void accept(Pointer memory, StructLayout layout, String name, Object value, Visitor visitor) {
+        if (value instanceof StructLayout.Field) {
+            visitor.visit(name, value, memory, ((StructLayout.Field) value).offset());
+
+        } else if (value instanceof StructLayout) {
+            StructLayout inner = (StructLayout) value;
+            if (inner.enclosing == layout) {
+                StructDescriptor descriptor = of(inner);
+                for (int i = 0; i < descriptor.fields.length; i++) {
+                    accept(memory, inner, name + "." + descriptor.names[i], descriptor.fields[i], visitor);
+                }
+            }
+
+        } else if (value != null && value.getClass().isArray()) {
+            for (int i = 0; i < Array.getLength(value); i++) {
+                accept(memory, layout, name + "[" + i + "]", Array.get(value, i), visitor);
+            }
+        }
+    }
+
+    /**
+     * Compares two regions of memory byte for byte.
+     */
+    static boolean contentEquals(Pointer a, long aOffset, Pointer b, long bOffset, int size) {
+        int i = 0;
+        for (; i + 8 <= size; i += 8) {
+            if (a.getLongLong(aOffset + i) != b.getLongLong(bOffset + i)) {
+                return false;
+            }
+        }
+
+        for (; i < size; i++) {
+            if (a.getByte(aOffset + i) != b.getByte(bOffset + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Computes a hash code from the contents of a region of memory.
+     */
+    static int contentHashCode(Pointer memory, long offset, int size) {
+        int hash = 1;
+        int i = 0;
+        for (; i + 8 <= size; i += 8) {
+            long v = memory.getLongLong(offset + i);
+            hash = 31 * hash + (int) (v ^ (v >>> 32));
+        }
+
+        for (; i < size; i++) {
+            hash = 31 * hash + memory.getByte(offset + i);
+        }
+
+        return hash;
+    }
+}
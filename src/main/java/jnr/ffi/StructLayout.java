@@ -1,6 +1,11 @@
 package jnr.ffi;
 
 import java.lang.reflect.Constructor;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 
 import static jnr.ffi.Struct.Offset;
 
@@ -16,6 +21,11 @@ public class StructLayout implements Type {
     int size = 0;
     int alignment = 1;
     int paddedSize = 0;
+    /** Built the first time the fields are enumerated */
+    volatile StructDescriptor descriptor;
+    /** The offset of the unit the next bit field can be packed into, or -1 */
+    private int bitFieldUnit = -1;
+    private int bitFieldPosition = 0;
 
     /**
      * Creates a new <tt>StructLayout</tt>.
@@ -36,6 +46,77 @@ public class StructLayout implements Type {
         return alignment;
     }
 
+    /**
+     * Creates an implementation of an accessor interface, with a getter and/or setter method
+     * named after each field it accesses, e.g. for a layout with a {@code Signed32 x} field:
+     *
+     * <pre>
+     *     public interface PointAccessor {
+     *         int x(Pointer p);                        // same as layout.x.get(p)
+     *         int x(Pointer p, long offset);           // the struct is at offset in p
+     *         void x(Pointer p, int value);            // same as layout.x.set(p, value)
+     *         void x(Pointer p, long offset, int value);
+     *     }
+     * </pre>
+     *
+     * Methods may also be named {@code getX} and {@code setX}, which is needed for {@code long}
+     * fields where {@code long x(Pointer, long)} and {@code void x(Pointer, long)} would clash.
+     * The value type is the type returned by the field's {@code get} method, or {@code long}
+     * for the address held by a {@code Pointer} field.  The accessor methods are generated with
+     * the field offsets as constants, and access direct memory by address, so they are faster
+     * than the field methods in tight loops.
+     *
+     * @param accessorInterface the accessor interface.
+     * @return an instance of {@code accessorInterface} for this layout.
+     */
+    public final <T> T newAccessor(Class<T> accessorInterface) {
+        return runtime.getMemoryManager().newStructAccessor(this, accessorInterface);
+    }
+
+    /**
+     * Copies a struct with this layout to a java array in a single bulk transfer.
+     *
+     * @param struct the memory of the struct.
+     * @param dst the array to copy the struct to.
+     * @param idx the index in {@code dst} to copy the struct to.
+     */
+    public final void copyTo(jnr.ffi.Pointer struct, byte[] dst, int idx) {
+        struct.get(offset, dst, idx, size());
+    }
+
+    /**
+     * Copies a struct with this layout from a java array in a single bulk transfer.
+     *
+     * @param struct the memory of the struct.
+     * @param src the array to copy the struct from.
+     * @param idx the index in {@code src} to copy the struct from.
+     */
+    public final void copyFrom(jnr.ffi.Pointer struct, byte[] src, int idx) {
+        struct.put(offset, src, idx, size());
+    }
+
+    /**
+     * Copies a struct with this layout to the current position of a buffer, and advances the position past it.
+     *
+     * @param struct the memory of the struct.
+     * @param dst the buffer to copy the struct to.
+     * @throws BufferOverflowException if the struct does not fit in the remaining space in {@code dst}.
+     */
+    public final void copyTo(jnr.ffi.Pointer struct, ByteBuffer dst) {
+        Struct.copyTo(struct, offset, size(), dst);
+    }
+
+    /**
+     * Copies a struct with this layout from the current position of a buffer, and advances the position past it.
+     *
+     * @param struct the memory of the struct.
+     * @param src the buffer to copy the struct from.
+     * @throws BufferUnderflowException if fewer than {@code size()} bytes remain in {@code src}.
+     */
+    public final void copyFrom(jnr.ffi.Pointer struct, ByteBuffer src) {
+        Struct.copyFrom(src, struct, offset, size());
+    }
+
     /**
      * Returns a human readable {@link java.lang.String} representation of the structure.
      *
@@ -43,27 +124,72 @@ public class StructLayout implements Type {
      */
     @Override
     public java.lang.String toString() {
-        StringBuilder sb = new StringBuilder();
-        java.lang.reflect.Field[] fields = getClass().getDeclaredFields();
+        final StringBuilder sb = new StringBuilder();
         sb.append(getClass().getSimpleName()).append(" { \n");
-        final java.lang.String fieldPrefix = "    ";
-        for (java.lang.reflect.Field field : fields) {
-            try {
-                sb.append(fieldPrefix).append('\n');
-            } catch (Throwable ex) {
-                throw new RuntimeException(ex);
+        StructDescriptor.of(this).accept((jnr.ffi.Pointer) null, new StructDescriptor.Visitor() {
+            public void visit(java.lang.String name, Object field, jnr.ffi.Pointer memory, long offset) {
+                sb.append("    ").append(name).append(" @ ").append(offset).append('\n');
             }
-        }
+        });
         sb.append("}\n");
 
         return sb.toString();
     }
 
+    /**
+     * Returns a human readable {@link java.lang.String} representation of a struct with this layout.
+     *
+     * @param ptr the memory of the struct.
+     * @return a <tt>String representation of the struct.
+     */
+    public java.lang.String toString(jnr.ffi.Pointer ptr) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getSimpleName()).append(" { \n");
+        StructDescriptor.of(this).accept(ptr, new StructDescriptor.Visitor() {
+            public void visit(java.lang.String name, Object field, jnr.ffi.Pointer memory, long offset) {
+                java.lang.String value = field instanceof NumberField ? ((NumberField) field).toString(memory)
+                        : field instanceof AbstractBoolean ? ((AbstractBoolean) field).toString(memory)
+                        : field instanceof BitField ? ((BitField) field).toString(memory)
+                        : field instanceof UTFString ? ((UTFString) field).get(memory)
+                        : field instanceof NumberArrayField ? ((NumberArrayField) field).toString(memory)
+                        : null;
+                if (value != null) {
+                    sb.append("    ").append(name).append(" = ").append(value).append('\n');
+                }
+            }
+        });
+        sb.append("}\n");
+
+        return sb.toString();
+    }
+
+    /**
+     * Compares two structs with this layout byte for byte.
+     *
+     * @param a the memory of a struct.
+     * @param b the memory of another struct.
+     * @return <tt>true</tt> if the memory of both structs holds the same bytes.
+     */
+    public final boolean contentEquals(jnr.ffi.Pointer a, jnr.ffi.Pointer b) {
+        return StructDescriptor.contentEquals(a, offset, b, offset, size());
+    }
+
+    /**
+     * Computes a hash code from the memory of a struct with this layout, consistent with {@link #contentEquals}.
+     *
+     * @param ptr the memory of the struct.
+     * @return a hash code of the struct memory.
+     */
+    public final int contentHashCode(jnr.ffi.Pointer ptr) {
+        return StructDescriptor.contentHashCode(ptr, offset, size());
+    }
+
     private static int align(int offset, int alignment) {
         return (offset + alignment - 1) & ~(alignment - 1);
     }
 
     protected final int addField(int fieldSize, int fieldAlign, int offset) {
+        this.bitFieldUnit = -1;
         this.size = Math.max(this.size, offset + fieldSize);
         this.alignment = Math.max(this.alignment, fieldAlign);
         this.paddedSize = align(this.size, this.alignment);
@@ -147,6 +273,7 @@ public class StructLayout implements Type {
     }
 
     protected final <T extends StructLayout> T inner(T structLayout) {
+        this.bitFieldUnit = -1;
         structLayout.offset = align(this.size, structLayout.alignment);
         structLayout.enclosing = this;
         this.size = structLayout.offset + structLayout.size;
@@ -155,6 +282,18 @@ public class StructLayout implements Type {
         return structLayout;
     }
 
+    /**
+     * Gets the offset of this layout within the outermost layout enclosing it.
+     */
+    private long absoluteOffset() {
+        long offset = 0;
+        for (StructLayout layout = this; layout != null; layout = layout.enclosing) {
+            offset += layout.offset;
+        }
+
+        return offset;
+    }
+
 /**
      * Base implementation of Member
      */
@@ -189,7 +328,7 @@ public class StructLayout implements Type {
          * Gets the offset within the structure for this field.
          */
         public final long offset() {
-            return offset + StructLayout.this.offset;
+            return offset + StructLayout.this.absoluteOffset();
         }
     }
 
@@ -266,12 +405,16 @@ public class StructLayout implements Type {
      * Base class for all Number structure fields.
      */
     protected abstract class NumberField extends AbstractField {
+        final NativeType type;
+
         protected NumberField(NativeType type) {
             super(type);
+            this.type = type;
         }
 
         protected NumberField(NativeType type, Offset offset) {
             super(type, offset);
+            this.type = type;
         }
 
         /**
@@ -1177,6 +1320,339 @@ public class StructLayout implements Type {
         }
     }
 
+    /**
+     * Base class for fixed length arrays of numbers stored inline in a struct, such as a C
+     * {@code int values[16]} field.
+     */
+    protected abstract class NumberArrayField extends AbstractField {
+        private final NativeType type;
+        private final int length;
+        private final int elementSize;
+
+        protected NumberArrayField(NativeType type, int length) {
+            super(getRuntime().findType(type).size() * length, getRuntime().findType(type).alignment());
+            this.type = type;
+            this.length = length;
+            this.elementSize = getRuntime().findType(type).size();
+        }
+
+        /**
+         * Gets the number of elements in this array.
+         *
+         * @return the array length.
+         */
+        public final int length() {
+            return length;
+        }
+
+        /**
+         * Gets the offset within the structure of an element.
+         *
+         * @param index the index of the element.
+         * @return the offset of the element.
+         */
+        public final long offsetOf(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+            }
+
+            return offset() + ((long) index * elementSize);
+        }
+
+        final long offsetOf(int first, int count, int arrayLength, int arrayIndex) {
+            if (first < 0 || count < 0 || first + count > length || arrayIndex < 0 || arrayIndex + count > arrayLength) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            return offset() + ((long) first * elementSize);
+        }
+
+        /**
+         * Returns a string representation of the elements of this array.
+         *
+         * @param ptr the memory of the struct.
+         * @return a string representation of the array.
+         */
+        public java.lang.String toString(jnr.ffi.Pointer ptr) {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < length; i++) {
+                long offset = offsetOf(i);
+                sb.append(i > 0 ? ", " : "");
+                switch (type) {
+                    case FLOAT:
+                        sb.append(ptr.getFloat(offset));
+                        break;
+                    case DOUBLE:
+                        sb.append(ptr.getDouble(offset));
+                        break;
+                    default:
+                        sb.append(elementSize == 1 ? ptr.getByte(offset) : elementSize == 2 ? ptr.getShort(offset)
+                                : elementSize == 4 ? ptr.getInt(offset) : ptr.getLongLong(offset));
+                        break;
+                }
+            }
+
+            return sb.append(']').toString();
+        }
+    }
+
+    /**
+     * An inline array of 8 bit signed integers.
+     */
+    public final class Signed8Array extends NumberArrayField {
+        public Signed8Array(int length) {
+            super(NativeType.SCHAR, length);
+        }
+
+        public final byte get(jnr.ffi.Pointer ptr, int index) {
+            return ptr.getByte(offsetOf(index));
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int index, byte value) {
+            ptr.putByte(offsetOf(index), value);
+        }
+
+        public final void get(jnr.ffi.Pointer ptr, int first, byte[] dst, int idx, int count) {
+            ptr.get(offsetOf(first, count, dst.length, idx), dst, idx, count);
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int first, byte[] src, int idx, int count) {
+            ptr.put(offsetOf(first, count, src.length, idx), src, idx, count);
+        }
+    }
+
+    /**
+     * An inline array of 16 bit signed integers.
+     */
+    public final class Signed16Array extends NumberArrayField {
+        public Signed16Array(int length) {
+            super(NativeType.SSHORT, length);
+        }
+
+        public final short get(jnr.ffi.Pointer ptr, int index) {
+            return ptr.getShort(offsetOf(index));
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int index, short value) {
+            ptr.putShort(offsetOf(index), value);
+        }
+
+        public final void get(jnr.ffi.Pointer ptr, int first, short[] dst, int idx, int count) {
+            ptr.get(offsetOf(first, count, dst.length, idx), dst, idx, count);
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int first, short[] src, int idx, int count) {
+            ptr.put(offsetOf(first, count, src.length, idx), src, idx, count);
+        }
+    }
+
+    /**
+     * An inline array of 32 bit signed integers.
+     */
+    public final class Signed32Array extends NumberArrayField {
+        public Signed32Array(int length) {
+            super(NativeType.SINT, length);
+        }
+
+        public final int get(jnr.ffi.Pointer ptr, int index) {
+            return ptr.getInt(offsetOf(index));
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int index, int value) {
+            ptr.putInt(offsetOf(index), value);
+        }
+
+        public final void get(jnr.ffi.Pointer ptr, int first, int[] dst, int idx, int count) {
+            ptr.get(offsetOf(first, count, dst.length, idx), dst, idx, count);
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int first, int[] src, int idx, int count) {
+            ptr.put(offsetOf(first, count, src.length, idx), src, idx, count);
+        }
+    }
+
+    /**
+     * An inline array of 64 bit signed integers.
+     */
+    public final class Signed64Array extends NumberArrayField {
+        public Signed64Array(int length) {
+            super(NativeType.SLONGLONG, length);
+        }
+
+        public final long get(jnr.ffi.Pointer ptr, int index) {
+            return ptr.getLongLong(offsetOf(index));
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int index, long value) {
+            ptr.putLongLong(offsetOf(index), value);
+        }
+
+        public final void get(jnr.ffi.Pointer ptr, int first, long[] dst, int idx, int count) {
+            ptr.get(offsetOf(first, count, dst.length, idx), dst, idx, count);
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int first, long[] src, int idx, int count) {
+            ptr.put(offsetOf(first, count, src.length, idx), src, idx, count);
+        }
+    }
+
+    /**
+     * An inline array of {@code float} values.
+     */
+    public final class FloatArray extends NumberArrayField {
+        public FloatArray(int length) {
+            super(NativeType.FLOAT, length);
+        }
+
+        public final float get(jnr.ffi.Pointer ptr, int index) {
+            return ptr.getFloat(offsetOf(index));
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int index, float value) {
+            ptr.putFloat(offsetOf(index), value);
+        }
+
+        public final void get(jnr.ffi.Pointer ptr, int first, float[] dst, int idx, int count) {
+            ptr.get(offsetOf(first, count, dst.length, idx), dst, idx, count);
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int first, float[] src, int idx, int count) {
+            ptr.put(offsetOf(first, count, src.length, idx), src, idx, count);
+        }
+    }
+
+    /**
+     * An inline array of {@code double} values.
+     */
+    public final class DoubleArray extends NumberArrayField {
+        public DoubleArray(int length) {
+            super(NativeType.DOUBLE, length);
+        }
+
+        public final double get(jnr.ffi.Pointer ptr, int index) {
+            return ptr.getDouble(offsetOf(index));
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int index, double value) {
+            ptr.putDouble(offsetOf(index), value);
+        }
+
+        public final void get(jnr.ffi.Pointer ptr, int first, double[] dst, int idx, int count) {
+            ptr.get(offsetOf(first, count, dst.length, idx), dst, idx, count);
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int first, double[] src, int idx, int count) {
+            ptr.put(offsetOf(first, count, src.length, idx), src, idx, count);
+        }
+    }
+
+    /**
+     * A string stored inline in a struct, such as a C {@code char name[32]} field.
+     */
+    public class UTFString extends AbstractField {
+        private final int length;
+        private final Charset charset;
+
+        public UTFString(int length, Charset cs) {
+            super(length, 1);
+            this.length = length;
+            this.charset = cs;
+        }
+
+        /**
+         * Gets the size in bytes of the string field.
+         *
+         * @return the maximum length of the string, including the terminating nul.
+         */
+        public final int length() {
+            return length;
+        }
+
+        public final java.lang.String get(jnr.ffi.Pointer ptr) {
+            return ptr.getString(offset(), length, charset);
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, java.lang.String value) {
+            ptr.putString(offset(), value, length, charset);
+        }
+    }
+
+    public class UTF8String extends UTFString {
+        public UTF8String(int size) {
+            super(size, Struct.UTF8);
+        }
+    }
+
+    public class AsciiString extends UTFString {
+        public AsciiString(int size) {
+            super(size, Struct.ASCII);
+        }
+    }
+
+    /**
+     * An unsigned bit field, laid out as a C compiler lays out {@code unsigned int name : bits}.
+     *
+     * <p>Consecutive bit fields are packed into the same 32 bit unit for as long as they fit;
+     * a bit field which does not fit, or follows any other kind of field, starts a new unit.
+     * The position and mask of the bits are computed when the field is created.
+     *
+     * <p>Setting a bit field reads and rewrites the whole unit, so bit fields sharing a unit
+     * must not be set concurrently.
+     */
+    public final class BitField implements Field {
+        private final int unit;
+        private final int shift;
+        private final int mask;
+
+        /**
+         * Creates a new bit field.
+         *
+         * @param bits the width of the field, from 1 to 32 bits.
+         */
+        public BitField(int bits) {
+            if (bits < 1 || bits > 32) {
+                throw new IllegalArgumentException("invalid bit field width " + bits);
+            }
+
+            if (bitFieldUnit < 0 || resetIndex || bitFieldPosition + bits > 32) {
+                int offset = addField(4, 4);
+                bitFieldUnit = offset;
+                bitFieldPosition = 0;
+            }
+
+            this.unit = bitFieldUnit;
+            this.mask = bits == 32 ? -1 : (1 << bits) - 1;
+            this.shift = getRuntime().byteOrder() == ByteOrder.LITTLE_ENDIAN
+                    ? bitFieldPosition : 32 - bitFieldPosition - bits;
+            bitFieldPosition += bits;
+        }
+
+        public final StructLayout enclosing() {
+            return StructLayout.this;
+        }
+
+        /**
+         * Gets the offset within the structure of the 32 bit unit holding this field.
+         */
+        public final long offset() {
+            return unit + StructLayout.this.absoluteOffset();
+        }
+
+        public final int get(jnr.ffi.Pointer ptr) {
+            return (ptr.getInt(offset()) >>> shift) & mask;
+        }
+
+        public final void set(jnr.ffi.Pointer ptr, int value) {
+            final long offset = offset();
+            final int bits = ptr.getInt(offset);
+            ptr.putInt(offset, (bits & ~(mask << shift)) | ((value & mask) << shift));
+        }
+
+        public final java.lang.String toString(jnr.ffi.Pointer ptr) {
+            return java.lang.Integer.toString(get(ptr));
+        }
+    }
+
     /**
      * Specialized padding fields for structs.  Use this instead of arrays of other
      * members for more efficient struct construction.
@@ -36,9 +36,12 @@ import java.lang.annotation.Target;
  * with the {@link com.kenai.jaffl.struct.Struct} instance, and will remain allocated
  * for as long as the {@code Struct} instance remains strongly referenced by java code.
  *
+ * <p>When a {@link jnr.ffi.Struct} class is annotated with {@code @Direct}, all its instances
+ * are backed by native memory from the start, as if created with {@link jnr.ffi.StructAllocator#DIRECT}.
+ *
  */
 @Retention(RetentionPolicy.RUNTIME)
-@Target(ElementType.PARAMETER)
+@Target({ ElementType.PARAMETER, ElementType.TYPE })
 public @interface Direct {
 
 }
@@ -32,8 +32,15 @@ public abstract class AbstractArrayMemoryIO extends AbstractMemoryIO {
     protected final int offset, length;
 
     protected AbstractArrayMemoryIO(Runtime runtime, byte[] buffer, int offset, int length) {
+        this(runtime, buffer, offset, length, ArrayIO.getArrayIO(runtime));
+    }
+
+    /**
+     * Creates a new array memory that loads and stores values with a provider supplied {@code ArrayIO}.
+     */
+    protected AbstractArrayMemoryIO(Runtime runtime, byte[] buffer, int offset, int length, ArrayIO io) {
         super(runtime);
-        this.io = ArrayIO.getArrayIO(runtime);
+        this.io = io;
         this.buffer = buffer;
         this.offset = offset;
         this.length = length;
@@ -93,15 +93,17 @@ abstract public class AbstractMemoryIO extends Pointer {
     public void transferTo(long offset, Pointer other, long otherOffset, long count) {
         Pointer dst = other instanceof DelegatingMemoryIO ? ((DelegatingMemoryIO) other).getDelegatedMemoryIO() : other;
 
-        dst.checkBounds(otherOffset, count);
+        other.checkBounds(otherOffset, count);
+        // A view reports the address of the memory it wraps plus its own offset into it
+        long dstOffset = otherOffset + (other.address() - dst.address());
 
         if (dst instanceof AbstractArrayMemoryIO) {
             AbstractArrayMemoryIO aio = (AbstractArrayMemoryIO) dst;
-            get(offset, aio.array(), aio.offset() + (int) otherOffset, (int) count);
+            get(offset, aio.array(), aio.offset() + (int) dstOffset, (int) count);
 
         } else if (dst instanceof AbstractBufferMemoryIO && ((AbstractBufferMemoryIO) dst).getByteBuffer().hasArray()) {
             ByteBuffer buf = ((AbstractBufferMemoryIO) dst).getByteBuffer();
-            get(offset, buf.array(), buf.arrayOffset() + buf.position() + (int) otherOffset, (int) count);
+            get(offset, buf.array(), buf.arrayOffset() + buf.position() + (int) dstOffset, (int) count);
 
         } else {
             for (long i = 0; i < count; ++i) {
@@ -113,15 +115,16 @@ abstract public class AbstractMemoryIO extends Pointer {
     public void transferFrom(long offset, Pointer other, long otherOffset, long count) {
         Pointer src = other instanceof DelegatingMemoryIO ? ((DelegatingMemoryIO) other).getDelegatedMemoryIO() : other;
 
-        src.checkBounds(otherOffset, count);
+        other.checkBounds(otherOffset, count);
+        long srcOffset = otherOffset + (other.address() - src.address());
 
         if (src instanceof AbstractArrayMemoryIO) {
             AbstractArrayMemoryIO aio = (AbstractArrayMemoryIO) src;
-            put(offset, aio.array(), aio.offset() + (int) otherOffset, (int) count);
+            put(offset, aio.array(), aio.offset() + (int) srcOffset, (int) count);
 
         } else if (src instanceof AbstractBufferMemoryIO && ((AbstractBufferMemoryIO) src).getByteBuffer().hasArray()) {
             ByteBuffer buf = ((AbstractBufferMemoryIO) src).getByteBuffer();
-            put(offset, buf.array(), buf.arrayOffset() + buf.position() + (int) otherOffset, (int) count);
+            put(offset, buf.array(), buf.arrayOffset() + buf.position() + (int) srcOffset, (int) count);
         
         } else {
             // Do a byte-at-a-time copy
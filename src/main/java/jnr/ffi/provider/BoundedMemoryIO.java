@@ -118,7 +118,7 @@ public final class BoundedMemoryIO extends AbstractMemoryIO implements Delegatin
     }
     
     public Pointer getPointer(long offset, long size) {
-        checkBounds(this.size, base + offset, getRuntime().addressSize());
+        checkBounds(this.size, offset, getRuntime().addressSize());
         return io.getPointer(base + offset, size);
     }
 
@@ -287,19 +287,79 @@ public final class BoundedMemoryIO extends AbstractMemoryIO implements Delegatin
 
     @Override
     public void setMemory(long offset, long size, byte value) {
-        checkBounds(this.size, base + offset, size);
+        checkBounds(this.size, offset, size);
         io.setMemory(base + offset, size, value);
     }
 
     @Override
     public void transferFrom(long offset, Pointer other, long otherOffset, long count) {
-        checkBounds(this.size, base + offset, count);
-        getDelegatedMemoryIO().transferFrom(offset, other, otherOffset, count);
+        checkBounds(this.size, offset, count);
+        getDelegatedMemoryIO().transferFrom(base + offset, other, otherOffset, count);
     }
 
     @Override
     public void transferTo(long offset, Pointer other, long otherOffset, long count) {
-        checkBounds(this.size, base + offset, count);
-        getDelegatedMemoryIO().transferTo(offset, other, otherOffset, count);
+        checkBounds(this.size, offset, count);
+        getDelegatedMemoryIO().transferTo(base + offset, other, otherOffset, count);
+    }
+
+    @Override
+    public int getIntVolatile(long offset) {
+        checkBounds(size, offset, 4);
+        return io.getIntVolatile(base + offset);
+    }
+
+    @Override
+    public void putIntVolatile(long offset, int value) {
+        checkBounds(size, offset, 4);
+        io.putIntVolatile(base + offset, value);
+    }
+
+    @Override
+    public void putIntOrdered(long offset, int value) {
+        checkBounds(size, offset, 4);
+        io.putIntOrdered(base + offset, value);
+    }
+
+    @Override
+    public boolean compareAndSetInt(long offset, int expected, int value) {
+        checkBounds(size, offset, 4);
+        return io.compareAndSetInt(base + offset, expected, value);
+    }
+
+    @Override
+    public int getAndAddInt(long offset, int delta) {
+        checkBounds(size, offset, 4);
+        return io.getAndAddInt(base + offset, delta);
+    }
+
+    @Override
+    public long getLongLongVolatile(long offset) {
+        checkBounds(size, offset, 8);
+        return io.getLongLongVolatile(base + offset);
+    }
+
+    @Override
+    public void putLongLongVolatile(long offset, long value) {
+        checkBounds(size, offset, 8);
+        io.putLongLongVolatile(base + offset, value);
+    }
+
+    @Override
+    public void putLongLongOrdered(long offset, long value) {
+        checkBounds(size, offset, 8);
+        io.putLongLongOrdered(base + offset, value);
+    }
+
+    @Override
+    public boolean compareAndSetLongLong(long offset, long expected, long value) {
+        checkBounds(size, offset, 8);
+        return io.compareAndSetLongLong(base + offset, expected, value);
+    }
+
+    @Override
+    public long getAndAddLongLong(long offset, long delta) {
+        checkBounds(size, offset, 8);
+        return io.getAndAddLongLong(base + offset, delta);
     }
 }
@@ -18,8 +18,18 @@
 
 package jnr.ffi.provider;
 
+import jnr.ffi.AllocationOption;
+import jnr.ffi.MapMode;
+import jnr.ffi.MemoryAdvice;
+import jnr.ffi.MemoryArena;
+import jnr.ffi.MemoryCursor;
 import jnr.ffi.Pointer;
+import jnr.ffi.StructLayout;
+
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Map;
 
 /**
  * Manages access to various types of java and native memory.
@@ -29,8 +39,102 @@ public interface MemoryManager {
     public abstract Pointer allocateDirect(int size);
     public abstract Pointer allocateDirect(int size, boolean clear);
     public abstract Pointer allocateTemporary(int size, boolean clear);
+
+    /**
+     * Allocates a large block of native memory directly from the operating system.
+     *
+     * @param size the number of bytes to allocate.
+     * @param options how the memory should be allocated.  Options the platform does not
+     * support are ignored.
+     * @return a direct {@link Pointer} bounded to the allocated memory.  The memory is zeroed.
+     */
+    public abstract Pointer allocateDirect(long size, Map<AllocationOption, ?> options);
     public abstract Pointer newPointer(ByteBuffer buffer);
     public abstract Pointer newPointer(long address);
     public abstract Pointer newPointer(long address, long size);
     public abstract Pointer newOpaquePointer(long address);
+
+    /**
+     * Creates a new {@link MemoryCursor} over native memory.
+     *
+     * @param address the address the cursor starts at.
+     * @return a new cursor.
+     */
+    public abstract MemoryCursor newCursor(long address);
+    public abstract MemoryArena newArena();
+    public abstract MemoryArena newArena(int chunkSize);
+
+    /**
+     * Opens a new scope on the current thread's temporary memory stack.  Until the scope
+     * is closed, {@link #allocateTemporary(int, boolean)} on this thread allocates from it.
+     * Scopes must be closed in the reverse order they were opened.
+     *
+     * @return a {@link MemoryArena} that releases all temporary memory allocated in it when closed.
+     */
+    public abstract MemoryArena openTemporaryScope();
+
+    /**
+     * Creates a view of native memory that is not bounds checked.
+     *
+     * @param pointer the memory to create a view of.
+     * @return a {@link Pointer} to the same memory, which does not check accesses are in bounds.
+     */
+    public abstract Pointer unchecked(Pointer pointer);
+
+    /**
+     * Immediately frees native memory allocated by one of the {@code allocateDirect} methods, instead of
+     * waiting for the garbage collector to reclaim it.  Pointers not allocated
+     * by this memory manager are ignored.
+     *
+     * @param pointer the pointer to free.  It must not be used after this call.
+     */
+    public abstract void dispose(Pointer pointer);
+
+    /**
+     * Maps a region of a file into memory.
+     *
+     * @param file the file to map.
+     * @param mode how the memory is to be accessed.
+     * @param offset the offset in the file of the start of the region.
+     * @param length the length in bytes of the region.
+     * @return a direct {@link Pointer} bounded to the mapped region.
+     * @throws IOException if the file could not be opened or mapped.
+     */
+    public abstract Pointer map(File file, MapMode mode, long offset, long length) throws IOException;
+
+    /**
+     * Immediately unmaps memory mapped by {@link #map}, instead of waiting for the garbage
+     * collector to reclaim it.
+     *
+     * @param pointer the pointer returned from {@code map}.  It must not be used after this call.
+     */
+    public abstract void unmap(Pointer pointer);
+
+    /**
+     * Advises the operating system how the memory mapped by {@link #map} will be accessed.
+     *
+     * @param pointer the mapped memory, or a slice of it.
+     * @param advice the expected access pattern.
+     * @return true if the operating system accepted the advice.
+     */
+    public abstract boolean advise(Pointer pointer, MemoryAdvice advice);
+
+    /**
+     * Writes changes made to the memory mapped by {@link #map} back to the file.
+     *
+     * @param pointer the mapped memory, or a slice of it.
+     * @param async whether to schedule the write and return immediately, instead of waiting for it.
+     * @throws IOException if the changes could not be written.
+     */
+    public abstract void sync(Pointer pointer, boolean async) throws IOException;
+
+    /**
+     * Creates an implementation of an accessor interface for the fields of a {@link StructLayout}.
+     *
+     * @param layout the struct layout.
+     * @param accessorInterface the accessor interface.
+     * @return an instance of {@code accessorInterface}.
+     * @see StructLayout#newAccessor(Class)
+     */
+    public abstract <T> T newStructAccessor(StructLayout layout, Class<T> accessorInterface);
 }
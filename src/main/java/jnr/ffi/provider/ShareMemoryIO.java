@@ -222,4 +222,64 @@ public class ShareMemoryIO extends AbstractMemoryIO implements DelegatingMemoryI
     public void setMemory(long offset, long size, byte value) {
         ptr.setMemory(base + offset, size, value);
     }
+
+    @Override
+    public void transferFrom(long offset, Pointer other, long otherOffset, long count) {
+        ptr.transferFrom(base + offset, other, otherOffset, count);
+    }
+
+    @Override
+    public void transferTo(long offset, Pointer other, long otherOffset, long count) {
+        ptr.transferTo(base + offset, other, otherOffset, count);
+    }
+
+    @Override
+    public int getIntVolatile(long offset) {
+        return ptr.getIntVolatile(base + offset);
+    }
+
+    @Override
+    public void putIntVolatile(long offset, int value) {
+        ptr.putIntVolatile(base + offset, value);
+    }
+
+    @Override
+    public void putIntOrdered(long offset, int value) {
+        ptr.putIntOrdered(base + offset, value);
+    }
+
+    @Override
+    public boolean compareAndSetInt(long offset, int expected, int value) {
+        return ptr.compareAndSetInt(base + offset, expected, value);
+    }
+
+    @Override
+    public int getAndAddInt(long offset, int delta) {
+        return ptr.getAndAddInt(base + offset, delta);
+    }
+
+    @Override
+    public long getLongLongVolatile(long offset) {
+        return ptr.getLongLongVolatile(base + offset);
+    }
+
+    @Override
+    public void putLongLongVolatile(long offset, long value) {
+        ptr.putLongLongVolatile(base + offset, value);
+    }
+
+    @Override
+    public void putLongLongOrdered(long offset, long value) {
+        ptr.putLongLongOrdered(base + offset, value);
+    }
+
+    @Override
+    public boolean compareAndSetLongLong(long offset, long expected, long value) {
+        return ptr.compareAndSetLongLong(base + offset, expected, value);
+    }
+
+    @Override
+    public long getAndAddLongLong(long offset, long delta) {
+        return ptr.getAndAddLongLong(base + offset, delta);
+    }
 }
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.provider.AbstractMemoryIO;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The accessors shared by all native memory, read and written at {@link #address()}.
+ * {@link DirectMemoryIO} has a fixed address; a {@link DirectMemoryCursor} can be moved.
+ */
+abstract class AbstractDirectMemoryIO extends AbstractMemoryIO {
+    static final com.kenai.jffi.MemoryIO IO = com.kenai.jffi.MemoryIO.getInstance();
+
+    protected AbstractDirectMemoryIO(Runtime runtime) {
+        super(runtime);
+    }
+
+    public long size() {
+        return Long.MAX_VALUE;
+    }
+
+    public String toString() {
+        return String.format(getClass().getName() + "[address=%x]", address());
+    }
+
+    public final byte getByte(long offset) {
+        return IO.getByte(address() + offset);
+    }
+
+    public final short getShort(long offset) {
+        return IO.getShort(address() + offset);
+    }
+
+    public final int getInt(long offset) {
+        return IO.getInt(address() + offset);
+    }
+
+    public final long getLong(long offset) {
+        return IO.getLong(address() + offset);
+    }
+    
+    public final long getLongLong(long offset) {
+        return IO.getLong(address() + offset);
+    }
+
+    public final float getFloat(long offset) {
+        return IO.getFloat(address() + offset);
+    }
+
+    public final double getDouble(long offset) {
+        return IO.getDouble(address() + offset);
+    }
+
+    public final void putByte(long offset, byte value) {
+        IO.putByte(address() + offset, value);
+    }
+
+    public final void putShort(long offset, short value) {
+        IO.putShort(address() + offset, value);
+    }
+
+    public final void putInt(long offset, int value) {
+        IO.putInt(address() + offset, value);
+    }
+
+    public final void putLong(long offset, long value) {
+        IO.putLong(address() + offset, value);
+    }
+    
+    public final void putLongLong(long offset, long value) {
+        IO.putLong(address() + offset, value);
+    }
+
+    public final void putFloat(long offset, float value) {
+        IO.putFloat(address() + offset, value);
+    }
+
+    public final void putDouble(long offset, double value) {
+        IO.putDouble(address() + offset, value);
+    }
+
+    public final void get(long offset, byte[] dst, int off, int len) {
+        IO.getByteArray(address() + offset, dst, off, len);
+    }
+
+    public final void put(long offset, byte[] src, int off, int len) {
+        IO.putByteArray(address() + offset, src, off, len);
+    }
+
+    public final void get(long offset, short[] dst, int off, int len) {
+        IO.getShortArray(address() + offset, dst, off, len);
+    }
+
+    public final void put(long offset, short[] src, int off, int len) {
+        IO.putShortArray(address() + offset, src, off, len);
+    }
+
+    public final void get(long offset, int[] dst, int off, int len) {
+        IO.getIntArray(address() + offset, dst, off, len);
+    }
+
+    public final void put(long offset, int[] src, int off, int len) {
+        IO.putIntArray(address() + offset, src, off, len);
+    }
+
+    public final void get(long offset, long[] dst, int off, int len) {
+        IO.getLongArray(address() + offset, dst, off, len);
+    }
+
+    public final void put(long offset, long[] src, int off, int len) {
+        IO.putLongArray(address() + offset, src, off, len);
+    }
+
+    public final void get(long offset, float[] dst, int off, int len) {
+        IO.getFloatArray(address() + offset, dst, off, len);
+    }
+
+    public final void put(long offset, float[] src, int off, int len) {
+        IO.putFloatArray(address() + offset, src, off, len);
+    }
+
+    public final void get(long offset, double[] dst, int off, int len) {
+        IO.getDoubleArray(address() + offset, dst, off, len);
+    }
+
+    public final void put(long offset, double[] src, int off, int len) {
+        IO.putDoubleArray(address() + offset, src, off, len);
+    }
+
+    public Pointer getPointer(long offset) {
+        return MemoryUtil.newPointer(IO.getAddress(address() + offset));
+    }
+    
+    public Pointer getPointer(long offset, long size) {
+        return MemoryUtil.newPointer(IO.getAddress(address() + offset), size);
+    }
+
+    public void putPointer(long offset, Pointer value) {
+        IO.putAddress(address() + offset, value.address());
+    }
+
+    public String getString(long offset) {
+        return Charset.defaultCharset().decode(ByteBuffer.wrap(IO.getZeroTerminatedByteArray(address() + offset))).toString();
+    }
+
+
+    public String getString(long offset, int maxLength, Charset cs) {
+        final byte[] bytes = IO.getZeroTerminatedByteArray(address() + offset, maxLength);
+        return Charset.defaultCharset().decode(ByteBuffer.wrap(bytes)).toString();
+    }
+
+    public void putString(long offset, String string, int maxLength, Charset cs) {
+        ByteBuffer buf = cs.encode(string);
+        int len = Math.min(maxLength, buf.remaining());
+        IO.putZeroTerminatedByteArray(address() + offset, buf.array(), buf.arrayOffset() + buf.position(), len);
+    }
+
+    public void putZeroTerminatedByteArray(long offset, byte[] src, int off, int len) {
+        IO.putZeroTerminatedByteArray(address() + offset, src, off, len);
+    }
+
+
+    public int indexOf(long offset, byte value, int maxlen) {
+        return (int) IO.indexOf(address() + offset, value, maxlen);
+    }
+
+    public final boolean isDirect() {
+        return true;
+    }
+
+    public final void setMemory(long offset, long size, byte value) {
+        IO.setMemory(address() + offset, size, value);
+    }
+
+    @Override
+    public void transferTo(long offset, Pointer dst, long dstOffset, long count) {
+        MemoryTransfer.copy(this, offset, dst, dstOffset, count);
+    }
+
+    @Override
+    public void transferFrom(long offset, Pointer src, long srcOffset, long count) {
+        MemoryTransfer.copy(src, srcOffset, this, offset, count);
+    }
+
+    @Override
+    public int getIntVolatile(long offset) {
+        return NativeAtomics.AVAILABLE ? NativeAtomics.getIntVolatile(address() + offset) : super.getIntVolatile(offset);
+    }
+
+    @Override
+    public void putIntVolatile(long offset, int value) {
+        if (NativeAtomics.AVAILABLE) {
+            NativeAtomics.putIntVolatile(address() + offset, value);
+        } else {
+            super.putIntVolatile(offset, value);
+        }
+    }
+
+    @Override
+    public void putIntOrdered(long offset, int value) {
+        if (NativeAtomics.AVAILABLE) {
+            NativeAtomics.putIntOrdered(address() + offset, value);
+        } else {
+            super.putIntOrdered(offset, value);
+        }
+    }
+
+    @Override
+    public boolean compareAndSetInt(long offset, int expected, int value) {
+        return NativeAtomics.AVAILABLE
+                ? NativeAtomics.compareAndSetInt(address() + offset, expected, value)
+                : super.compareAndSetInt(offset, expected, value);
+    }
+
+    @Override
+    public int getAndAddInt(long offset, int delta) {
+        return NativeAtomics.AVAILABLE ? NativeAtomics.getAndAddInt(address() + offset, delta) : super.getAndAddInt(offset, delta);
+    }
+
+    @Override
+    public long getLongLongVolatile(long offset) {
+        return NativeAtomics.AVAILABLE ? NativeAtomics.getLongVolatile(address() + offset) : super.getLongLongVolatile(offset);
+    }
+
+    @Override
+    public void putLongLongVolatile(long offset, long value) {
+        if (NativeAtomics.AVAILABLE) {
+            NativeAtomics.putLongVolatile(address() + offset, value);
+        } else {
+            super.putLongLongVolatile(offset, value);
+        }
+    }
+
+    @Override
+    public void putLongLongOrdered(long offset, long value) {
+        if (NativeAtomics.AVAILABLE) {
+            NativeAtomics.putLongOrdered(address() + offset, value);
+        } else {
+            super.putLongLongOrdered(offset, value);
+        }
+    }
+
+    @Override
+    public boolean compareAndSetLongLong(long offset, long expected, long value) {
+        return NativeAtomics.AVAILABLE
+                ? NativeAtomics.compareAndSetLong(address() + offset, expected, value)
+                : super.compareAndSetLongLong(offset, expected, value);
+    }
+
+    @Override
+    public long getAndAddLongLong(long offset, long delta) {
+        return NativeAtomics.AVAILABLE ? NativeAtomics.getAndAddLong(address() + offset, delta) : super.getAndAddLongLong(offset, delta);
+    }
+}
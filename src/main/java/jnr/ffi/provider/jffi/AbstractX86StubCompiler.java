@@ -26,11 +26,8 @@ import jnr.x86asm.Assembler;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,11 +35,6 @@ import java.util.logging.Logger;
  * Base class for most X86_32/X86_64 stub compilers
  */
 abstract class AbstractX86StubCompiler extends StubCompiler {
-    private static final class StaticDataHolder {
-        // Keep a reference from the loaded class to the pages holding the code for that class.
-        static final Map<Class, PageHolder> PAGES
-                = Collections.synchronizedMap(new WeakHashMap<Class, PageHolder>());
-    }
     final List<Stub> stubs = new LinkedList<Stub>();
 
 
@@ -58,26 +50,27 @@ abstract class AbstractX86StubCompiler extends StubCompiler {
         }
     }
 
-    static final class PageHolder {
+    /**
+     * Holds the pages containing the code for a class, until the class is unloaded.
+     */
+    static final class PageHolder extends NativeReaper.Reference {
         final PageManager pm;
         final long memory;
         final long pageCount;
 
-        public PageHolder(PageManager pm, long memory, long pageCount) {
+        public PageHolder(Class clazz, PageManager pm, long memory, long pageCount) {
+            super(clazz);
             this.pm = pm;
             this.memory = memory;
             this.pageCount = pageCount;
         }
 
-        @Override
-        protected void finalize() throws Throwable {
+        void dispose() {
             try {
                 pm.freePages(memory, (int) pageCount);
             } catch (Throwable t) {
                 Logger.getLogger(getClass().getName()).log(Level.WARNING, 
                     "Exception when freeing native pages: %s", t.getLocalizedMessage());
-            } finally {
-                super.finalize();
             }
         }
 
@@ -104,7 +97,8 @@ abstract class AbstractX86StubCompiler extends StubCompiler {
         if (code == 0) {
             throw new OutOfMemoryError("allocatePages failed for codeSize=" + codeSize);
         }
-        PageHolder page = new PageHolder(pm, code, npages);
+        // Keep the pages holding the code alive until the class is unloaded
+        new PageHolder(clazz, pm, code, npages);
 
         // Now relocate/copy all the assembler stubs into the real code area
         List<NativeMethod> methods = new ArrayList<NativeMethod>(stubs.size());
@@ -123,7 +117,6 @@ abstract class AbstractX86StubCompiler extends StubCompiler {
         pm.protectPages(code, (int) npages, PageManager.PROT_READ | PageManager.PROT_EXEC);
 
         NativeMethods.register(clazz, methods);
-        StaticDataHolder.PAGES.put(clazz, page);
     }
 
     static final int align(int offset, int align) {
@@ -19,18 +19,18 @@
 package jnr.ffi.provider.jffi;
 
 import jnr.ffi.Runtime;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 class AllocatedDirectMemoryIO extends DirectMemoryIO {
-    private final AtomicBoolean allocated = new AtomicBoolean(true);
+    private final Allocation allocation;
     private final int size;
     
     public AllocatedDirectMemoryIO(Runtime runtime, int size, boolean clear) {
-        super(runtime, IO.allocateMemory(size, clear));
+        super(runtime, allocateMemory(size, clear));
         this.size = size;
         if (address == 0L) {
             throw new OutOfMemoryError("Failed to allocate " + size + " bytes");
         }
+        this.allocation = new Allocation(this, address, size);
     }
     public AllocatedDirectMemoryIO(int size, boolean clear) {
         this(NativeRuntime.getInstance(), size, clear);
@@ -61,19 +61,49 @@ class AllocatedDirectMemoryIO extends DirectMemoryIO {
     }
 
     public final void dispose() {
-        if (allocated.getAndSet(false)) {
+        allocation.release();
+    }
+
+    private static long allocateMemory(int size, boolean clear) {
+        NativeMemoryPool pool = NativeMemoryPool.getInstance();
+        return pool != null ? pool.allocate(size, clear) : IO.allocateMemory(size, clear);
+    }
+
+    private static void freeMemory(long address, int size) {
+        NativeMemoryPool pool = NativeMemoryPool.getInstance();
+        if (pool != null) {
+            pool.free(address, size);
+        } else {
             IO.freeMemory(address);
         }
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        try {
-            if (allocated.getAndSet(false)) {
-                IO.freeMemory(address);
-            }
-        } finally {
-            super.finalize();
+    /**
+     * Frees the native memory, either when explicitly disposed, or after the
+     * {@code AllocatedDirectMemoryIO} has been garbage collected.
+     */
+    private static final class Allocation extends NativeReaper.Reference {
+        private final long address;
+        private final int size;
+        private final MemoryAccounting.Site site;
+
+        Allocation(AllocatedDirectMemoryIO owner, long address, int size) {
+            super(owner);
+            this.address = address;
+            this.size = size;
+            MemoryAccounting.allocated(size);
+            this.site = MemoryAccounting.sample(size);
+        }
+
+        @Override
+        void reaped() {
+            MemoryAccounting.undisposed(size, site);
+        }
+
+        void dispose() {
+            freeMemory(address, size);
+            MemoryAccounting.freed(size);
+            MemoryAccounting.disposed(site);
         }
     }
 }
@@ -22,15 +22,16 @@ import jnr.ffi.Pointer;
 import jnr.ffi.Runtime;
 import jnr.ffi.provider.AbstractArrayMemoryIO;
 
+import java.nio.ByteOrder;
 
 public final class ArrayMemoryIO extends AbstractArrayMemoryIO {
 
     public ArrayMemoryIO(Runtime runtime, int size) {
-        super(runtime, size);
+        super(runtime, new byte[size], 0, size, UnsafeArrayIO.forRuntime(runtime));
     }
 
     public ArrayMemoryIO(int size) {
-        super(NativeRuntime.getInstance(), size);
+        this(NativeRuntime.getInstance(), size);
     }
 
     public Pointer getPointer(long offset) {
@@ -46,4 +47,85 @@ public final class ArrayMemoryIO extends AbstractArrayMemoryIO {
     public void putPointer(long offset, Pointer value) {
         putAddress(offset, value.address());
     }
+
+    @Override
+    public void transferTo(long offset, Pointer dst, long dstOffset, long count) {
+        MemoryTransfer.copy(this, offset, dst, dstOffset, count);
+    }
+
+    @Override
+    public void transferFrom(long offset, Pointer src, long srcOffset, long count) {
+        MemoryTransfer.copy(src, srcOffset, this, offset, count);
+    }
+
+    /**
+     * Loads and stores whole values from the array with {@code sun.misc.Unsafe}, instead of
+     * assembling them a byte at a time.  Only used for native byte order, on processors which
+     * support unaligned access.
+     */
+    private static abstract class UnsafeArrayIO extends ArrayIO {
+        private static final UnsafeAccess UNSAFE = UnsafeAccess.INSTANCE;
+        private static final long BASE = UNSAFE != null ? UNSAFE.arrayBaseOffset(byte[].class) : 0;
+        private static final ArrayIO ADDRESS32, ADDRESS64;
+        static {
+            String arch = System.getProperty("os.arch", "");
+            boolean unaligned = arch.equals("x86") || arch.equals("i386") || arch.equals("i686")
+                    || arch.equals("amd64") || arch.equals("x86_64");
+            ADDRESS32 = unaligned && UNSAFE != null ? new Unsafe32ArrayIO() : null;
+            ADDRESS64 = unaligned && UNSAFE != null ? new Unsafe64ArrayIO() : null;
+        }
+
+        static ArrayIO forRuntime(Runtime runtime) {
+            if (runtime.byteOrder().equals(ByteOrder.nativeOrder()) && ADDRESS64 != null) {
+                return runtime.addressSize() == 8 ? ADDRESS64 : ADDRESS32;
+            }
+
+            return ArrayIO.getArrayIO(runtime);
+        }
+
+        /** Unsafe does no bounds checking, so check the whole value lies inside the array */
+        private static long index(byte[] buffer, int offset, int size) {
+            if ((offset | (buffer.length - size - offset)) < 0) {
+                throw new ArrayIndexOutOfBoundsException(offset);
+            }
+            return BASE + offset;
+        }
+
+        public final short getInt16(byte[] buffer, int offset) {
+            return UNSAFE.getShort(buffer, index(buffer, offset, 2));
+        }
+        public final int getInt32(byte[] buffer, int offset) {
+            return UNSAFE.getInt(buffer, index(buffer, offset, 4));
+        }
+        public final long getInt64(byte[] buffer, int offset) {
+            return UNSAFE.getLong(buffer, index(buffer, offset, 8));
+        }
+        public final void putInt16(byte[] buffer, int offset, int value) {
+            UNSAFE.putShort(buffer, index(buffer, offset, 2), (short) value);
+        }
+        public final void putInt32(byte[] buffer, int offset, int value) {
+            UNSAFE.putInt(buffer, index(buffer, offset, 4), value);
+        }
+        public final void putInt64(byte[] buffer, int offset, long value) {
+            UNSAFE.putLong(buffer, index(buffer, offset, 8), value);
+        }
+    }
+
+    private static final class Unsafe32ArrayIO extends UnsafeArrayIO {
+        public final long getAddress(byte[] buffer, int offset) {
+            return (long) getInt32(buffer, offset) & 0xffffffffL;
+        }
+        public final void putAddress(byte[] buffer, int offset, long value) {
+            putInt32(buffer, offset, (int) value);
+        }
+    }
+
+    private static final class Unsafe64ArrayIO extends UnsafeArrayIO {
+        public final long getAddress(byte[] buffer, int offset) {
+            return getInt64(buffer, offset);
+        }
+        public final void putAddress(byte[] buffer, int offset, long value) {
+            putInt64(buffer, offset, value);
+        }
+    }
 }
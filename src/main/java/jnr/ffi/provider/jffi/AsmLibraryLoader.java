@@ -138,7 +138,12 @@ public class AsmLibraryLoader extends LibraryLoader {
             boolean conversionRequired = false;
 
             resultConverters[i] = getResultConverter(m, typeMapper);
-            if (resultConverters[i] != null) {
+            if (resultConverters[i] instanceof EnumMapper) {
+                // enums are converted by calling the mapper directly, so the native method returns an int
+                nativeReturnType = int.class;
+                conversionRequired = true;
+
+            } else if (resultConverters[i] != null) {
 
                 nativeReturnType = resultConverters[i].nativeType();
                 conversionRequired = true;
@@ -147,7 +152,12 @@ public class AsmLibraryLoader extends LibraryLoader {
             parameterConverters[i] = new ToNativeConverter[parameterTypes.length];
             for (int pidx = 0; pidx < parameterTypes.length; ++pidx) {
                 ToNativeConverter converter = getParameterConverter(m, pidx, typeMapper);
-                if (converter != null) {
+                if (converter instanceof EnumMapper) {
+                    nativeParameterTypes[pidx] = int.class;
+                    parameterConverters[i][pidx] = converter;
+                    conversionRequired = true;
+
+                } else if (converter != null) {
                     nativeParameterTypes[pidx] = converter.nativeType();
                     
                     parameterConverters[i][pidx] = new ParameterConverter(converter,
@@ -323,6 +333,9 @@ public class AsmLibraryLoader extends LibraryLoader {
         if (!returnType.equals(nativeReturnType)) {
             mv.aload(0);
             mv.getfield(builder.getClassNamePath(), builder.getResultConverterName(resultConverter), ci(FromNativeConverter.class));
+            if (resultConverter instanceof EnumMapper) {
+                mv.checkcast(p(EnumMapper.class));
+            }
         }
 
         
@@ -334,15 +347,22 @@ public class AsmLibraryLoader extends LibraryLoader {
             final boolean convertParameter = !parameterTypes[pidx].equals(nativeParameterTypes[pidx]);
             final boolean convertLong = long.class == parameterTypes[pidx] && int.class == nativeParameterTypes[pidx];
 
+            final boolean convertEnum = parameterConverters[pidx] instanceof EnumMapper;
+
             if (convertParameter && !convertLong) {
                 mv.aload(0);
                 mv.getfield(builder.getClassNamePath(), builder.    getParameterConverterName(parameterConverters[pidx]), ci(ToNativeConverter.class));
+                if (convertEnum) {
+                    mv.checkcast(p(EnumMapper.class));
+                }
             }
 
             lvar = loadParameter(mv, parameterTypes[pidx], lvar);
 
             if (convertParameter && convertLong) {
                 mv.l2i();
+            } else if (convertEnum) {
+                mv.invokevirtual(p(EnumMapper.class), "intValue", sig(int.class, Enum.class));
             } else if (convertParameter) {
                 if (parameterTypes[pidx].isPrimitive()) {
                     boxValue(mv, getBoxedClass(parameterTypes[pidx]), parameterTypes[pidx]);
@@ -356,7 +376,11 @@ public class AsmLibraryLoader extends LibraryLoader {
 
         // Invoke the real native method
         mv.invokevirtual(builder.getClassNamePath(), rawFunctionName, sig(nativeReturnType, nativeParameterTypes));
-        if (!returnType.equals(nativeReturnType)) {
+        if (resultConverter instanceof EnumMapper) {
+            mv.invokevirtual(p(EnumMapper.class), "valueOf", sig(Enum.class, int.class));
+            mv.checkcast(p(returnType));
+
+        } else if (!returnType.equals(nativeReturnType)) {
             if (nativeReturnType.isPrimitive()) {
                 boxValue(mv, getBoxedClass(nativeReturnType), nativeReturnType);
             }
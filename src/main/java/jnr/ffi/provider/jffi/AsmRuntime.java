@@ -28,11 +28,13 @@ import jnr.ffi.provider.AbstractArrayMemoryIO;
 import jnr.ffi.provider.AbstractBufferMemoryIO;
 import jnr.ffi.provider.DelegatingMemoryIO;
 import jnr.ffi.provider.InvocationSession;
-import jnr.ffi.util.BufferUtil;
 import jnr.ffi.util.EnumMapper;
 
 import java.nio.*;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 
 /**
  * Utility methods that are used at runtime by generated code.
@@ -263,24 +265,78 @@ public final class AsmRuntime {
         }
     }
 
-    public static final void marshal(InvocationBuffer buffer, jnr.ffi.Struct[] parameter, int parameterFlags, int nativeArrayFlags) {
-        if (parameter == null) {
+    public static final void marshal(InvocationBuffer buffer, InvocationSession session, final jnr.ffi.Struct[] parameter,
+                                     int parameterFlags, int nativeArrayFlags) {
+        jnr.ffi.Struct first = null;
+        for (int i = 0; parameter != null && i < parameter.length && first == null; ++i) {
+            first = parameter[i];
+        }
+
+        if (first == null) {
+            // empty or all-null arrays are passed as NULL
             buffer.putAddress(0L);
         } else {
-            jnr.ffi.Struct[] array = parameter;
-            Pointer memory = Struct.getMemory(array[0], parameterFlags);
-            if (!(memory instanceof DelegatingMemoryIO)) {
-                throw new RuntimeException("Struct array must be backed by contiguous array");
+            final int size = Struct.size(first);
+            final int alignment = Struct.alignment(first);
+            final int stride = (size + alignment - 1) & ~(alignment - 1);
+
+            //
+            // Arrays of structs laid out one after another in native memory (e.g. from Struct.arrayOf)
+            // are passed as-is
+            //
+            long address = contiguousAddress(parameter, stride, parameterFlags);
+            if (address != 0L) {
+                buffer.putAddress(address);
+                return;
             }
-            memory = ((DelegatingMemoryIO) memory).getDelegatedMemoryIO();
-            if (memory instanceof AbstractArrayMemoryIO) {
-                AbstractArrayMemoryIO aio = (AbstractArrayMemoryIO) memory;
-                buffer.putArray(aio.array(), aio.offset(), aio.length(), nativeArrayFlags);
-            
-            } else if (memory.isDirect()) {
-                buffer.putAddress(memory.address());
+
+            //
+            // Otherwise, gather the structs into one block, and scatter them back after the call
+            //
+            final ArrayMemoryIO memory = new ArrayMemoryIO(stride * parameter.length);
+            if (ParameterFlags.isIn(parameterFlags)) {
+                for (int i = 0; i < parameter.length; ++i) {
+                    if (parameter[i] != null) {
+                        Struct.getMemory(parameter[i], parameterFlags).get(0, memory.array(), memory.offset() + (i * stride), size);
+                    }
+                }
+            }
+
+            buffer.putArray(memory.array(), memory.offset(), memory.length(), nativeArrayFlags);
+
+            if (ParameterFlags.isOut(parameterFlags)) {
+                session.addPostInvoke(new InvocationSession.PostInvoke() {
+                    public void postInvoke() {
+                        for (int i = 0; i < parameter.length; ++i) {
+                            if (parameter[i] != null) {
+                                Struct.getMemory(parameter[i]).put(0, memory.array(), memory.offset() + (i * stride), size);
+                            }
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private static long contiguousAddress(jnr.ffi.Struct[] array, int stride, int parameterFlags) {
+        if (array[0] == null) {
+            return 0L;
+        }
+
+        Pointer first = Struct.getMemory(array[0], parameterFlags);
+        if (!first.isDirect()) {
+            return 0L;
+        }
+
+        final long address = first.address();
+        for (int i = 1; i < array.length; ++i) {
+            if (array[i] == null || !Struct.isDirect(array[i])
+                    || Struct.getMemory(array[i]).address() != address + ((long) i * stride)) {
+                return 0L;
             }
         }
+
+        return address;
     }
 
     public static final void marshal(InvocationBuffer buffer, InvocationSession session, ByReference parameter, int flags) {
@@ -306,32 +362,22 @@ public final class AsmRuntime {
         }
     }
 
-    public static final void marshal(InvocationBuffer buffer, InvocationSession session, StringBuilder parameter, int inout, int nflags) {
+    public static final void marshal(InvocationBuffer buffer, InvocationSession session, final StringBuilder parameter, int inout, int nflags) {
         if (parameter == null) {
             buffer.putAddress(0L);
         } else {
-            final StringBuilder sb = parameter;
-            ByteBuffer buf = ParameterFlags.isIn(inout)
-                ? Charset.defaultCharset().encode(CharBuffer.wrap(parameter))
-                : ByteBuffer.allocate(sb.capacity() + 1);
-            if (ParameterFlags.isOut(inout) && buf.capacity() < sb.capacity() + 1) {
-                ByteBuffer tmp = ByteBuffer.allocate(sb.capacity() + 1);
-                tmp.put(buf);
-                tmp.flip();
-                buf = tmp;
-            }
-            buffer.putArray(buf.array(), buf.arrayOffset(), buf.capacity(), nflags);
+            final byte[] array = stringBufferArray(parameter, parameter.capacity(), inout);
+            buffer.putArray(array, 0, array.length, nflags);
             //
             // Copy the string back out if its an OUT parameter
             //
             if (ParameterFlags.isOut(inout)) {
-                final ByteBuffer tmp = buf;
                 session.addPostInvoke(new InvocationSession.PostInvoke() {
 
                     public void postInvoke() {
-                        tmp.limit(tmp.capacity());
-                        tmp.position(0);
-                        sb.delete(0, sb.length()).append(BufferUtil.getCharSequence(tmp, Charset.defaultCharset()));
+                        CharBuffer cb = decodeStringBufferArray(array);
+                        parameter.setLength(0);
+                        parameter.append(cb.array(), 0, cb.position());
                     }
                 });
             }
@@ -342,35 +388,84 @@ public final class AsmRuntime {
         if (parameter == null) {
             buffer.putAddress(0L);
         } else {
-            final StringBuffer sb = parameter;
-            ByteBuffer buf = ParameterFlags.isIn(inout)
-                            ? Charset.defaultCharset().encode(CharBuffer.wrap(parameter))
-                            : ByteBuffer.allocate(sb.capacity() + 1);
-
-            if (ParameterFlags.isOut(inout) && buf.capacity() < sb.capacity() + 1) {
-                ByteBuffer tmp = ByteBuffer.allocate(sb.capacity() + 1);
-                tmp.put(buf);
-                tmp.flip();
-                buf = tmp;
-            }
-            buffer.putArray(buf.array(), buf.arrayOffset(), buf.capacity(), nflags);
+            final byte[] array = stringBufferArray(parameter, parameter.capacity(), inout);
+            buffer.putArray(array, 0, array.length, nflags);
             //
             // Copy the string back out if its an OUT parameter
             //
             if (ParameterFlags.isOut(inout)) {
-                final ByteBuffer tmp = buf;
                 session.addPostInvoke(new InvocationSession.PostInvoke() {
 
                     public void postInvoke() {
-                        tmp.limit(tmp.capacity());
-                        tmp.position(0);
-                        sb.delete(0, sb.length()).append(BufferUtil.getCharSequence(tmp, Charset.defaultCharset()));
+                        CharBuffer cb = decodeStringBufferArray(array);
+                        parameter.setLength(0);
+                        parameter.append(cb.array(), 0, cb.position());
                     }
                 });
             }
         }
     }
 
+    /**
+     * Allocates the array used to pass a StringBuilder/StringBuffer to native code.
+     *
+     * <p>OUT-only parameters are never encoded; the array is just sized to hold
+     * {@code capacity} bytes plus a NUL terminator.  Otherwise the characters are
+     * encoded straight into the array, which is large enough to hold the whole
+     * capacity of the buffer if the native function can write to it.
+     */
+    private static byte[] stringBufferArray(CharSequence cs, int capacity, int inout) {
+        if (!ParameterFlags.isIn(inout)) {
+            return new byte[capacity + 1];
+        }
+
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        int length = (int) Math.ceil(cs.length() * encoder.maxBytesPerChar());
+        byte[] array = new byte[(ParameterFlags.isOut(inout) ? Math.max(capacity, length) : length) + 1];
+        ByteBuffer buf = ByteBuffer.wrap(array);
+        encoder.encode(CharBuffer.wrap(cs), buf, true);
+        encoder.flush(buf);
+
+        return array;
+    }
+
+    /**
+     * Decodes the NUL terminated contents of a StringBuilder/StringBuffer array.
+     *
+     * @return a heap {@code CharBuffer} with its position set to the number of decoded chars.
+     */
+    private static CharBuffer decodeStringBufferArray(byte[] array) {
+        int end = 0;
+        while (end < array.length && array[end] != 0) {
+            ++end;
+        }
+
+        // Fast path for plain ASCII output - just widen the bytes
+        char[] chars = new char[end];
+        int i = 0;
+        for (; i < end && array[i] >= 0; ++i) {
+            chars[i] = (char) array[i];
+        }
+
+        if (i == end) {
+            CharBuffer cb = CharBuffer.wrap(chars);
+            cb.position(end);
+            return cb;
+        }
+
+        CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer cb = CharBuffer.allocate((int) Math.ceil(end * decoder.maxCharsPerByte()));
+        cb.put(chars, 0, i);
+        decoder.decode(ByteBuffer.wrap(array, i, end - i), cb, true);
+        decoder.flush(cb);
+
+        return cb;
+    }
+
     public static final void marshal(InvocationBuffer buffer, InvocationSession session,
             final CharSequence[] strings, final int inout, int nativeArrayFlags) {
         if (strings == null) {
@@ -515,6 +610,32 @@ public final class AsmRuntime {
         return stringValue((long) ptr);
     }
 
+    /**
+     * Gets the address generated code can use to access memory directly, with the same
+     * result as using the {@code Pointer} accessors.
+     *
+     * @param pointer the memory to access.
+     * @param offset the offset within the memory of the access.
+     * @param length the number of bytes accessed.
+     * @return the address to access, or 0 if the access must go through the {@code Pointer}.
+     */
+    public static long directAddress(Pointer pointer, long offset, int length) {
+        if (pointer instanceof AbstractDirectMemoryIO) {
+            return pointer.address() + offset;
+
+        } else if (pointer instanceof DelegatingMemoryIO && offset >= 0 && offset + length <= pointer.size()) {
+            // Only a view of native memory reports a real address; a view of a buffer reports its offset
+            Pointer memory = pointer;
+            while (memory instanceof DelegatingMemoryIO) {
+                memory = ((DelegatingMemoryIO) memory).getDelegatedMemoryIO();
+            }
+
+            return memory instanceof DirectMemoryIO ? pointer.address() + offset : 0L;
+        }
+
+        return 0L;
+    }
+
     public static final Pointer pointerValue(long ptr) {
         return ptr != 0 ? new DirectMemoryIO(ptr) : null;
     }
@@ -83,6 +83,7 @@ final class BufferMethodGenerator extends BaseMethodGenerator {
                 || ByReference.class.isAssignableFrom(parameterType)
                 || (parameterType.isArray() && Pointer.class.isAssignableFrom(parameterType.getComponentType()))
                 || (parameterType.isArray() && CharSequence.class.isAssignableFrom(parameterType.getComponentType()))
+                || (parameterType.isArray() && jnr.ffi.Struct.class.isAssignableFrom(parameterType.getComponentType()))
                 || (parameterType.isArray() && NativeLong.class.isAssignableFrom(parameterType.getComponentType()))
                 || (parameterType.isArray() && isLong32(parameterType.getComponentType(), annotations))
                 ;
@@ -191,7 +192,7 @@ final class BufferMethodGenerator extends BaseMethodGenerator {
             } else if (parameterTypes[i].isArray() && jnr.ffi.Struct.class.isAssignableFrom(parameterTypes[i].getComponentType())) {
                 mv.pushInt(parameterFlags);
                 mv.pushInt(nativeArrayFlags);
-                marshal(mv, jnr.ffi.Struct[].class, int.class, int.class);
+                sessionmarshal(mv, jnr.ffi.Struct[].class, int.class, int.class);
 
             } else if (parameterTypes[i].isArray() && Pointer.class.isAssignableFrom(parameterTypes[i].getComponentType())) {
                 mv.pushInt(parameterFlags);
@@ -39,4 +39,14 @@ public class ByteBufferMemoryIO extends AbstractBufferMemoryIO {
     public void putPointer(long offset, Pointer value) {
         putAddress(offset, value.address());
     }
+
+    @Override
+    public void transferTo(long offset, Pointer dst, long dstOffset, long count) {
+        MemoryTransfer.copy(this, offset, dst, dstOffset, count);
+    }
+
+    @Override
+    public void transferFrom(long offset, Pointer src, long srcOffset, long count) {
+        MemoryTransfer.copy(src, srcOffset, this, offset, count);
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.MemoryCursor;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.provider.AbstractMemoryIO;
+
+/**
+ * A {@link MemoryCursor} over native memory.  It shares the native memory accessors of
+ * {@link DirectMemoryIO}, but with a mutable address, so it is its own {@link #pointer()}.
+ */
+final class DirectMemoryCursor extends AbstractDirectMemoryIO implements MemoryCursor {
+    private long address;
+
+    DirectMemoryCursor(Runtime runtime, long address) {
+        super(runtime);
+        this.address = address;
+    }
+
+    public long address() {
+        return address;
+    }
+
+    public Pointer pointer() {
+        return this;
+    }
+
+    public MemoryCursor bind(long address) {
+        this.address = address;
+        return this;
+    }
+
+    public MemoryCursor bind(Pointer ptr) {
+        if (ptr != null && !ptr.isDirect()) {
+            throw new IllegalArgumentException("cannot bind a cursor to non-direct memory");
+        }
+
+        return bind(ptr != null ? ptr.address() : 0L);
+    }
+
+    public boolean follow(long offset) {
+        return (address = IO.getAddress(address + offset)) != 0L;
+    }
+
+    public MemoryCursor advance(long delta) {
+        address += delta;
+        return this;
+    }
+
+    public boolean isNull() {
+        return address == 0L;
+    }
+
+    public Pointer toPointer() {
+        return MemoryUtil.newPointer(address);
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this;
+    }
+
+    @Override
+    public AbstractMemoryIO slice(long offset) {
+        return new DirectMemoryIO(getRuntime(), address + offset);
+    }
+
+    @Override
+    public AbstractMemoryIO slice(long offset, long size) {
+        return MemoryUtil.newBoundedPointer(new DirectMemoryIO(getRuntime(), address + offset), 0, size);
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.AllocationOption;
+import jnr.ffi.MapMode;
+import jnr.ffi.MemoryAdvice;
+import jnr.ffi.Platform;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static jnr.ffi.provider.jffi.Posix.*;
+
+/**
+ * A region of a file, or of anonymous memory, mapped into memory with mmap(2).
+ *
+ * <p>The mapping always starts on a page boundary, so the requested region of the
+ * file may start some way into it; callers access it through a bounded view.
+ */
+class MappedMemoryIO extends DirectMemoryIO {
+    private final Mapping mapping;
+    private final long size;
+    private final MapMode mode;
+    /** The range of the mapping covered by the pointer returned to the caller */
+    private final long viewOffset, viewSize;
+    private volatile boolean unmapped;
+
+    private MappedMemoryIO(Runtime runtime, long address, long size, MapMode mode, boolean anonymous,
+                           long viewOffset, long viewSize) {
+        super(runtime, address);
+        this.size = size;
+        this.mode = mode;
+        this.viewOffset = viewOffset;
+        this.viewSize = viewSize;
+        this.mapping = new Mapping(this, address, size, anonymous);
+    }
+
+    /**
+     * Allocates anonymous memory directly from the kernel, so it can be backed by huge pages
+     * or bound to a NUMA node.
+     *
+     * @param runtime the runtime the memory belongs to.
+     * @param size the number of bytes to allocate.
+     * @param options how the memory should be allocated.
+     * @return a bounded view of the memory.
+     */
+    static Pointer allocate(Runtime runtime, long size, Map<AllocationOption, ?> options) {
+        if (size < 1) {
+            throw new IllegalArgumentException("invalid size " + size);
+        }
+
+        if (options == null) {
+            options = Collections.<AllocationOption, Object>emptyMap();
+        }
+
+        LibC libc = libc();
+        boolean linux = Platform.getNativePlatform().getOS() == Platform.OS.LINUX;
+        boolean thp = linux && isEnabled(options, AllocationOption.TransparentHugePages);
+        int prot = PROT_READ | PROT_WRITE;
+        int flags = MAP_PRIVATE | MAP_ANONYMOUS;
+        long address = MAP_FAILED, length = 0;
+
+        if (linux && isEnabled(options, AllocationOption.HugePages)) {
+            length = align(size, hugePageSize());
+            address = libc.mmap(0L, length, prot, flags | MAP_HUGETLB, -1, 0L);
+            // Fall back to transparent huge pages if the huge page pool is exhausted
+            thp |= address == MAP_FAILED;
+        }
+
+        if (address == MAP_FAILED && thp) {
+            long alignment = hugePageSize();
+            length = align(size, alignment);
+            long region = libc.mmap(0L, length + alignment, prot, flags, -1, 0L);
+            if (region != MAP_FAILED) {
+                // Trim the over-allocation so the memory starts on a huge page boundary
+                address = align(region, alignment);
+                if (address > region) {
+                    libc.munmap(region, address - region);
+                }
+                if (region + alignment > address) {
+                    libc.munmap(address + length, region + alignment - address);
+                }
+                // Only a hint; kernels without transparent huge page support just ignore it
+                libc.madvise(address, length, MADV_HUGEPAGE);
+            }
+
+        } else if (address == MAP_FAILED) {
+            length = align(size, pageSize());
+            address = libc.mmap(0L, length, prot, flags, -1, 0L);
+        }
+
+        if (address == MAP_FAILED) {
+            throw new OutOfMemoryError("Failed to allocate " + size + " bytes: " + libc.strerror(errno()));
+        }
+
+        Object node = options.get(AllocationOption.NumaNode);
+        if (node != null) {
+            bind(runtime, address, length, ((Number) node).intValue());
+        }
+
+        return MemoryUtil.newBoundedPointer(new MappedMemoryIO(runtime, address, length, MapMode.PRIVATE, true, 0, size), 0, size);
+    }
+
+    private static boolean isEnabled(Map<AllocationOption, ?> options, AllocationOption option) {
+        Object value = options.get(option);
+        return value != null && !Boolean.FALSE.equals(value);
+    }
+
+    private static long align(long value, long alignment) {
+        return (value + alignment - 1) & ~(alignment - 1);
+    }
+
+    private static void bind(Runtime runtime, long address, long length, int node) {
+        if (node < 0) {
+            throw new IllegalArgumentException("invalid NUMA node " + node);
+        }
+
+        LibNuma numa = numa();
+        if (numa == null) {
+            Logger.getLogger(MappedMemoryIO.class.getName()).fine("libnuma not available, memory not bound to node " + node);
+            return;
+        }
+
+        int bitsPerLong = runtime.longSize() * 8;
+        int words = node / bitsPerLong + 1;
+        Pointer nodemask = new ArrayMemoryIO(runtime, words * runtime.longSize());
+        nodemask.putNativeLong((node / bitsPerLong) * runtime.longSize(), 1L << (node % bitsPerLong));
+        if (numa.mbind(address, length, MPOL_BIND, nodemask, (long) words * bitsPerLong + 1, 0) != 0) {
+            Logger.getLogger(MappedMemoryIO.class.getName()).fine("could not bind memory to NUMA node " + node
+                    + ": " + libc().strerror(errno()));
+        }
+    }
+
+    /**
+     * Maps a region of a file into memory.
+     *
+     * @param runtime the runtime the memory belongs to.
+     * @param file the file to map.
+     * @param mode how the region is to be accessed.
+     * @param offset the offset in the file of the start of the region.
+     * @param length the length of the region.
+     * @return a bounded view of the requested region of the mapping.
+     * @throws IOException if the file could not be opened or mapped.
+     */
+    static Pointer map(Runtime runtime, File file, MapMode mode, long offset, long length) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("negative offset " + offset);
+        }
+        if (length < 1) {
+            throw new IllegalArgumentException("invalid length " + length);
+        }
+
+        LibC libc = libc();
+        int fd = libc.open(file.getPath(), mode == MapMode.READ_WRITE ? O_RDWR : O_RDONLY);
+        if (fd < 0) {
+            throw newIOException("open " + file.getPath(), errno());
+        }
+
+        try {
+            long pageOffset = offset & (pageSize() - 1);
+            int prot = mode == MapMode.READ_ONLY ? PROT_READ : PROT_READ | PROT_WRITE;
+            int flags = mode == MapMode.PRIVATE ? MAP_PRIVATE : MAP_SHARED;
+            long address = libc.mmap(0L, length + pageOffset, prot, flags, fd, offset - pageOffset);
+            if (address == MAP_FAILED) {
+                throw newIOException("mmap " + file.getPath(), errno());
+            }
+
+            return MemoryUtil.newBoundedPointer(new MappedMemoryIO(runtime, address, length + pageOffset, mode, false, pageOffset, length),
+                    pageOffset, length);
+
+        } finally {
+            libc.close(fd);
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Tests if a pointer is the view of this mapping that was returned when it was created.
+     */
+    final boolean isView(Pointer pointer) {
+        return pointer.address() == address + viewOffset && pointer.size() == viewSize;
+    }
+
+    public final MapMode getMode() {
+        return mode;
+    }
+
+    public final boolean isMapped() {
+        return !unmapped;
+    }
+
+    public final void unmap() {
+        unmapped = true;
+        mapping.release();
+    }
+
+    /**
+     * Advises the operating system how a range of this mapping will be accessed.
+     *
+     * @param offset the offset of the range from the start of the mapping.
+     * @param length the length of the range.
+     * @param advice the expected access pattern.
+     * @return true if the operating system accepted the advice.
+     */
+    public final boolean advise(long offset, long length, MemoryAdvice advice) {
+        checkMapped();
+        long start = pageStart(offset);
+        // madvise is only a hint, so a failure is reported rather than thrown
+        return libc().madvise(address + start, offset + length - start, adviceFlag(advice)) == 0;
+    }
+
+    /**
+     * Writes modified pages in a range of this mapping back to the file.
+     *
+     * @param offset the offset of the range from the start of the mapping.
+     * @param length the length of the range.
+     * @param async whether to schedule the write and return immediately, instead of waiting for it.
+     * @throws IOException if the pages could not be written.
+     */
+    public final void sync(long offset, long length, boolean async) throws IOException {
+        checkMapped();
+        if (mode != MapMode.READ_WRITE) {
+            return;
+        }
+        long start = pageStart(offset);
+        if (libc().msync(address + start, offset + length - start, async ? MS_ASYNC : MS_SYNC) != 0) {
+            throw newIOException("msync", errno());
+        }
+    }
+
+    private void checkMapped() {
+        if (unmapped) {
+            throw new IllegalStateException("memory has been unmapped");
+        }
+    }
+
+    private static long pageStart(long offset) {
+        return offset & ~(pageSize() - 1);
+    }
+
+    private static int adviceFlag(MemoryAdvice advice) {
+        switch (advice) {
+            case NORMAL:
+                return MADV_NORMAL;
+            case RANDOM:
+                return MADV_RANDOM;
+            case SEQUENTIAL:
+                return MADV_SEQUENTIAL;
+            case WILL_NEED:
+                return MADV_WILLNEED;
+            case DONT_NEED:
+                return MADV_DONTNEED;
+            default:
+                throw new IllegalArgumentException("unknown advice " + advice);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof MappedMemoryIO) {
+            MappedMemoryIO mem = (MappedMemoryIO) obj;
+            return mem.size == size && mem.address() == address;
+        }
+
+        return super.equals(obj);
+    }
+
+    public String toString() {
+        return String.format(getClass().getName() + " address=%x size=%d mode=%s", address, size, mode);
+    }
+
+    /**
+     * Unmaps the memory, either when explicitly unmapped, or after the
+     * {@code MappedMemoryIO} has been garbage collected.
+     */
+    private static final class Mapping extends NativeReaper.Reference {
+        private final long address;
+        private final long size;
+        private final boolean anonymous;
+
+        Mapping(MappedMemoryIO owner, long address, long size, boolean anonymous) {
+            super(owner);
+            this.address = address;
+            this.size = size;
+            this.anonymous = anonymous;
+            if (anonymous) {
+                MemoryAccounting.allocated(size);
+            }
+        }
+
+        @Override
+        void reaped() {
+            if (anonymous) {
+                MemoryAccounting.undisposed(size, null);
+            }
+        }
+
+        void dispose() {
+            libc().munmap(address, size);
+            if (anonymous) {
+                MemoryAccounting.freed(size);
+            }
+        }
+    }
+}
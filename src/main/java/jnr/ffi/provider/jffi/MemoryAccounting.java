@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps track of how much native memory has been allocated by the {@link NativeMemoryManager}.
+ *
+ * <p>Every allocation is counted, and 1 in every {@code sampleRate} allocations also
+ * records the stack trace of the allocation site, so blocks that are never explicitly
+ * disposed can be traced back to the code that allocated them.  Sampling is disabled
+ * unless the {@code jnr.ffi.memory.sampleRate} system property is set.
+ */
+final class MemoryAccounting {
+    /** The maximum number of undisposed allocations that are remembered */
+    private static final int MAX_UNDISPOSED = 64;
+
+    private static final AtomicLong outstandingBytes = new AtomicLong();
+    private static final AtomicLong outstandingCount = new AtomicLong();
+    private static final AtomicLong highWaterBytes = new AtomicLong();
+    private static final AtomicLong totalBytes = new AtomicLong();
+    private static final AtomicLong totalCount = new AtomicLong();
+    private static final AtomicLong undisposedBytes = new AtomicLong();
+    private static final AtomicLong undisposedCount = new AtomicLong();
+    private static final AtomicLongArray sizeClassCounts = new AtomicLongArray(64);
+
+    private static volatile int sampleRate = Integer.getInteger("jnr.ffi.memory.sampleRate", 0);
+    private static final AtomicInteger sampleCounter = new AtomicInteger();
+    private static final Map<Site, Boolean> liveSites = new ConcurrentHashMap<Site, Boolean>();
+    private static final ConcurrentLinkedQueue<Site> undisposedSites = new ConcurrentLinkedQueue<Site>();
+    private static final AtomicInteger undisposedSiteCount = new AtomicInteger();
+
+    private MemoryAccounting() {}
+
+    /**
+     * Gets the index of the power-of-two size class that an allocation falls into.
+     */
+    static int sizeClass(long size) {
+        return size <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(size - 1);
+    }
+
+    static void allocated(long size) {
+        long outstanding = outstandingBytes.addAndGet(size);
+        outstandingCount.incrementAndGet();
+        totalBytes.addAndGet(size);
+        totalCount.incrementAndGet();
+        sizeClassCounts.incrementAndGet(sizeClass(size));
+
+        long highWater;
+        while (outstanding > (highWater = highWaterBytes.get()) && !highWaterBytes.compareAndSet(highWater, outstanding)) {
+            // retry
+        }
+    }
+
+    static void freed(long size) {
+        outstandingBytes.addAndGet(-size);
+        outstandingCount.decrementAndGet();
+        sizeClassCounts.decrementAndGet(sizeClass(size));
+    }
+
+    /**
+     * Records the allocation site of a block, if it has been selected for sampling.
+     *
+     * @return a {@code Site}, or {@code null} if this allocation is not sampled.
+     */
+    static Site sample(long size) {
+        final int rate = sampleRate;
+        if (rate < 1 || (rate > 1 && sampleCounter.incrementAndGet() % rate != 0)) {
+            return null;
+        }
+
+        Site site = new Site(size);
+        liveSites.put(site, Boolean.TRUE);
+        return site;
+    }
+
+    static void disposed(Site site) {
+        if (site != null) {
+            liveSites.remove(site);
+        }
+    }
+
+    /**
+     * Records that a block was freed by the garbage collector, rather than explicitly disposed.
+     */
+    static void undisposed(long size, Site site) {
+        undisposedBytes.addAndGet(size);
+        undisposedCount.incrementAndGet();
+        if (site != null) {
+            liveSites.remove(site);
+            undisposedSites.add(site);
+            if (undisposedSiteCount.incrementAndGet() > MAX_UNDISPOSED && undisposedSites.poll() != null) {
+                undisposedSiteCount.decrementAndGet();
+            }
+        }
+    }
+
+    static long getOutstandingBytes() {
+        return outstandingBytes.get();
+    }
+
+    static int getSampleRate() {
+        return sampleRate;
+    }
+
+    static void setSampleRate(int rate) {
+        sampleRate = rate;
+    }
+
+    static void resetHighWater() {
+        highWaterBytes.set(outstandingBytes.get());
+    }
+
+    static NativeMemoryStatistics snapshot() {
+        return snapshot(true);
+    }
+
+    /**
+     * Takes a snapshot of the current accounting state.
+     *
+     * @param includeAllocations if false, the sampled allocation sites are not collected.
+     */
+    static NativeMemoryStatistics snapshot(boolean includeAllocations) {
+        List<NativeMemoryStatistics.Allocation> none = Collections.emptyList();
+        long[] counts = new long[sizeClassCounts.length()];
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = sizeClassCounts.get(i);
+        }
+
+        return new NativeMemoryStatistics(outstandingBytes.get(), outstandingCount.get(), highWaterBytes.get(),
+                totalBytes.get(), totalCount.get(), undisposedBytes.get(), undisposedCount.get(), counts,
+                includeAllocations ? allocations(liveSites.keySet()) : none,
+                includeAllocations ? allocations(undisposedSites) : none);
+    }
+
+    private static List<NativeMemoryStatistics.Allocation> allocations(Iterable<Site> sites) {
+        List<NativeMemoryStatistics.Allocation> allocations = new ArrayList<NativeMemoryStatistics.Allocation>();
+        for (Site site : sites) {
+            allocations.add(new NativeMemoryStatistics.Allocation(site.size, site.timestamp, site.getStackTrace()));
+        }
+
+        return allocations;
+    }
+
+    /** The recorded call site of a sampled allocation */
+    static final class Site extends Throwable {
+        final long size;
+        final long timestamp = System.currentTimeMillis();
+
+        Site(long size) {
+            super("native memory allocation of " + size + " bytes");
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.provider.AbstractArrayMemoryIO;
+import jnr.ffi.provider.AbstractBufferMemoryIO;
+import jnr.ffi.provider.DelegatingMemoryIO;
+
+import java.nio.ByteBuffer;
+
+import static jnr.ffi.provider.jffi.AbstractDirectMemoryIO.IO;
+
+/**
+ * Copies memory between {@link Pointer} instances, using the fastest primitive available
+ * for each combination of source and destination memory.
+ *
+ * <p>Both pointers are resolved through any slices or bounded views to the memory that
+ * backs them, which is either native memory with an address, a java byte array, or
+ * something else.  Native to native copies use a (possibly overlapping) memory copy, native to/from array copies use a
+ * single bulk JNI transfer, and array to array copies use {@link System#arraycopy}.  Anything
+ * else is copied in chunks through the pointers' own bulk accessors.
+ */
+final class MemoryTransfer {
+    private static final int DIRECT = 0, ARRAY = 1, OTHER = 2;
+    private static final int CHUNK_SIZE = 8192;
+
+    private MemoryTransfer() {}
+
+    static void copy(Pointer src, long srcOffset, Pointer dst, long dstOffset, long count) {
+        src.checkBounds(srcOffset, count);
+        dst.checkBounds(dstOffset, count);
+        if (count < 1) {
+            return;
+        }
+
+        Pointer srcMemory = backing(src), dstMemory = backing(dst);
+        switch (kind(srcMemory) * 3 + kind(dstMemory)) {
+            case DIRECT * 3 + DIRECT:
+                IO.copyMemory(address(src, srcMemory) + srcOffset, address(dst, dstMemory) + dstOffset, count);
+                break;
+
+            case DIRECT * 3 + ARRAY:
+                IO.getByteArray(address(src, srcMemory) + srcOffset,
+                        array(dstMemory), index(dst, dstMemory, dstOffset), (int) count);
+                break;
+
+            case ARRAY * 3 + DIRECT:
+                IO.putByteArray(address(dst, dstMemory) + dstOffset,
+                        array(srcMemory), index(src, srcMemory, srcOffset), (int) count);
+                break;
+
+            case ARRAY * 3 + ARRAY:
+                System.arraycopy(array(srcMemory), index(src, srcMemory, srcOffset),
+                        array(dstMemory), index(dst, dstMemory, dstOffset), (int) count);
+                break;
+
+            default:
+                copyChunked(src, srcOffset, dst, dstOffset, count);
+                break;
+        }
+    }
+
+    private static void copyChunked(Pointer src, long srcOffset, Pointer dst, long dstOffset, long count) {
+        byte[] chunk = new byte[(int) Math.min(count, CHUNK_SIZE)];
+        for (long i = 0; i < count; i += chunk.length) {
+            int len = (int) Math.min(count - i, chunk.length);
+            src.get(srcOffset + i, chunk, 0, len);
+            dst.put(dstOffset + i, chunk, 0, len);
+        }
+    }
+
+    /** Finds the memory object at the bottom of a chain of slices and bounded views */
+    private static Pointer backing(Pointer ptr) {
+        while (ptr instanceof DelegatingMemoryIO) {
+            ptr = ((DelegatingMemoryIO) ptr).getDelegatedMemoryIO();
+        }
+
+        return ptr;
+    }
+
+    private static int kind(Pointer memory) {
+        if (memory instanceof AbstractDirectMemoryIO) {
+            return DIRECT;
+
+        } else if (memory instanceof AbstractArrayMemoryIO) {
+            return ARRAY;
+
+        } else if (memory instanceof AbstractBufferMemoryIO) {
+            ByteBuffer buffer = ((AbstractBufferMemoryIO) memory).getByteBuffer();
+            return buffer.isReadOnly() ? OTHER : buffer.isDirect() ? DIRECT : buffer.hasArray() ? ARRAY : OTHER;
+        }
+
+        return OTHER;
+    }
+
+    /*
+     * Slices and bounded views report the address of their backing memory plus their own
+     * offset into it, so for array and buffer memory (which report an address of zero),
+     * the address of a view is its offset from the start of the backing memory.
+     */
+
+    private static long address(Pointer ptr, Pointer memory) {
+        return memory instanceof AbstractBufferMemoryIO
+                ? IO.getDirectBufferAddress(((AbstractBufferMemoryIO) memory).getByteBuffer()) + ptr.address()
+                : ptr.address();
+    }
+
+    private static byte[] array(Pointer memory) {
+        return memory instanceof AbstractArrayMemoryIO
+                ? ((AbstractArrayMemoryIO) memory).array()
+                : ((AbstractBufferMemoryIO) memory).getByteBuffer().array();
+    }
+
+    private static int index(Pointer ptr, Pointer memory, long offset) {
+        int base = memory instanceof AbstractArrayMemoryIO
+                ? ((AbstractArrayMemoryIO) memory).offset()
+                : ((AbstractBufferMemoryIO) memory).getByteBuffer().arrayOffset();
+
+        return base + (int) (ptr.address() + offset);
+    }
+}
@@ -18,12 +18,16 @@
 
 package jnr.ffi.provider.jffi;
 
+import jnr.ffi.provider.AbstractMemoryIO;
 import jnr.ffi.provider.BoundedMemoryIO;
 import jnr.ffi.provider.NullMemoryIO;
 
 public final class MemoryUtil {
     static final NullMemoryIO NULL = new NullMemoryIO(NativeRuntime.getInstance());
 
+    /** When set, views of native memory are not bounds checked */
+    static final boolean UNCHECKED = Boolean.getBoolean("jnr.ffi.memory.unchecked");
+
     private MemoryUtil() {}
 
     static final jnr.ffi.Pointer newPointer(long ptr) {
@@ -35,6 +39,14 @@ public final class MemoryUtil {
     }
     
     static final jnr.ffi.Pointer newPointer(long ptr, long size) {
-        return ptr != 0 ? new BoundedMemoryIO(new DirectMemoryIO(NativeRuntime.getInstance(), ptr), 0, size) : null;
+        return ptr != 0 ? newBoundedPointer(new DirectMemoryIO(NativeRuntime.getInstance(), ptr), 0, size) : null;
+    }
+
+    /**
+     * Creates a view of part of some native memory, which is bounds checked unless
+     * {@code jnr.ffi.memory.unchecked} is set.
+     */
+    static AbstractMemoryIO newBoundedPointer(DirectMemoryIO memory, long offset, long size) {
+        return UNCHECKED ? new UncheckedMemoryIO(memory, offset, size) : new BoundedMemoryIO(memory, offset, size);
     }
 }
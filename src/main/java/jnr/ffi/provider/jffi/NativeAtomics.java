@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+/**
+ * Atomic and volatile access to native memory, using {@code sun.misc.Unsafe} through {@link UnsafeAccess}.
+ */
+final class NativeAtomics {
+    private static final UnsafeAccess UNSAFE = UnsafeAccess.INSTANCE;
+
+    /** Whether atomic access to native memory is available */
+    static final boolean AVAILABLE = UNSAFE != null;
+
+    private NativeAtomics() {}
+
+    /** Atomic instructions fault or are not atomic on misaligned addresses */
+    private static long checkAlignment(long address, int size) {
+        if ((address & (size - 1)) != 0) {
+            throw new IllegalArgumentException(String.format("address %x is not aligned to %d bytes", address, size));
+        }
+        return address;
+    }
+
+    static int getIntVolatile(long address) {
+        return UNSAFE.getIntVolatile(null, checkAlignment(address, 4));
+    }
+
+    static void putIntVolatile(long address, int value) {
+        UNSAFE.putIntVolatile(null, checkAlignment(address, 4), value);
+    }
+
+    static void putIntOrdered(long address, int value) {
+        UNSAFE.putOrderedInt(null, checkAlignment(address, 4), value);
+    }
+
+    static boolean compareAndSetInt(long address, int expected, int value) {
+        return UNSAFE.compareAndSwapInt(null, checkAlignment(address, 4), expected, value);
+    }
+
+    static int getAndAddInt(long address, int delta) {
+        checkAlignment(address, 4);
+        int value;
+        do {
+            value = UNSAFE.getIntVolatile(null, address);
+        } while (!UNSAFE.compareAndSwapInt(null, address, value, value + delta));
+
+        return value;
+    }
+
+    static long getLongVolatile(long address) {
+        return UNSAFE.getLongVolatile(null, checkAlignment(address, 8));
+    }
+
+    static void putLongVolatile(long address, long value) {
+        UNSAFE.putLongVolatile(null, checkAlignment(address, 8), value);
+    }
+
+    static void putLongOrdered(long address, long value) {
+        UNSAFE.putOrderedLong(null, checkAlignment(address, 8), value);
+    }
+
+    static boolean compareAndSetLong(long address, long expected, long value) {
+        return UNSAFE.compareAndSwapLong(null, checkAlignment(address, 8), expected, value);
+    }
+
+    static long getAndAddLong(long address, long delta) {
+        checkAlignment(address, 8);
+        long value;
+        do {
+            value = UNSAFE.getLongVolatile(null, address);
+        } while (!UNSAFE.compareAndSwapLong(null, address, value, value + delta));
+
+        return value;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.MemoryArena;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+
+/**
+ * A {@link MemoryArena} that carves allocations out of large malloc'd chunks.
+ */
+final class NativeMemoryArena extends MemoryArena {
+    static final com.kenai.jffi.MemoryIO IO = com.kenai.jffi.MemoryIO.getInstance();
+    static final int DEFAULT_CHUNK_SIZE = 8192;
+    private static final int DEFAULT_ALIGNMENT = 8;
+
+    private final Runtime runtime;
+    private final int chunkSize;
+
+    /** All the native memory blocks allocated by this arena, and their sizes */
+    private long[] chunks = new long[4];
+    private int[] chunkSizes = new int[4];
+    private int chunkCount;
+    private long capacity;
+
+    /** The address of the current chunk, and how much of it has been used */
+    private long chunk;
+    private int chunkOffset;
+    private boolean closed;
+
+    NativeMemoryArena(Runtime runtime, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("invalid chunk size " + chunkSize);
+        }
+        this.runtime = runtime;
+        this.chunkSize = chunkSize;
+        this.chunkOffset = chunkSize;
+    }
+
+    public Pointer allocate(int size) {
+        return allocate(size, DEFAULT_ALIGNMENT, false);
+    }
+
+    public Pointer allocate(int size, boolean clear) {
+        return allocate(size, DEFAULT_ALIGNMENT, clear);
+    }
+
+    public Pointer allocate(int size, int alignment, boolean clear) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative size " + size);
+        }
+
+        if (alignment <= 0 || (alignment & (alignment - 1)) != 0) {
+            throw new IllegalArgumentException("alignment must be a power of two");
+        }
+
+        long address = allocateAddress(size, alignment);
+        if (clear) {
+            IO.setMemory(address, size, (byte) 0);
+        }
+
+        return MemoryUtil.newBoundedPointer(new DirectMemoryIO(runtime, address), 0, size);
+    }
+
+    private long allocateAddress(int size, int alignment) {
+        if (closed) {
+            throw new IllegalStateException("arena has been closed");
+        }
+
+        long address = align(chunk + chunkOffset, alignment);
+        if (chunk != 0 && address + size <= chunk + chunkSize) {
+            chunkOffset = (int) (address + size - chunk);
+            return address;
+        }
+
+        // Oversized blocks get their own malloc, so they do not waste the rest of the current chunk
+        if ((long) size + alignment > chunkSize / 2) {
+            final long blockSize = (long) size + alignment - 1;
+            if (blockSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("cannot allocate " + size + " bytes aligned to " + alignment);
+            }
+
+            long block = allocateChunk((int) blockSize);
+            return align(block, alignment);
+        }
+
+        chunk = allocateChunk(chunkSize);
+        address = align(chunk, alignment);
+        chunkOffset = (int) (address + size - chunk);
+
+        return address;
+    }
+
+    private long allocateChunk(int size) {
+        long address = IO.allocateMemory(size, false);
+        if (address == 0L) {
+            throw new OutOfMemoryError("Failed to allocate " + size + " bytes");
+        }
+
+        if (chunkCount == chunks.length) {
+            long[] tmp = new long[chunks.length * 2];
+            System.arraycopy(chunks, 0, tmp, 0, chunkCount);
+            chunks = tmp;
+            int[] tmpSizes = new int[tmp.length];
+            System.arraycopy(chunkSizes, 0, tmpSizes, 0, chunkCount);
+            chunkSizes = tmpSizes;
+        }
+        chunks[chunkCount] = address;
+        chunkSizes[chunkCount++] = size;
+        capacity += size;
+        MemoryAccounting.allocated(size);
+
+        return address;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public void reset() {
+        if (closed) {
+            throw new IllegalStateException("arena has been closed");
+        }
+
+        // Hang on to the current chunk, so a re-used arena does not need to malloc again
+        long current = chunk;
+        for (int i = 0; i < chunkCount; ++i) {
+            if (chunks[i] != current) {
+                IO.freeMemory(chunks[i]);
+                MemoryAccounting.freed(chunkSizes[i]);
+            }
+        }
+
+        chunkCount = 0;
+        capacity = 0;
+        if (current != 0) {
+            chunks[chunkCount] = current;
+            chunkSizes[chunkCount++] = chunkSize;
+            capacity = chunkSize;
+            chunkOffset = 0;
+        }
+    }
+
+    public void close() {
+        if (!closed) {
+            closed = true;
+            freeChunks();
+        }
+    }
+
+    private void freeChunks() {
+        for (int i = 0; i < chunkCount; ++i) {
+            IO.freeMemory(chunks[i]);
+            MemoryAccounting.freed(chunkSizes[i]);
+        }
+        chunkCount = 0;
+        capacity = 0;
+        chunk = 0;
+        chunkOffset = chunkSize;
+    }
+
+    private static long align(long address, int alignment) {
+        return (address + alignment - 1) & ~((long) alignment - 1);
+    }
+}
@@ -18,17 +18,30 @@
 
 package jnr.ffi.provider.jffi;
 
+import jnr.ffi.AllocationOption;
+import jnr.ffi.MapMode;
+import jnr.ffi.MemoryAdvice;
+import jnr.ffi.MemoryArena;
+import jnr.ffi.MemoryCursor;
 import jnr.ffi.Pointer;
-import jnr.ffi.provider.BoundedMemoryIO;
+import jnr.ffi.StructLayout;
+import jnr.ffi.provider.DelegatingMemoryIO;
 import jnr.ffi.provider.IntPointer;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Map;
 
 public class NativeMemoryManager implements jnr.ffi.provider.MemoryManager {
     private final NativeRuntime runtime;
+    private final ThreadLocal<TemporaryMemoryStack> temporaryMemory = new ThreadLocal<TemporaryMemoryStack>();
 
     public NativeMemoryManager(NativeRuntime runtime) {
         this.runtime = runtime;
+        if (Boolean.getBoolean("jnr.ffi.memory.jmx")) {
+            NativeMemoryMonitor.register();
+        }
     }
     
     public Pointer allocate(int size) {
@@ -36,19 +49,36 @@ public class NativeMemoryManager implements jnr.ffi.provider.MemoryManager {
     }
 
     public Pointer allocateDirect(int size) {
-        return new BoundedMemoryIO(new AllocatedDirectMemoryIO(runtime, size, false), 0, size);
+        return MemoryUtil.newBoundedPointer(new AllocatedDirectMemoryIO(runtime, size, false), 0, size);
     }
 
     public Pointer allocateDirect(int size, boolean clear) {
-        return new BoundedMemoryIO(new AllocatedDirectMemoryIO(runtime, size, clear), 0, size);
+        return MemoryUtil.newBoundedPointer(new AllocatedDirectMemoryIO(runtime, size, clear), 0, size);
+    }
+
+    public Pointer allocateDirect(long size, Map<AllocationOption, ?> options) {
+        return MappedMemoryIO.allocate(runtime, size, options);
     }
 
     public Pointer allocateTemporary(int size) {
-        return new ArrayMemoryIO(runtime, size);
+        return allocateTemporary(size, false);
     }
 
     public Pointer allocateTemporary(int size, boolean clear) {
-        return new ArrayMemoryIO(runtime, size);
+        return getTemporaryMemory().allocate(size, clear);
+    }
+
+    public MemoryArena openTemporaryScope() {
+        return getTemporaryMemory().open();
+    }
+
+    private TemporaryMemoryStack getTemporaryMemory() {
+        TemporaryMemoryStack stack = temporaryMemory.get();
+        if (stack == null) {
+            temporaryMemory.set(stack = new TemporaryMemoryStack(runtime, temporaryMemory));
+        }
+
+        return stack;
     }
 
     public Pointer newPointer(ByteBuffer buffer) {
@@ -60,11 +90,163 @@ public class NativeMemoryManager implements jnr.ffi.provider.MemoryManager {
     }
 
     public Pointer newPointer(long address, long size) {
-        return new BoundedMemoryIO(new DirectMemoryIO(runtime, address), 0, size);
+        return MemoryUtil.newBoundedPointer(new DirectMemoryIO(runtime, address), 0, size);
     }
 
     public Pointer newOpaquePointer(long address) {
         return new IntPointer(runtime, address);
     }
 
+    public MemoryCursor newCursor(long address) {
+        return new DirectMemoryCursor(runtime, address);
+    }
+
+    public <T> T newStructAccessor(StructLayout layout, Class<T> accessorInterface) {
+        return StructAccessorGenerator.generate(layout, accessorInterface);
+    }
+
+    public Pointer unchecked(Pointer pointer) {
+        if (!pointer.isDirect() || pointer instanceof AbstractDirectMemoryIO) {
+            return pointer;
+        }
+
+        Pointer ptr = pointer;
+        while (ptr instanceof DelegatingMemoryIO) {
+            ptr = ((DelegatingMemoryIO) ptr).getDelegatedMemoryIO();
+        }
+
+        // Direct byte buffers do not expose their address, so leave the buffer to check accesses
+        return ptr instanceof DirectMemoryIO ? new UncheckedMemoryIO(pointer, 0, pointer.size()) : pointer;
+    }
+
+    public void dispose(Pointer pointer) {
+        Pointer ptr = getAllocation(pointer);
+        if (ptr instanceof AllocatedDirectMemoryIO) {
+            ((AllocatedDirectMemoryIO) ptr).dispose();
+
+        } else if (ptr instanceof MappedMemoryIO) {
+            ((MappedMemoryIO) ptr).unmap();
+        }
+    }
+
+    /**
+     * Finds the native allocation behind a pointer returned from {@link #allocateDirect} or {@link #map}.
+     * Slices are rejected, since freeing the allocation through them would leave the original
+     * pointer, and any other slices, pointing at freed memory.
+     */
+    private static Pointer getAllocation(Pointer pointer) {
+        Pointer ptr = pointer;
+        // an unchecked view of the whole of a returned pointer
+        if (ptr instanceof UncheckedMemoryIO) {
+            Pointer parent = ((UncheckedMemoryIO) ptr).getDelegatedMemoryIO();
+            if (parent instanceof DelegatingMemoryIO && parent.address() == ptr.address() && parent.size() == ptr.size()) {
+                ptr = parent;
+            }
+        }
+
+        Pointer root = ptr;
+        while (root instanceof DelegatingMemoryIO) {
+            root = ((DelegatingMemoryIO) root).getDelegatedMemoryIO();
+        }
+
+        boolean isView = root instanceof MappedMemoryIO
+                ? ((MappedMemoryIO) root).isView(ptr)
+                : root instanceof AllocatedDirectMemoryIO && ptr.address() == root.address() && ptr.size() == root.size();
+        if (!isView && (root instanceof MappedMemoryIO || root instanceof AllocatedDirectMemoryIO)) {
+            throw new IllegalArgumentException("not a pointer returned from allocateDirect or map: " + pointer);
+        }
+
+        return root;
+    }
+
+    public Pointer map(File file, MapMode mode, long offset, long length) throws IOException {
+        return MappedMemoryIO.map(runtime, file, mode, offset, length);
+    }
+
+    public void unmap(Pointer pointer) {
+        Pointer ptr = getAllocation(pointer);
+        if (!(ptr instanceof MappedMemoryIO)) {
+            throw new IllegalArgumentException("not a memory mapped pointer: " + pointer);
+        }
+
+        ((MappedMemoryIO) ptr).unmap();
+    }
+
+    public boolean advise(Pointer pointer, MemoryAdvice advice) {
+        MappedMemoryIO mapping = getMapping(pointer);
+        return mapping.advise(checkMappedRange(mapping, pointer), pointer.size(), advice);
+    }
+
+    public void sync(Pointer pointer, boolean async) throws IOException {
+        MappedMemoryIO mapping = getMapping(pointer);
+        mapping.sync(checkMappedRange(mapping, pointer), pointer.size(), async);
+    }
+
+    private static MappedMemoryIO getMapping(Pointer pointer) {
+        Pointer ptr = pointer;
+        while (ptr instanceof DelegatingMemoryIO) {
+            ptr = ((DelegatingMemoryIO) ptr).getDelegatedMemoryIO();
+        }
+
+        if (!(ptr instanceof MappedMemoryIO)) {
+            throw new IllegalArgumentException("not a memory mapped pointer: " + pointer);
+        }
+
+        return (MappedMemoryIO) ptr;
+    }
+
+    private static long checkMappedRange(MappedMemoryIO mapping, Pointer pointer) {
+        long offset = pointer.address() - mapping.address();
+        if (offset < 0 || pointer.size() < 0 || offset + pointer.size() > mapping.size()) {
+            throw new IndexOutOfBoundsException("pointer is outside the mapped memory");
+        }
+
+        return offset;
+    }
+
+    /**
+     * Gets the number of bytes of native memory allocated via {@link #allocateDirect}
+     * and memory arenas that have not yet been freed, either explicitly or by the garbage collector.
+     *
+     * @return the number of outstanding bytes of native memory.
+     */
+    public long getOutstandingBytes() {
+        return MemoryAccounting.getOutstandingBytes();
+    }
+
+    /**
+     * Takes a snapshot of the native memory allocated by this memory manager.
+     *
+     * @return a {@link NativeMemoryStatistics} instance.
+     */
+    public NativeMemoryStatistics getStatistics() {
+        return MemoryAccounting.snapshot();
+    }
+
+    /**
+     * Sets how often the call site of a native memory allocation is recorded.
+     *
+     * @param rate record one in every {@code rate} allocations, or zero to disable sampling.
+     */
+    public void setAllocationSampleRate(int rate) {
+        MemoryAccounting.setSampleRate(rate);
+    }
+
+    /**
+     * Gets the size-class pool small direct allocations are recycled through.
+     *
+     * @return the {@link NativeMemoryPool}, or {@code null} if pooling is not enabled.
+     */
+    public NativeMemoryPool getPool() {
+        return NativeMemoryPool.getInstance();
+    }
+
+    public MemoryArena newArena() {
+        return new NativeMemoryArena(runtime, NativeMemoryArena.DEFAULT_CHUNK_SIZE);
+    }
+
+    public MemoryArena newArena(int chunkSize) {
+        return new NativeMemoryArena(runtime, chunkSize);
+    }
+
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+
+/**
+ * Exposes {@link MemoryAccounting} via JMX.
+ */
+final class NativeMemoryMonitor implements NativeMemoryMonitorMBean {
+    static final String OBJECT_NAME = "jnr.ffi:type=NativeMemory";
+
+    static void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new NativeMemoryMonitor(), name);
+            }
+        } catch (Throwable t) {
+            Logger.getLogger(NativeMemoryMonitor.class.getName()).log(Level.WARNING,
+                "Failed to register native memory MBean: " + t.getLocalizedMessage());
+        }
+    }
+
+    public long getOutstandingBytes() {
+        return MemoryAccounting.snapshot(false).getOutstandingBytes();
+    }
+
+    public long getOutstandingCount() {
+        return MemoryAccounting.snapshot(false).getOutstandingCount();
+    }
+
+    public long getHighWaterBytes() {
+        return MemoryAccounting.snapshot(false).getHighWaterBytes();
+    }
+
+    public long getTotalBytes() {
+        return MemoryAccounting.snapshot(false).getTotalBytes();
+    }
+
+    public long getTotalCount() {
+        return MemoryAccounting.snapshot(false).getTotalCount();
+    }
+
+    public long getUndisposedBytes() {
+        return MemoryAccounting.snapshot(false).getUndisposedBytes();
+    }
+
+    public long getUndisposedCount() {
+        return MemoryAccounting.snapshot(false).getUndisposedCount();
+    }
+
+    public long[] getSizeClassCounts() {
+        return MemoryAccounting.snapshot(false).getSizeClassCounts();
+    }
+
+    public int getSampleRate() {
+        return MemoryAccounting.getSampleRate();
+    }
+
+    public void setSampleRate(int rate) {
+        MemoryAccounting.setSampleRate(rate);
+    }
+
+    public String[] getLiveAllocations() {
+        return describe(MemoryAccounting.snapshot().getLiveAllocations());
+    }
+
+    public String[] getUndisposedAllocations() {
+        return describe(MemoryAccounting.snapshot().getUndisposedAllocations());
+    }
+
+    public void resetHighWater() {
+        MemoryAccounting.resetHighWater();
+    }
+
+    private static String[] describe(List<NativeMemoryStatistics.Allocation> allocations) {
+        String[] descriptions = new String[allocations.size()];
+        for (int i = 0; i < descriptions.length; ++i) {
+            descriptions[i] = allocations.get(i).toString();
+        }
+
+        return descriptions;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+/**
+ * JMX management interface for native memory allocated by jnr-ffi.
+ *
+ * <p>Registered as {@code jnr.ffi:type=NativeMemory} when the {@code jnr.ffi.memory.jmx}
+ * system property is set to {@code true}.
+ */
+public interface NativeMemoryMonitorMBean {
+    long getOutstandingBytes();
+    long getOutstandingCount();
+    long getHighWaterBytes();
+    long getTotalBytes();
+    long getTotalCount();
+    long getUndisposedBytes();
+    long getUndisposedCount();
+    long[] getSizeClassCounts();
+
+    int getSampleRate();
+    void setSampleRate(int rate);
+
+    /** Gets a description of each sampled allocation that is still outstanding */
+    String[] getLiveAllocations();
+
+    /** Gets a description of the most recent sampled allocations that were never disposed */
+    String[] getUndisposedAllocations();
+
+    void resetHighWater();
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A size-class caching allocator for small blocks of native memory.
+ *
+ * <p>Freed blocks are kept in per-thread magazines, one per power-of-two size class,
+ * so allocating a block of a recently freed size does not need to call malloc.
+ * When a thread's magazine is full, it is handed off to a global lock-free depot,
+ * from which other threads can pick up full magazines when theirs run dry.  This lets
+ * blocks freed on the reaper thread be recycled by the threads allocating them.
+ *
+ * <p>The pool is disabled by default, and is configured via system properties:
+ * <ul>
+ * <li>{@code jnr.ffi.memory.pool} - set to {@code true} to enable the pool.</li>
+ * <li>{@code jnr.ffi.memory.pool.maxBlockSize} - the largest size that is pooled (default 4096).</li>
+ * <li>{@code jnr.ffi.memory.pool.magazineSize} - the number of blocks per thread, per size class (default 32).</li>
+ * <li>{@code jnr.ffi.memory.pool.depotSize} - the number of full magazines kept in the depot, per size class (default 16).</li>
+ * </ul>
+ */
+public final class NativeMemoryPool {
+    static final com.kenai.jffi.MemoryIO IO = com.kenai.jffi.MemoryIO.getInstance();
+    private static final int MIN_BLOCK_SHIFT = 4;
+
+    private final int maxBlockSize;
+    private final int magazineSize;
+    private final int depotSize;
+    private final Depot[] depots;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong releases = new AtomicLong();
+
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache(Thread.currentThread());
+        }
+    };
+
+    private static final class SingletonHolder {
+        static final NativeMemoryPool INSTANCE = Boolean.getBoolean("jnr.ffi.memory.pool")
+                ? new NativeMemoryPool(Integer.getInteger("jnr.ffi.memory.pool.maxBlockSize", 4096),
+                    Integer.getInteger("jnr.ffi.memory.pool.magazineSize", 32),
+                    Integer.getInteger("jnr.ffi.memory.pool.depotSize", 16))
+                : null;
+    }
+
+    /**
+     * Gets the system-wide pool.
+     *
+     * @return the pool instance, or {@code null} if pooling is disabled.
+     */
+    static NativeMemoryPool getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    NativeMemoryPool(int maxBlockSize, int magazineSize, int depotSize) {
+        if (magazineSize < 1) {
+            throw new IllegalArgumentException("invalid magazine size " + magazineSize);
+        }
+        this.maxBlockSize = maxBlockSize;
+        this.magazineSize = magazineSize;
+        this.depotSize = depotSize;
+        this.depots = new Depot[Math.max(0, sizeClass(maxBlockSize) + 1)];
+        for (int i = 0; i < depots.length; ++i) {
+            depots[i] = new Depot();
+        }
+    }
+
+    private static int sizeClass(int size) {
+        return size <= (1 << MIN_BLOCK_SHIFT) ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_BLOCK_SHIFT;
+    }
+
+    /**
+     * Gets the size of the native memory block that an allocation of {@code size} bytes uses.
+     */
+    static int blockSize(int size) {
+        return 1 << (sizeClass(size) + MIN_BLOCK_SHIFT);
+    }
+
+    /**
+     * Checks if an allocation of {@code size} bytes is served by this pool.
+     */
+    boolean isPooled(int size) {
+        return size > 0 && size <= maxBlockSize;
+    }
+
+    /**
+     * Allocates a block of native memory of at least {@code size} bytes.
+     */
+    long allocate(int size, boolean clear) {
+        if (!isPooled(size)) {
+            return IO.allocateMemory(size, clear);
+        }
+
+        final int sizeClass = sizeClass(size);
+        long address = threadCache.get().allocate(sizeClass);
+        if (address == 0L) {
+            address = IO.allocateMemory(blockSize(size), false);
+        }
+
+        if (clear && address != 0L) {
+            IO.setMemory(address, size, (byte) 0);
+        }
+
+        return address;
+    }
+
+    /**
+     * Returns a block of native memory allocated by {@link #allocate} to the pool.
+     */
+    void free(long address, int size) {
+        if (isPooled(size)) {
+            threadCache.get().free(sizeClass(size), address);
+        } else {
+            IO.freeMemory(address);
+        }
+    }
+
+    /**
+     * Gets the number of allocations that were satisfied by a recycled block.
+     *
+     * <p>Each thread only adds its hits to this counter when it exchanges magazines
+     * with the depot, so the value lags behind the real count.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Gets the number of pooled allocations that had to call malloc */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Gets the number of pooled blocks that were returned to the system, because the pool was full */
+    public long getReleases() {
+        return releases.get();
+    }
+
+    /** Gets the size of the largest allocation that is pooled */
+    public int getMaxBlockSize() {
+        return maxBlockSize;
+    }
+
+    private void releaseMagazine(Magazine magazine) {
+        for (int i = 0; i < magazine.count; ++i) {
+            IO.freeMemory(magazine.blocks[i]);
+        }
+        releases.addAndGet(magazine.count);
+        magazine.count = 0;
+    }
+
+    private static final class Magazine {
+        final long[] blocks;
+        int count;
+
+        Magazine(int size) {
+            this.blocks = new long[size];
+        }
+    }
+
+    /** An immutable stack node, so a magazine that is popped and pushed again can never cause ABA */
+    private static final class Node {
+        final Magazine magazine;
+        final Node next;
+
+        Node(Magazine magazine, Node next) {
+            this.magazine = magazine;
+            this.next = next;
+        }
+    }
+
+    /** Lock-free stack of full magazines for one size class */
+    private static final class Depot {
+        final AtomicReference<Node> head = new AtomicReference<Node>();
+        final AtomicInteger size = new AtomicInteger();
+
+        Magazine pop() {
+            for (;;) {
+                Node top = head.get();
+                if (top == null) {
+                    return null;
+                }
+                if (head.compareAndSet(top, top.next)) {
+                    size.decrementAndGet();
+                    return top.magazine;
+                }
+            }
+        }
+
+        void push(Magazine magazine) {
+            for (;;) {
+                Node top = head.get();
+                if (head.compareAndSet(top, new Node(magazine, top))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private final class ThreadCache {
+        private final Magazine[] magazines = new Magazine[depots.length];
+
+        /** Counts are flushed to the global counters whenever the depot is used */
+        private long localHits, localMisses;
+
+        ThreadCache(Thread thread) {
+            for (int i = 0; i < magazines.length; ++i) {
+                magazines[i] = new Magazine(magazineSize);
+            }
+
+            // Return any cached blocks to the system once the thread dies
+            new Reaper(thread, magazines);
+        }
+
+        long allocate(int sizeClass) {
+            Magazine magazine = magazines[sizeClass];
+            if (magazine.count < 1) {
+                Magazine full = depots[sizeClass].pop();
+                if (full == null) {
+                    ++localMisses;
+                    flush();
+                    return 0L;
+                }
+                flush();
+                magazines[sizeClass] = magazine = full;
+            }
+
+            ++localHits;
+            return magazine.blocks[--magazine.count];
+        }
+
+        void free(int sizeClass, long address) {
+            Magazine magazine = magazines[sizeClass];
+            if (magazine.count >= magazine.blocks.length) {
+                Depot depot = depots[sizeClass];
+                if (depot.size.incrementAndGet() <= depotSize) {
+                    depot.push(magazine);
+                } else {
+                    depot.size.decrementAndGet();
+                    releaseMagazine(magazine);
+                }
+                magazines[sizeClass] = magazine = magazine.count == 0 ? magazine : new Magazine(magazineSize);
+            }
+
+            magazine.blocks[magazine.count++] = address;
+        }
+
+        private void flush() {
+            hits.addAndGet(localHits);
+            misses.addAndGet(localMisses);
+            localHits = localMisses = 0;
+        }
+    }
+
+    private final class Reaper extends NativeReaper.Reference {
+        private final Magazine[] magazines;
+
+        Reaper(Thread thread, Magazine[] magazines) {
+            super(thread);
+            this.magazines = magazines;
+        }
+
+        void dispose() {
+            for (Magazine magazine : magazines) {
+                releaseMagazine(magazine);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of the native memory allocated by the {@link NativeMemoryManager}.
+ */
+public final class NativeMemoryStatistics {
+    private final long outstandingBytes, outstandingCount, highWaterBytes;
+    private final long totalBytes, totalCount, undisposedBytes, undisposedCount;
+    private final long[] sizeClassCounts;
+    private final List<Allocation> liveAllocations, undisposedAllocations;
+
+    NativeMemoryStatistics(long outstandingBytes, long outstandingCount, long highWaterBytes,
+                           long totalBytes, long totalCount, long undisposedBytes, long undisposedCount,
+                           long[] sizeClassCounts, List<Allocation> liveAllocations, List<Allocation> undisposedAllocations) {
+        this.outstandingBytes = outstandingBytes;
+        this.outstandingCount = outstandingCount;
+        this.highWaterBytes = highWaterBytes;
+        this.totalBytes = totalBytes;
+        this.totalCount = totalCount;
+        this.undisposedBytes = undisposedBytes;
+        this.undisposedCount = undisposedCount;
+        this.sizeClassCounts = sizeClassCounts;
+        this.liveAllocations = Collections.unmodifiableList(liveAllocations);
+        this.undisposedAllocations = Collections.unmodifiableList(undisposedAllocations);
+    }
+
+    /** Gets the number of bytes of native memory currently allocated */
+    public long getOutstandingBytes() {
+        return outstandingBytes;
+    }
+
+    /** Gets the number of native memory blocks currently allocated */
+    public long getOutstandingCount() {
+        return outstandingCount;
+    }
+
+    /** Gets the largest number of bytes of native memory that have been allocated at one time */
+    public long getHighWaterBytes() {
+        return highWaterBytes;
+    }
+
+    /** Gets the number of bytes of native memory allocated since startup */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /** Gets the number of native memory blocks allocated since startup */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /** Gets the number of bytes freed by the garbage collector, instead of being explicitly disposed */
+    public long getUndisposedBytes() {
+        return undisposedBytes;
+    }
+
+    /** Gets the number of blocks freed by the garbage collector, instead of being explicitly disposed */
+    public long getUndisposedCount() {
+        return undisposedCount;
+    }
+
+    /**
+     * Gets the number of currently allocated blocks in each power-of-two size class.
+     *
+     * @return an array where element {@code n} is the number of blocks larger than
+     * {@code 2^(n-1)} bytes, and no larger than {@code 2^n} bytes.
+     */
+    public long[] getSizeClassCounts() {
+        return sizeClassCounts.clone();
+    }
+
+    /** Gets the sampled allocations that are still outstanding */
+    public List<Allocation> getLiveAllocations() {
+        return liveAllocations;
+    }
+
+    /** Gets the most recent sampled allocations that were never explicitly disposed */
+    public List<Allocation> getUndisposedAllocations() {
+        return undisposedAllocations;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("outstanding=%d bytes in %d blocks, high water=%d bytes, total=%d bytes in %d blocks, undisposed=%d bytes in %d blocks",
+                outstandingBytes, outstandingCount, highWaterBytes, totalBytes, totalCount, undisposedBytes, undisposedCount);
+    }
+
+    /**
+     * A sampled native memory allocation.
+     */
+    public static final class Allocation {
+        private final long size;
+        private final long timestamp;
+        private final StackTraceElement[] stackTrace;
+
+        Allocation(long size, long timestamp, StackTraceElement[] stackTrace) {
+            this.size = size;
+            this.timestamp = timestamp;
+            this.stackTrace = stackTrace;
+        }
+
+        /** Gets the size of the allocation in bytes */
+        public long getSize() {
+            return size;
+        }
+
+        /** Gets the time the memory was allocated, in milliseconds since the epoch */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /** Gets the call stack the memory was allocated from */
+        public StackTraceElement[] getStackTrace() {
+            return stackTrace.clone();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(size).append(" bytes allocated");
+            for (StackTraceElement e : stackTrace) {
+                sb.append("\n\tat ").append(e);
+            }
+            return sb.toString();
+        }
+    }
+}
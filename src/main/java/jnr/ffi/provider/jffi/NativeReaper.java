@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Releases native resources once the java objects that own them become
+ * unreachable, without relying on finalization.
+ *
+ * <p>Each native resource is tracked by a {@link Reference} to its owner.  When the
+ * owner is garbage collected, a daemon thread picks the reference off the queue
+ * and disposes of the resource.  Resources can also be released explicitly, in which
+ * case the reference is unlinked immediately and nothing is left for the reaper to do.
+ */
+final class NativeReaper {
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<Object>();
+
+    /** Sentinel head of the list of live references, which keeps them strongly reachable */
+    private static final Reference HEAD = new Reference() {
+        void dispose() {}
+    };
+
+    static {
+        Thread reaper = new Thread(new Runnable() {
+            public void run() {
+                for (;;) {
+                    try {
+                        ((Reference) QUEUE.remove()).reap();
+                    } catch (InterruptedException ex) {
+                        // keep reaping
+                    } catch (Throwable t) {
+                        Logger.getLogger(NativeReaper.class.getName()).log(Level.WARNING,
+                            "Exception when releasing native resource: " + t.getLocalizedMessage(), t);
+                    }
+                }
+            }
+        }, "jnr-ffi reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    private NativeReaper() {}
+
+    static abstract class Reference extends PhantomReference<Object> {
+        private Reference prev, next;
+
+        private Reference() {
+            super(null, null);
+        }
+
+        Reference(Object referent) {
+            super(referent, QUEUE);
+            synchronized (HEAD) {
+                next = HEAD.next;
+                prev = HEAD;
+                if (next != null) {
+                    next.prev = this;
+                }
+                HEAD.next = this;
+            }
+        }
+
+        private boolean unlink() {
+            synchronized (HEAD) {
+                if (prev == null) {
+                    return false;
+                }
+                prev.next = next;
+                if (next != null) {
+                    next.prev = prev;
+                }
+                prev = next = null;
+                return true;
+            }
+        }
+
+        /**
+         * Releases the native resource, if it has not already been released.
+         *
+         * @return true if this call released the resource.
+         */
+        final boolean release() {
+            if (unlink()) {
+                clear();
+                dispose();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Releases the native resource after its owner has been garbage collected.
+         */
+        private void reap() {
+            if (unlink()) {
+                clear();
+                reaped();
+                dispose();
+            }
+        }
+
+        /** Called when the owner was garbage collected without the resource being released explicitly */
+        void reaped() {
+        }
+
+        /** Frees the native resource.  Called at most once. */
+        abstract void dispose();
+    }
+}
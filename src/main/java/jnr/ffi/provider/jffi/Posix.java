@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.PageManager;
+import jnr.ffi.Library;
+import jnr.ffi.Platform;
+import jnr.ffi.Pointer;
+import jnr.ffi.annotations.IgnoreError;
+import jnr.ffi.annotations.SaveError;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * The handful of POSIX memory management functions used internally by the memory manager.
+ */
+final class Posix {
+    static final int O_RDONLY = 0;
+    static final int O_RDWR = 2;
+
+    static final int PROT_READ = 0x1;
+    static final int PROT_WRITE = 0x2;
+
+    static final int MAP_SHARED = 0x1;
+    static final int MAP_PRIVATE = 0x2;
+    static final int MAP_ANONYMOUS = Platform.getNativePlatform().isBSD() ? 0x1000 : 0x20;
+    /** Linux only */
+    static final int MAP_HUGETLB = 0x40000;
+
+    static final int MADV_NORMAL = 0;
+    static final int MADV_RANDOM = 1;
+    static final int MADV_SEQUENTIAL = 2;
+    static final int MADV_WILLNEED = 3;
+    static final int MADV_DONTNEED = 4;
+    /** Linux only */
+    static final int MADV_HUGEPAGE = 14;
+
+    static final int MPOL_BIND = 2;
+
+    static final int MS_ASYNC = 0x1;
+    static final int MS_SYNC;
+    static {
+        switch (Platform.getNativePlatform().getOS()) {
+            case DARWIN:
+                MS_SYNC = 0x10;
+                break;
+            case FREEBSD:
+            case NETBSD:
+            case OPENBSD:
+                MS_SYNC = 0x0;
+                break;
+            default:
+                MS_SYNC = 0x4;
+                break;
+        }
+    }
+
+    static final long MAP_FAILED = -1L;
+
+    private Posix() {}
+
+    public static interface LibC {
+        @SaveError int open(String path, int flags);
+        @IgnoreError int close(int fd);
+        @SaveError long mmap(long addr, long length, int prot, int flags, int fd, long offset);
+        @SaveError int munmap(long addr, long length);
+        @SaveError int madvise(long addr, long length, int advice);
+        @SaveError int msync(long addr, long length, int flags);
+        @IgnoreError String strerror(int errno);
+    }
+
+    public static interface LibNuma {
+        @SaveError int mbind(long addr, long length, int mode, Pointer nodemask, long maxnode, int flags);
+    }
+
+    private static final class SingletonHolder {
+        static final LibC libc = load();
+
+        private static LibC load() {
+            if (!Platform.getNativePlatform().isUnix()) {
+                return null;
+            }
+
+            try {
+                return Library.loadLibrary("c", LibC.class);
+            } catch (UnsatisfiedLinkError ule) {
+                return null;
+            }
+        }
+    }
+
+    private static final class NumaHolder {
+        static final LibNuma numa = load();
+
+        private static LibNuma load() {
+            if (Platform.getNativePlatform().getOS() != Platform.OS.LINUX) {
+                return null;
+            }
+
+            for (String name : new String[] { "libnuma.so.1", "numa" }) {
+                try {
+                    return Library.loadLibrary(name, LibNuma.class);
+                } catch (UnsatisfiedLinkError ule) {
+                    // try the next name
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private static final class HugePageHolder {
+        static final long size = readHugePageSize();
+
+        private static long readHugePageSize() {
+            try {
+                BufferedReader reader = new BufferedReader(new FileReader("/proc/meminfo"));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith("Hugepagesize:")) {
+                            String[] fields = line.substring("Hugepagesize:".length()).trim().split("\\s+");
+                            return Long.parseLong(fields[0]) * 1024;
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException ex) {
+                // fall through to the default
+            } catch (NumberFormatException ex) {
+                // fall through to the default
+            }
+
+            return 2 * 1024 * 1024;
+        }
+    }
+
+    /**
+     * Gets the C library functions.
+     *
+     * @return the {@link LibC} instance.
+     * @throws UnsupportedOperationException if the platform C library does not provide them.
+     */
+    static LibC libc() {
+        LibC libc = SingletonHolder.libc;
+        if (libc == null) {
+            throw new UnsupportedOperationException("memory mapping not supported on "
+                    + Platform.getNativePlatform().getOS());
+        }
+
+        return libc;
+    }
+
+    /**
+     * Gets the NUMA policy functions.
+     *
+     * @return the {@link LibNuma} instance, or {@code null} if libnuma is not installed.
+     */
+    static LibNuma numa() {
+        return NumaHolder.numa;
+    }
+
+    static long hugePageSize() {
+        return HugePageHolder.size;
+    }
+
+    static long pageSize() {
+        return PageManager.getInstance().pageSize();
+    }
+
+    static int errno() {
+        return NativeRuntime.getInstance().getLastError();
+    }
+
+    static IOException newIOException(String function, int errno) {
+        return new IOException(function + " failed: " + libc().strerror(errno));
+    }
+}
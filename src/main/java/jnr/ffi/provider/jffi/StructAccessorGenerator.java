@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.MemoryIO;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.StructLayout;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static jnr.ffi.provider.jffi.CodegenUtils.*;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates implementations of struct accessor interfaces.
+ *
+ * <p>Each method of the interface is bound to the {@link StructLayout} field of the same name
+ * (optionally prefixed by {@code get} or {@code set}).
+ * A getter takes a {@code Pointer} (and optionally a {@code long} offset of the struct within
+ * that memory) and returns the field value; a setter takes the same parameters followed by the
+ * new value.  The generated methods have the field offsets as constants, and read or write
+ * direct memory through its address (after checking the bounds of a direct memory slice),
+ * falling back to the {@code Pointer} accessors for any other kind of memory.
+ *
+ * <p>Generated classes are cached per layout class and interface, and reused for any layout
+ * instance whose fields have the same offsets and types.
+ */
+final class StructAccessorGenerator {
+    private static final AtomicLong nextClassID = new AtomicLong(0);
+    private static final ConcurrentMap<AccessorKey, Class> accessorClasses = new ConcurrentHashMap<AccessorKey, Class>();
+
+    /** How a field is stored in native memory */
+    private static enum Kind {
+        BYTE(byte.class, 1, "Byte", "Byte"),
+        SHORT(short.class, 2, "Short", "Short"),
+        INT(int.class, 4, "Int", "Int"),
+        LONG(long.class, 8, "Long", "LongLong"),
+        FLOAT(float.class, 4, "Float", "Float"),
+        DOUBLE(double.class, 8, "Double", "Double"),
+        ADDRESS(long.class, 0, "Address", "Address");
+
+        final Class nativeType;
+        final int size;
+        final String ioName, pointerName;
+
+        Kind(Class nativeType, int size, String ioName, String pointerName) {
+            this.nativeType = nativeType;
+            this.size = size;
+            this.ioName = ioName;
+            this.pointerName = pointerName;
+        }
+    }
+
+    /** A layout field, as seen by the generated code */
+    private static final class FieldInfo {
+        final long offset;
+        final Kind kind;
+        final Class javaType;
+        final boolean unsigned;
+        int size;
+
+        FieldInfo(long offset, Kind kind, Class javaType, boolean unsigned) {
+            this.offset = offset;
+            this.size = kind.size;
+            this.kind = kind;
+            this.javaType = javaType;
+            this.unsigned = unsigned;
+        }
+
+        public String toString() {
+            return offset + ":" + kind + ":" + size + (unsigned ? ":u" : "");
+        }
+    }
+
+    /** Identifies a generated class: the layout class, the interface, and the fields the methods bind to */
+    private static final class AccessorKey {
+        private final Class layoutClass, accessorInterface;
+        private final String fields;
+
+        AccessorKey(Class layoutClass, Class accessorInterface, String fields) {
+            this.layoutClass = layoutClass;
+            this.accessorInterface = accessorInterface;
+            this.fields = fields;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof AccessorKey)) {
+                return false;
+            }
+
+            AccessorKey other = (AccessorKey) o;
+            return layoutClass == other.layoutClass && accessorInterface == other.accessorInterface
+                    && fields.equals(other.fields);
+        }
+
+        public int hashCode() {
+            return (31 * layoutClass.hashCode() + accessorInterface.hashCode()) * 31 + fields.hashCode();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T generate(StructLayout layout, Class<T> accessorInterface) {
+        if (!accessorInterface.isInterface()) {
+            throw new IllegalArgumentException(accessorInterface.getName() + " is not an interface");
+        }
+
+        Method[] methods = accessorInterface.getMethods();
+        FieldInfo[] fields = new FieldInfo[methods.length];
+        StringBuilder signature = new StringBuilder();
+        for (int i = 0; i < methods.length; i++) {
+            fields[i] = getFieldInfo(layout, methods[i]);
+            signature.append(methods[i].getName()).append('=').append(fields[i]).append(';');
+        }
+
+        AccessorKey key = new AccessorKey(layout.getClass(), accessorInterface, signature.toString());
+        Class implClass = accessorClasses.get(key);
+        if (implClass == null) {
+            implClass = defineAccessorClass(accessorInterface, methods, fields);
+            Class existing = accessorClasses.putIfAbsent(key, implClass);
+            if (existing != null) {
+                implClass = existing;
+            }
+        }
+
+        try {
+            return (T) implClass.newInstance();
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static Class defineAccessorClass(Class accessorInterface, Method[] methods, FieldInfo[] fields) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        ClassVisitor cv = AsmLibraryLoader.DEBUG ? AsmUtil.newCheckClassAdapter(cw) : cw;
+        String className = p(accessorInterface) + "$jnr$accessor$" + nextClassID.getAndIncrement();
+
+        cv.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, p(Object.class),
+                new String[] { p(accessorInterface) });
+        cv.visitField(ACC_PRIVATE | ACC_FINAL | ACC_STATIC, "IO", ci(MemoryIO.class), null, null);
+
+        SkinnyMethodAdapter clinit = new SkinnyMethodAdapter(cv.visitMethod(ACC_STATIC, "<clinit>", sig(void.class), null, null));
+        clinit.start();
+        clinit.invokestatic(MemoryIO.class, "getInstance", MemoryIO.class);
+        clinit.putstatic(className, "IO", ci(MemoryIO.class));
+        clinit.voidreturn();
+        clinit.visitMaxs(10, 10);
+        clinit.visitEnd();
+
+        SkinnyMethodAdapter init = new SkinnyMethodAdapter(cv.visitMethod(ACC_PUBLIC, "<init>", sig(void.class), null, null));
+        init.start();
+        init.aload(0);
+        init.invokespecial(p(Object.class), "<init>", sig(void.class));
+        init.voidreturn();
+        init.visitMaxs(10, 10);
+        init.visitEnd();
+
+        for (int i = 0; i < methods.length; i++) {
+            generateMethod(cv, className, methods[i], fields[i]);
+        }
+
+        cv.visitEnd();
+
+        try {
+            byte[] bytes = cw.toByteArray();
+            if (AsmLibraryLoader.DEBUG) {
+                ClassVisitor trace = AsmUtil.newTraceClassVisitor(new PrintWriter(System.err));
+                new ClassReader(bytes).accept(trace, 0);
+            }
+
+            return new AsmClassLoader(accessorInterface.getClassLoader()).defineClass(className.replace("/", "."), bytes);
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static Object findField(StructLayout layout, String name) {
+        for (Class c = layout.getClass(); c != StructLayout.class; c = c.getSuperclass()) {
+            try {
+                Field f = c.getDeclaredField(name);
+                f.setAccessible(true);
+                return f.get(layout);
+            } catch (NoSuchFieldException ex) {
+                continue;
+            } catch (IllegalAccessException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        return null;
+    }
+
+    private static FieldInfo getFieldInfo(StructLayout layout, Method m) {
+        String name = m.getName();
+        Object field = findField(layout, name);
+        if (field == null && name.length() > 3 && (name.startsWith("get") || name.startsWith("set"))) {
+            field = findField(layout, Character.toLowerCase(name.charAt(3)) + name.substring(4));
+        }
+
+        if (field == null) {
+            throw new IllegalArgumentException("no field named " + m.getName() + " in " + layout.getClass().getName());
+        }
+
+        Runtime runtime = layout.getRuntime();
+        FieldInfo info;
+        if (field instanceof StructLayout.Signed8) {
+            info = new FieldInfo(((StructLayout.Signed8) field).offset(), Kind.BYTE, byte.class, false);
+
+        } else if (field instanceof StructLayout.Unsigned8) {
+            info = new FieldInfo(((StructLayout.Unsigned8) field).offset(), Kind.BYTE, short.class, true);
+
+        } else if (field instanceof StructLayout.Signed16) {
+            info = new FieldInfo(((StructLayout.Signed16) field).offset(), Kind.SHORT, short.class, false);
+
+        } else if (field instanceof StructLayout.Unsigned16) {
+            info = new FieldInfo(((StructLayout.Unsigned16) field).offset(), Kind.SHORT, int.class, true);
+
+        } else if (field instanceof StructLayout.Signed32) {
+            info = new FieldInfo(((StructLayout.Signed32) field).offset(), Kind.INT, int.class, false);
+
+        } else if (field instanceof StructLayout.Unsigned32) {
+            info = new FieldInfo(((StructLayout.Unsigned32) field).offset(), Kind.INT, long.class, true);
+
+        } else if (field instanceof StructLayout.Signed64) {
+            info = new FieldInfo(((StructLayout.Signed64) field).offset(), Kind.LONG, long.class, false);
+
+        } else if (field instanceof StructLayout.Unsigned64) {
+            info = new FieldInfo(((StructLayout.Unsigned64) field).offset(), Kind.LONG, long.class, false);
+
+        } else if (field instanceof StructLayout.SignedLong) {
+            info = new FieldInfo(((StructLayout.SignedLong) field).offset(),
+                    runtime.longSize() == 8 ? Kind.LONG : Kind.INT, long.class, false);
+
+        } else if (field instanceof StructLayout.UnsignedLong) {
+            info = new FieldInfo(((StructLayout.UnsignedLong) field).offset(),
+                    runtime.longSize() == 8 ? Kind.LONG : Kind.INT, long.class, runtime.longSize() != 8);
+
+        } else if (field instanceof StructLayout.Float) {
+            info = new FieldInfo(((StructLayout.Float) field).offset(), Kind.FLOAT, float.class, false);
+
+        } else if (field instanceof StructLayout.Double) {
+            info = new FieldInfo(((StructLayout.Double) field).offset(), Kind.DOUBLE, double.class, false);
+
+        } else if (field instanceof StructLayout.Pointer) {
+            info = new FieldInfo(((StructLayout.Pointer) field).offset(), Kind.ADDRESS, long.class, false);
+
+        } else {
+            throw new IllegalArgumentException("unsupported field type " + field.getClass().getName() + " for " + m.getName());
+        }
+
+        if (info.kind == Kind.ADDRESS) {
+            info.size = runtime.addressSize();
+        }
+
+        return info;
+    }
+
+    private static void generateMethod(ClassVisitor cv, String className, Method m, FieldInfo field) {
+        final Class[] params = m.getParameterTypes();
+        final boolean setter = m.getReturnType() == void.class;
+        final Class valueType = setter ? (params.length > 0 ? params[params.length - 1] : null) : m.getReturnType();
+        final int nonValueParams = setter ? params.length - 1 : params.length;
+        final boolean hasBase = nonValueParams == 2;
+
+        if (nonValueParams < 1 || nonValueParams > 2 || params[0] != Pointer.class
+                || (hasBase && params[1] != long.class) || valueType != field.javaType) {
+            throw new IllegalArgumentException("accessor method " + m.getName() + " must be "
+                    + (setter ? "void " + m.getName() + "(Pointer, [long,] " + field.javaType.getName() + ")"
+                        : field.javaType.getName() + " " + m.getName() + "(Pointer [, long])"));
+        }
+
+        SkinnyMethodAdapter mv = new SkinnyMethodAdapter(cv.visitMethod(ACC_PUBLIC | ACC_FINAL, m.getName(),
+                sig(m.getReturnType(), params), null, null));
+        mv.start();
+
+        final int valueIndex = hasBase ? 4 : 2;
+        final int offsetIndex = valueIndex + (setter ? (valueType == long.class || valueType == double.class ? 2 : 1) : 0);
+        final int addressIndex = offsetIndex + 2;
+        Label slow = new Label();
+
+        mv.ldc(field.offset);
+        if (hasBase) {
+            mv.lload(2);
+            mv.ladd();
+        }
+        mv.lstore(offsetIndex);
+
+        mv.aload(1);
+        mv.lload(offsetIndex);
+        mv.pushInt(field.size);
+        mv.invokestatic(AsmRuntime.class, "directAddress", long.class, Pointer.class, long.class, int.class);
+        mv.dup2();
+        mv.lstore(addressIndex);
+        mv.lconst_0();
+        mv.lcmp();
+        mv.ifeq(slow);
+
+        // Direct memory: access the field through its address
+        mv.getstatic(className, "IO", ci(MemoryIO.class));
+        mv.lload(addressIndex);
+        if (setter) {
+            loadValue(mv, field, valueIndex);
+            mv.invokevirtual(MemoryIO.class, "put" + field.kind.ioName, void.class, long.class, field.kind.nativeType);
+            mv.voidreturn();
+        } else {
+            mv.invokevirtual(MemoryIO.class, "get" + field.kind.ioName, field.kind.nativeType, long.class);
+            returnValue(mv, field);
+        }
+
+        // Any other memory: access the field through the Pointer
+        mv.label(slow);
+        mv.aload(1);
+        mv.lload(offsetIndex);
+        if (setter) {
+            loadValue(mv, field, valueIndex);
+            mv.invokevirtual(Pointer.class, "put" + field.kind.pointerName, void.class, long.class, field.kind.nativeType);
+            mv.voidreturn();
+        } else {
+            mv.invokevirtual(Pointer.class, "get" + field.kind.pointerName, field.kind.nativeType, long.class);
+            returnValue(mv, field);
+        }
+
+        mv.visitMaxs(10, 10);
+        mv.visitEnd();
+    }
+
+    /** Loads the value parameter of a setter, converted to the native type */
+    private static void loadValue(SkinnyMethodAdapter mv, FieldInfo field, int index) {
+        if (field.javaType == long.class) {
+            mv.lload(index);
+            if (field.kind.nativeType == int.class) {
+                mv.l2i();
+            }
+
+        } else if (field.javaType == float.class) {
+            mv.fload(index);
+
+        } else if (field.javaType == double.class) {
+            mv.dload(index);
+
+        } else {
+            mv.iload(index);
+            if (field.kind == Kind.BYTE && field.javaType != byte.class) {
+                mv.i2b();
+            } else if (field.kind == Kind.SHORT && field.javaType != short.class) {
+                mv.i2s();
+            }
+        }
+    }
+
+    /** Converts a value read from memory to the java type of the field, and returns it */
+    private static void returnValue(SkinnyMethodAdapter mv, FieldInfo field) {
+        if (field.javaType == long.class) {
+            if (field.kind.nativeType == int.class) {
+                mv.i2l();
+                if (field.unsigned) {
+                    mv.ldc(0xffffffffL);
+                    mv.land();
+                }
+            }
+            mv.lreturn();
+
+        } else if (field.javaType == float.class) {
+            mv.freturn();
+
+        } else if (field.javaType == double.class) {
+            mv.dreturn();
+
+        } else {
+            if (field.unsigned) {
+                mv.ldc(field.kind == Kind.BYTE ? 0xff : 0xffff);
+                mv.iand();
+            }
+            mv.ireturn();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.MemoryArena;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+
+/**
+ * A per-thread stack of native memory that temporary allocations are carved from.
+ *
+ * <p>Memory is allocated by bumping a pointer within the current segment, and is
+ * released by popping the stack back to where it was when the enclosing
+ * {@link Scope} was opened.  Scopes must be closed in the reverse order they were
+ * opened.  Once the outermost scope is closed, all but the first segment are freed.
+ *
+ * <p>Allocations made while no scope is open have no point at which they can be popped,
+ * so they are carved from a separate block instead, which is freed once the stack has
+ * moved on to a new block and every pointer into it has been garbage collected.
+ */
+final class TemporaryMemoryStack {
+    static final com.kenai.jffi.MemoryIO IO = com.kenai.jffi.MemoryIO.getInstance();
+    static final int SEGMENT_SIZE = Integer.getInteger("jnr.ffi.memory.temporarySegmentSize", 64 * 1024);
+    private static final int DEFAULT_ALIGNMENT = 8;
+    /** The largest allocation made outside a scope that is carved from a block rather than malloc'ed */
+    private static final int MAX_UNSCOPED_SIZE = SEGMENT_SIZE / 16;
+
+    private final Runtime runtime;
+    private final ThreadLocal<TemporaryMemoryStack> owner;
+    private final Segments segments = new Segments();
+
+    /** The segment currently being allocated from, and the offset of the first free byte in it */
+    private int current;
+    private long offset;
+
+    /** The innermost open scope */
+    private Scope top;
+
+    /** The block allocations made outside any scope are carved from */
+    private Block block;
+
+    TemporaryMemoryStack(Runtime runtime, ThreadLocal<TemporaryMemoryStack> owner) {
+        this.runtime = runtime;
+        this.owner = owner;
+        new Reaper(Thread.currentThread(), segments);
+    }
+
+    Scope open() {
+        return top = new Scope(top, current, offset);
+    }
+
+    /**
+     * Allocates memory from the innermost open scope, or if there is none, from a block
+     * that is freed once the memory is no longer referenced.
+     */
+    Pointer allocate(int size, boolean clear) {
+        if (top != null) {
+            return top.allocate(size, DEFAULT_ALIGNMENT, clear);
+        }
+
+        if (size < 0) {
+            throw new IllegalArgumentException("negative size " + size);
+        }
+
+        if (size > MAX_UNSCOPED_SIZE) {
+            return MemoryUtil.newBoundedPointer(new AllocatedDirectMemoryIO(runtime, size, clear), 0, size);
+        }
+
+        long address = block != null ? block.allocate(size) : 0L;
+        if (address == 0L) {
+            block = new Block(SEGMENT_SIZE);
+            address = block.allocate(size);
+        }
+
+        if (clear) {
+            IO.setMemory(address, size, (byte) 0);
+        }
+
+        return MemoryUtil.newBoundedPointer(new BlockMemoryIO(runtime, address, block), 0, size);
+    }
+
+    private long allocateAddress(int size, int alignment) {
+        for (;;) {
+            if (current < segments.count) {
+                long base = segments.addresses[current];
+                long address = align(base + offset, alignment);
+                if (address + size <= base + segments.sizes[current]) {
+                    offset = address + size - base;
+                    return address;
+                }
+
+                // Segments above the current one are unused, so they can be re-used or replaced
+                if (current + 1 < segments.count && segments.sizes[current + 1] >= size + alignment) {
+                    ++current;
+                    offset = 0;
+                    continue;
+                }
+
+                segments.free(current + 1);
+            }
+
+            segments.add(Math.max(SEGMENT_SIZE, size + alignment));
+            current = segments.count - 1;
+            offset = 0;
+        }
+    }
+
+    private void release(Scope scope) {
+        current = scope.segment;
+        offset = scope.offset;
+    }
+
+    private static long align(long address, int alignment) {
+        return (address + alignment - 1) & ~((long) alignment - 1);
+    }
+
+    /**
+     * A region of the temporary memory stack.  Allocations made while the scope
+     * is the innermost open scope are released when it is closed.
+     */
+    final class Scope extends MemoryArena {
+        private final Scope parent;
+        private final int segment;
+        private final long offset;
+        private boolean closed;
+
+        Scope(Scope parent, int segment, long offset) {
+            this.parent = parent;
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        private void checkTop() {
+            if (closed) {
+                throw new IllegalStateException("temporary memory scope has been closed");
+            }
+
+            if (top != this || owner.get() != TemporaryMemoryStack.this) {
+                throw new IllegalStateException("temporary memory scope is not the innermost scope of the current thread");
+            }
+        }
+
+        public Pointer allocate(int size) {
+            return allocate(size, DEFAULT_ALIGNMENT, false);
+        }
+
+        public Pointer allocate(int size, boolean clear) {
+            return allocate(size, DEFAULT_ALIGNMENT, clear);
+        }
+
+        public Pointer allocate(int size, int alignment, boolean clear) {
+            if (size < 0) {
+                throw new IllegalArgumentException("negative size " + size);
+            }
+
+            if (alignment <= 0 || (alignment & (alignment - 1)) != 0) {
+                throw new IllegalArgumentException("alignment must be a power of two");
+            }
+            checkTop();
+
+            long address = allocateAddress(size, alignment);
+            if (clear) {
+                IO.setMemory(address, size, (byte) 0);
+            }
+
+            return MemoryUtil.newBoundedPointer(new DirectMemoryIO(runtime, address), 0, size);
+        }
+
+        public long capacity() {
+            long capacity = 0;
+            for (int i = segment; i <= current && i < segments.count; ++i) {
+                capacity += (i == current ? TemporaryMemoryStack.this.offset : segments.sizes[i]) - (i == segment ? offset : 0);
+            }
+
+            return capacity;
+        }
+
+        public void reset() {
+            checkTop();
+            release(this);
+        }
+
+        public void close() {
+            if (!closed) {
+                checkTop();
+                release(this);
+                closed = true;
+                top = parent;
+                if (top == null) {
+                    segments.free(1);
+                }
+            }
+        }
+    }
+
+    /** The native memory segments that make up the stack */
+    private static final class Segments {
+        long[] addresses = new long[4];
+        int[] sizes = new int[4];
+        int count;
+
+        void add(int size) {
+            long address = IO.allocateMemory(size, false);
+            if (address == 0L) {
+                throw new OutOfMemoryError("Failed to allocate " + size + " bytes");
+            }
+
+            if (count == addresses.length) {
+                long[] tmp = new long[count * 2];
+                System.arraycopy(addresses, 0, tmp, 0, count);
+                addresses = tmp;
+                int[] tmpSizes = new int[count * 2];
+                System.arraycopy(sizes, 0, tmpSizes, 0, count);
+                sizes = tmpSizes;
+            }
+
+            addresses[count] = address;
+            sizes[count++] = size;
+            MemoryAccounting.allocated(size);
+        }
+
+        /** Frees all segments from {@code first} upwards */
+        void free(int first) {
+            for (int i = first; i < count; ++i) {
+                IO.freeMemory(addresses[i]);
+                MemoryAccounting.freed(sizes[i]);
+            }
+            count = Math.min(count, first);
+        }
+    }
+
+    /** A block of native memory that allocations made outside any scope are bumped from */
+    private static final class Block {
+        private final long address;
+        private final int size;
+        private int offset;
+
+        Block(int size) {
+            this.address = IO.allocateMemory(size, false);
+            if (address == 0L) {
+                throw new OutOfMemoryError("Failed to allocate " + size + " bytes");
+            }
+            this.size = size;
+            MemoryAccounting.allocated(size);
+            new BlockReaper(this, address, size);
+        }
+
+        /**
+         * Carves memory from this block.
+         *
+         * @return the address of the memory, or 0 if this block is full.
+         */
+        long allocate(int length) {
+            long start = align(address + offset, DEFAULT_ALIGNMENT);
+            if (start + length > address + size) {
+                return 0L;
+            }
+
+            offset = (int) (start + length - address);
+            return start;
+        }
+    }
+
+    /** Native memory carved from a {@link Block}, which keeps the block alive */
+    private static final class BlockMemoryIO extends DirectMemoryIO {
+        private final Block block;
+
+        BlockMemoryIO(Runtime runtime, long address, Block block) {
+            super(runtime, address);
+            this.block = block;
+        }
+    }
+
+    /** Frees a block once no memory carved from it is reachable */
+    private static final class BlockReaper extends NativeReaper.Reference {
+        private final long address;
+        private final int size;
+
+        BlockReaper(Block block, long address, int size) {
+            super(block);
+            this.address = address;
+            this.size = size;
+        }
+
+        void dispose() {
+            IO.freeMemory(address);
+            MemoryAccounting.freed(size);
+        }
+    }
+
+    /** Frees the stack's memory once its thread has died */
+    private static final class Reaper extends NativeReaper.Reference {
+        private final Segments segments;
+
+        Reaper(Thread thread, Segments segments) {
+            super(thread);
+            this.segments = segments;
+        }
+
+        void dispose() {
+            segments.free(0);
+        }
+    }
+}
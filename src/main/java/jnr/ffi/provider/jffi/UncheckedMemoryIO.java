@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.provider.AbstractMemoryIO;
+import jnr.ffi.provider.DelegatingMemoryIO;
+
+/**
+ * A view of part of some native memory which, unlike {@link jnr.ffi.provider.BoundedMemoryIO},
+ * does not check that accesses lie inside it, and reads and writes the memory directly instead
+ * of delegating to the memory it is a view of.
+ *
+ * <p>The view keeps a reference to the memory it was created from, so that memory is not
+ * freed while the view is still in use.
+ */
+final class UncheckedMemoryIO extends DirectMemoryIO implements DelegatingMemoryIO {
+    private final Pointer parent;
+    private final long size;
+
+    UncheckedMemoryIO(Pointer parent, long offset, long size) {
+        super(parent.getRuntime(), parent.address() + offset);
+        this.parent = parent;
+        this.size = size;
+    }
+
+    public Pointer getDelegatedMemoryIO() {
+        return parent;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void checkBounds(long offset, long length) {
+        // Explicit bounds checks are still honoured
+        checkBounds(size, offset, length);
+    }
+
+    @Override
+    public AbstractMemoryIO slice(long offset) {
+        return new UncheckedMemoryIO(parent, address - parent.address() + offset, size - offset);
+    }
+
+    @Override
+    public AbstractMemoryIO slice(long offset, long size) {
+        return new UncheckedMemoryIO(parent, address - parent.address() + offset, size);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(getClass().getName() + "[address=%x size=%d]", address, size);
+    }
+}
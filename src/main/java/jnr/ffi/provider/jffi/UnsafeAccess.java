@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static jnr.ffi.provider.jffi.CodegenUtils.*;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * The only route to {@code sun.misc.Unsafe} in jnr-ffi.
+ *
+ * <p>Each method forwards to the {@code Unsafe} method of the same name and signature.  The
+ * forwarding subclass is generated at runtime and the {@code Unsafe} instance is fetched
+ * reflectively, so no compiled code refers to the internal API, and the calls still inline
+ * down to the {@code Unsafe} intrinsics.
+ *
+ * <p>This class is an implementation detail, public only so the generated subclass can extend it.
+ */
+public abstract class UnsafeAccess {
+    private static final String UNSAFE_CLASS = "sun/misc/Unsafe";
+
+    /**
+     * The instance, or null if {@code Unsafe} is not available or has been disabled
+     * with {@code -Djnr.ffi.unsafe=false}.
+     */
+    static final UnsafeAccess INSTANCE = newInstance();
+
+    protected UnsafeAccess() {}
+
+    public abstract int arrayBaseOffset(Class<?> arrayClass);
+
+    public abstract short getShort(Object base, long offset);
+    public abstract int getInt(Object base, long offset);
+    public abstract long getLong(Object base, long offset);
+
+    public abstract void putShort(Object base, long offset, short value);
+    public abstract void putInt(Object base, long offset, int value);
+    public abstract void putLong(Object base, long offset, long value);
+
+    public abstract int getIntVolatile(Object base, long offset);
+    public abstract void putIntVolatile(Object base, long offset, int value);
+    public abstract void putOrderedInt(Object base, long offset, int value);
+    public abstract boolean compareAndSwapInt(Object base, long offset, int expected, int value);
+
+    public abstract long getLongVolatile(Object base, long offset);
+    public abstract void putLongVolatile(Object base, long offset, long value);
+    public abstract void putOrderedLong(Object base, long offset, long value);
+    public abstract boolean compareAndSwapLong(Object base, long offset, long expected, long value);
+
+    private static UnsafeAccess newInstance() {
+        if ("false".equalsIgnoreCase(System.getProperty("jnr.ffi.unsafe"))) {
+            return null;
+        }
+
+        try {
+            java.lang.reflect.Field f = Class.forName(UNSAFE_CLASS.replace('/', '.')).getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            Object unsafe = f.get(null);
+
+            Class<?> implClass = new AsmClassLoader(UnsafeAccess.class.getClassLoader())
+                    .defineClass(p(UnsafeAccess.class).replace("/", ".") + "$jnr$impl", generate());
+
+            return (UnsafeAccess) implClass.getConstructor(Object.class).newInstance(unsafe);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static byte[] generate() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        ClassVisitor cv = AsmLibraryLoader.DEBUG ? AsmUtil.newCheckClassAdapter(cw) : cw;
+        String className = p(UnsafeAccess.class) + "$jnr$impl";
+
+        cv.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, p(UnsafeAccess.class), null);
+        cv.visitField(ACC_PRIVATE | ACC_FINAL, "unsafe", "L" + UNSAFE_CLASS + ";", null, null);
+
+        SkinnyMethodAdapter init = new SkinnyMethodAdapter(cv.visitMethod(ACC_PUBLIC, "<init>", sig(void.class, Object.class), null, null));
+        init.start();
+        init.aload(0);
+        init.invokespecial(p(UnsafeAccess.class), "<init>", sig(void.class));
+        init.aload(0);
+        init.aload(1);
+        init.checkcast(UNSAFE_CLASS);
+        init.putfield(className, "unsafe", "L" + UNSAFE_CLASS + ";");
+        init.voidreturn();
+        init.visitMaxs(10, 10);
+        init.visitEnd();
+
+        for (Method m : UnsafeAccess.class.getDeclaredMethods()) {
+            if (!Modifier.isAbstract(m.getModifiers())) {
+                continue;
+            }
+
+            SkinnyMethodAdapter mv = new SkinnyMethodAdapter(cv.visitMethod(ACC_PUBLIC | ACC_FINAL, m.getName(),
+                    sig(m.getReturnType(), m.getParameterTypes()), null, null));
+            mv.start();
+            mv.aload(0);
+            mv.getfield(className, "unsafe", "L" + UNSAFE_CLASS + ";");
+            int lvar = 1;
+            for (Class<?> parameterType : m.getParameterTypes()) {
+                lvar = AsmLibraryLoader.loadParameter(mv, parameterType, lvar);
+            }
+            mv.invokevirtual(UNSAFE_CLASS, m.getName(), sig(m.getReturnType(), m.getParameterTypes()));
+            AsmUtil.emitReturnOp(mv, m.getReturnType());
+            mv.visitMaxs(10, 10);
+            mv.visitEnd();
+        }
+
+        cv.visitEnd();
+
+        byte[] bytes = cw.toByteArray();
+        if (AsmLibraryLoader.DEBUG) {
+            ClassVisitor trace = AsmUtil.newTraceClassVisitor(new PrintWriter(System.err));
+            new ClassReader(bytes).accept(trace, 0);
+        }
+
+        return bytes;
+    }
+}
@@ -34,25 +34,75 @@ public final class EnumMapper extends AbstractDataConverter<Enum, Integer> {
     };
     
     private final Class<? extends Enum> enumClass;
-    private final Integer[] values;
-    private final Map<Integer, Enum> reverseLookupMap = new HashMap<Integer, Enum>();
+    private final int[] values;
+
+    /*
+     * Native values are mapped back to enum values without boxing.  When the native values are
+     * close together, the enum values are in an array indexed by native value - denseBase.
+     * Otherwise, they are in an open addressed hash table of native values.
+     */
+    private final Enum[] dense;
+    private final int denseBase;
+    private final int[] keys;
+    private final Enum[] table;
+    private final Enum unknownValue;
 
     private EnumMapper(Class<? extends Enum> enumClass) {
         this.enumClass = enumClass;
 
         EnumSet<? extends Enum> enums = EnumSet.allOf(enumClass);
 
-        this.values = new Integer[enums.size()];
+        this.values = new int[enums.size()];
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
         for (Enum e : enums) {
-            Integer value = getIntegerValue(e);
+            int value = getIntegerValue(e);
             this.values[e.ordinal()] = value;
-            reverseLookupMap.put(value, e);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
         }
-        
+
+        if (enums.isEmpty() || (long) max - min < Math.max(64, 4L * enums.size())) {
+            this.denseBase = enums.isEmpty() ? 0 : min;
+            this.dense = new Enum[enums.isEmpty() ? 0 : max - min + 1];
+            this.keys = null;
+            this.table = null;
+            for (Enum e : enums) {
+                dense[values[e.ordinal()] - min] = e;
+            }
+
+        } else {
+            int capacity = Integer.highestOneBit(enums.size() * 2 - 1) << 1;
+            this.dense = null;
+            this.denseBase = 0;
+            this.keys = new int[capacity];
+            this.table = new Enum[capacity];
+            for (Enum e : enums) {
+                int value = values[e.ordinal()];
+                int i = hash(value) & (capacity - 1);
+                while (table[i] != null && keys[i] != value) {
+                    i = (i + 1) & (capacity - 1);
+                }
+                keys[i] = value;
+                table[i] = e;
+            }
+        }
+
+        Enum unknown = null;
+        for (Enum e : enums) {
+            if ("__UNKNOWN_NATIVE_VALUE".equals(e.name())) {
+                unknown = e;
+            }
+        }
+        this.unknownValue = unknown;
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9e3779b9;
+        return h ^ (h >>> 16);
     }
 
     public Enum fromNative(Integer nativeValue, FromNativeContext context) {
-        return valueOf(nativeValue);
+        return valueOf(nativeValue.intValue());
     }
 
     public Class<Integer> nativeType() {
@@ -105,32 +155,44 @@ public final class EnumMapper extends AbstractDataConverter<Enum, Integer> {
     }
 
     public Enum valueOf(int value) {
-        return valueOf(Integer.valueOf(value));
+        Enum e;
+        if (dense != null) {
+            long index = (long) value - denseBase;
+            e = index >= 0 && index < dense.length ? dense[(int) index] : null;
+
+        } else {
+            final int mask = table.length - 1;
+            int i = hash(value) & mask;
+            while ((e = table[i]) != null && keys[i] != value) {
+                i = (i + 1) & mask;
+            }
+        }
+
+        return e != null ? e : badValue(value);
     }
 
     public Enum valueOf(Number value) {
-        return valueOf(Integer.valueOf(value.intValue()));
+        return valueOf(value.intValue());
     }
 
     public Enum valueOf(Integer value) {
-        Enum e = reverseLookupMap.get(value);
-        return e != null ? e : badValue(value);
+        return valueOf(value.intValue());
     }
 
-    private final Enum badValue(Integer value) {
+    private final Enum badValue(int value) {
         //
-        // No value found - try to find the default value for unknown values.
+        // No value found - use the default value for unknown values, if the enum has one.
         // This is useful for enums that aren't fixed in stone and/or where you
         // don't want to throw an Exception for an unknown value.
         //
-        try {
-            return Enum.valueOf(enumClass, "__UNKNOWN_NATIVE_VALUE");
-        } catch (IllegalArgumentException ex) {
-            //
-            // No default, so just give up and throw an exception
-            //
-            throw new IllegalArgumentException("No known Enum mapping for value "
-                    + value + " of type " + enumClass.getName());
+        if (unknownValue != null) {
+            return unknownValue;
         }
+
+        //
+        // No default, so just give up and throw an exception
+        //
+        throw new IllegalArgumentException("No known Enum mapping for value "
+                + value + " of type " + enumClass.getName());
     }
 }
@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.util;
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+
+/**
+ * A bounded queue of fixed size records, living in native memory.
+ *
+ * <p>The ring buffer is intended for handing events from native code (e.g. a callback running
+ * on a native thread) to java, or between processes sharing {@link Memory#map mapped} memory,
+ * without a transition into java per event.  Any number of producers may publish records if
+ * the ring buffer is created as multi-producer; there must only ever be a single consumer.
+ *
+ * <p>The memory layout is fixed so that native code can produce or consume records directly.
+ * All fields are in native byte order:
+ *
+ * <pre>
+ *  offset  size  field
+ *       0     4  magic             0x4a4e5252 ("JNRR")
+ *       4     4  slot size         maximum record payload, a multiple of 8
+ *       8     8  capacity          number of slots, a power of two
+ *      64     8  tail              total number of slots claimed by producers
+ *     128     8  head              total number of slots consumed
+ *     192        slots[capacity]
+ *
+ *  slot:
+ *       0     8  sequence
+ *       8     4  record length
+ *      12     4  (reserved)
+ *      16        payload[slot size]
+ * </pre>
+ *
+ * <p>Slot {@code i} initially has sequence {@code i}.  A producer claims the slot for position
+ * {@code n} (slot {@code n & (capacity - 1)}) when its sequence equals {@code n}, by advancing
+ * tail from {@code n} to {@code n + 1} (with a compare-and-swap when there are multiple producers).
+ * It then writes the length and payload, and publishes the record by storing {@code n + 1} to the
+ * sequence.  The consumer reads position {@code n} once its sequence is {@code n + 1}, then
+ * releases the slot by storing {@code n + capacity} to the sequence and advancing head.  Sequence,
+ * tail and head must be accessed atomically, with release semantics for stores and acquire semantics
+ * for loads.
+ */
+public final class RingBuffer {
+    public static final int MAGIC = 0x4a4e5252;
+    public static final int MAGIC_OFFSET = 0;
+    public static final int SLOT_SIZE_OFFSET = 4;
+    public static final int CAPACITY_OFFSET = 8;
+    public static final int TAIL_OFFSET = 64;
+    public static final int HEAD_OFFSET = 128;
+    public static final int HEADER_SIZE = 192;
+    public static final int SLOT_HEADER_SIZE = 16;
+
+    private static final int SEQUENCE = 0;
+    private static final int LENGTH = 8;
+
+    /**
+     * Receives records drained from a ring buffer.
+     */
+    public static interface Handler {
+        /**
+         * Handles one record.  The record is only valid until this method returns.
+         *
+         * @param memory the memory containing the record.
+         * @param offset the offset of the record within {@code memory}.
+         * @param length the length of the record in bytes.
+         */
+        void onRecord(Pointer memory, long offset, int length);
+    }
+
+    private final Pointer memory;
+    private final int slotSize;
+    private final long capacity;
+    private final long mask;
+    private final long stride;
+    private final boolean multiProducer;
+
+    private RingBuffer(Pointer memory, boolean multiProducer) {
+        this.memory = memory;
+        this.slotSize = memory.getInt(SLOT_SIZE_OFFSET);
+        this.capacity = memory.getLongLong(CAPACITY_OFFSET);
+        this.mask = capacity - 1;
+        this.stride = SLOT_HEADER_SIZE + slotSize;
+        this.multiProducer = multiProducer;
+    }
+
+    /**
+     * Gets the number of bytes of memory needed for a ring buffer.
+     *
+     * @param capacity the number of records the ring buffer can hold, a power of two.
+     * @param slotSize the maximum size of a record, in bytes.
+     * @return the size of the ring buffer memory.
+     */
+    public static long sizeOf(long capacity, int slotSize) {
+        if (capacity < 1 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+
+        if (slotSize < 0) {
+            throw new IllegalArgumentException("slot size cannot be negative");
+        }
+
+        return HEADER_SIZE + capacity * (SLOT_HEADER_SIZE + align(slotSize));
+    }
+
+    /**
+     * Allocates native memory for a new ring buffer.  The memory is released when the
+     * {@code RingBuffer} is garbage collected.
+     *
+     * @param runtime the runtime to allocate memory from.
+     * @param capacity the number of records the ring buffer can hold, a power of two.
+     * @param slotSize the maximum size of a record, in bytes.
+     * @param multiProducer true if records will be published from more than one thread at a time.
+     * @return a new, empty ring buffer.
+     */
+    public static RingBuffer allocate(Runtime runtime, long capacity, int slotSize, boolean multiProducer) {
+        long size = sizeOf(capacity, slotSize);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("ring buffer too large to allocate: " + size + " bytes");
+        }
+
+        return create(Memory.allocateDirect(runtime, (int) size), capacity, slotSize, multiProducer);
+    }
+
+    /**
+     * Initializes a new, empty ring buffer in existing memory.
+     *
+     * @param memory the memory to use, at least {@link #sizeOf} bytes and 8 byte aligned.
+     * @param capacity the number of records the ring buffer can hold, a power of two.
+     * @param slotSize the maximum size of a record, in bytes.
+     * @param multiProducer true if records will be published from more than one thread at a time.
+     * @return a new, empty ring buffer.
+     */
+    public static RingBuffer create(Pointer memory, long capacity, int slotSize, boolean multiProducer) {
+        long size = sizeOf(capacity, slotSize);
+        if (memory.size() < size) {
+            throw new IllegalArgumentException("ring buffer needs " + size + " bytes of memory");
+        }
+
+        memory.setMemory(0, HEADER_SIZE, (byte) 0);
+        memory.putInt(SLOT_SIZE_OFFSET, align(slotSize));
+        memory.putLongLong(CAPACITY_OFFSET, capacity);
+        long stride = SLOT_HEADER_SIZE + align(slotSize);
+        for (long i = 0; i < capacity; i++) {
+            memory.putLongLong(HEADER_SIZE + i * stride + SEQUENCE, i);
+        }
+        memory.putIntVolatile(MAGIC_OFFSET, MAGIC);
+
+        return new RingBuffer(memory, multiProducer);
+    }
+
+    /**
+     * Attaches to a ring buffer previously initialized in memory, e.g. by native code or another process.
+     *
+     * @param memory the memory containing the ring buffer.
+     * @param multiProducer true if records will be published from more than one thread at a time.
+     * @return a ring buffer using the memory.
+     */
+    public static RingBuffer attach(Pointer memory, boolean multiProducer) {
+        if (memory.getIntVolatile(MAGIC_OFFSET) != MAGIC) {
+            throw new IllegalArgumentException("memory does not contain a ring buffer");
+        }
+
+        long capacity = memory.getLongLong(CAPACITY_OFFSET);
+        long size = sizeOf(capacity, memory.getInt(SLOT_SIZE_OFFSET));
+        if (memory.size() < size) {
+            throw new IllegalArgumentException("ring buffer needs " + size + " bytes of memory");
+        }
+
+        return new RingBuffer(memory, multiProducer);
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * Gets the memory the ring buffer lives in.
+     *
+     * @return the ring buffer memory.
+     */
+    public Pointer getMemory() {
+        return memory;
+    }
+
+    /**
+     * Gets the maximum number of records the ring buffer can hold.
+     *
+     * @return the capacity of the ring buffer.
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the maximum size of a record.
+     *
+     * @return the record size, in bytes.
+     */
+    public int slotSize() {
+        return slotSize;
+    }
+
+    /**
+     * Gets the number of records waiting to be consumed.  The value may be out of date as soon as it
+     * is returned if producers are active.
+     *
+     * @return the number of records in the ring buffer.
+     */
+    public long size() {
+        long head = memory.getLongLongVolatile(HEAD_OFFSET);
+        long tail = memory.getLongLongVolatile(TAIL_OFFSET);
+        return Math.max(0L, Math.min(capacity, tail - head));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private long slot(long position) {
+        return HEADER_SIZE + (position & mask) * stride;
+    }
+
+    /**
+     * Claims the next slot for a producer.
+     *
+     * @return the position claimed, or -1 if the ring buffer is full.
+     */
+    private long claim() {
+        for (;;) {
+            long tail = memory.getLongLongVolatile(TAIL_OFFSET);
+            long sequence = memory.getLongLongVolatile(slot(tail) + SEQUENCE);
+            if (sequence < tail) {
+                // the consumer has not yet released the slot
+                return -1L;
+
+            } else if (sequence == tail) {
+                if (!multiProducer) {
+                    memory.putLongLongOrdered(TAIL_OFFSET, tail + 1);
+                    return tail;
+
+                } else if (memory.compareAndSetLongLong(TAIL_OFFSET, tail, tail + 1)) {
+                    return tail;
+                }
+            }
+            // another producer claimed the slot first
+        }
+    }
+
+    private void checkLength(int length) {
+        if (length < 0 || length > slotSize) {
+            throw new IllegalArgumentException("record length " + length + " exceeds slot size " + slotSize);
+        }
+    }
+
+    private void publish(long position, long slot, int length) {
+        memory.putInt(slot + LENGTH, length);
+        memory.putLongLongOrdered(slot + SEQUENCE, position + 1);
+    }
+
+    /**
+     * Publishes a record copied from a byte array.
+     *
+     * @param src the array to copy the record from.
+     * @param off the offset in the array of the record.
+     * @param len the length of the record.
+     * @return true if the record was published, false if the ring buffer is full.
+     */
+    public boolean offer(byte[] src, int off, int len) {
+        checkLength(len);
+        long position = claim();
+        if (position < 0) {
+            return false;
+        }
+
+        long slot = slot(position);
+        memory.put(slot + SLOT_HEADER_SIZE, src, off, len);
+        publish(position, slot, len);
+        return true;
+    }
+
+    /**
+     * Publishes a record copied from memory.
+     *
+     * @param src the memory to copy the record from.
+     * @param offset the offset in {@code src} of the record.
+     * @param length the length of the record.
+     * @return true if the record was published, false if the ring buffer is full.
+     */
+    public boolean offer(Pointer src, long offset, int length) {
+        checkLength(length);
+        long position = claim();
+        if (position < 0) {
+            return false;
+        }
+
+        long slot = slot(position);
+        src.transferTo(offset, memory, slot + SLOT_HEADER_SIZE, length);
+        publish(position, slot, length);
+        return true;
+    }
+
+    /**
+     * Publishes a record holding a single {@code long} value, in native byte order.
+     *
+     * @param value the value to publish.
+     * @return true if the record was published, false if the ring buffer is full.
+     */
+    public boolean offer(long value) {
+        checkLength(8);
+        long position = claim();
+        if (position < 0) {
+            return false;
+        }
+
+        long slot = slot(position);
+        memory.putLongLong(slot + SLOT_HEADER_SIZE, value);
+        publish(position, slot, 8);
+        return true;
+    }
+
+    /**
+     * Consumes one record, copying it to a byte array.
+     *
+     * @param dst the array to copy the record to, which must have room for {@link #slotSize()} bytes.
+     * @param off the offset in the array to copy the record to.
+     * @return the length of the record, or -1 if the ring buffer is empty.
+     */
+    public int poll(byte[] dst, int off) {
+        long head = memory.getLongLong(HEAD_OFFSET);
+        long slot = slot(head);
+        if (memory.getLongLongVolatile(slot + SEQUENCE) != head + 1) {
+            return -1;
+        }
+
+        int length = memory.getInt(slot + LENGTH);
+        memory.get(slot + SLOT_HEADER_SIZE, dst, off, length);
+        release(head, slot);
+        memory.putLongLongOrdered(HEAD_OFFSET, head + 1);
+
+        return length;
+    }
+
+    /**
+     * Consumes all records currently in the ring buffer, passing each to a handler.
+     *
+     * @param handler the handler to pass records to.
+     * @return the number of records consumed.
+     */
+    public int drain(Handler handler) {
+        return drain(handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Consumes up to {@code limit} records, passing each to a handler.  The head is only
+     * updated once, after the whole batch has been handled.
+     *
+     * @param handler the handler to pass records to.
+     * @param limit the maximum number of records to consume.
+     * @return the number of records consumed.
+     */
+    public int drain(Handler handler, int limit) {
+        long head = memory.getLongLong(HEAD_OFFSET);
+        int count = 0;
+        try {
+            while (count < limit) {
+                long position = head + count;
+                long slot = slot(position);
+                if (memory.getLongLongVolatile(slot + SEQUENCE) != position + 1) {
+                    break;
+                }
+
+                try {
+                    handler.onRecord(memory, slot + SLOT_HEADER_SIZE, memory.getInt(slot + LENGTH));
+                } finally {
+                    release(position, slot);
+                    ++count;
+                }
+            }
+        } finally {
+            if (count > 0) {
+                memory.putLongLongOrdered(HEAD_OFFSET, head + count);
+            }
+        }
+
+        return count;
+    }
+
+    private void release(long position, long slot) {
+        memory.putLongLongOrdered(slot + SEQUENCE, position + capacity);
+    }
+}
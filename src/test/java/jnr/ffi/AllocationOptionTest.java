@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AllocationOptionTest {
+    static final int SIZE = 4 * 1024 * 1024;
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    public static interface LibNuma {
+        int numa_available();
+    }
+
+    private static boolean isLinux() {
+        return Platform.getNativePlatform().getOS() == Platform.OS.LINUX;
+    }
+
+    /**
+     * Reads the lines describing the mapping that starts at an address from a /proc/self file.
+     */
+    private static String findMapping(String file, long address) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            StringBuilder entry = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String start = line.split("[- ]", 2)[0];
+                if (start.matches("[0-9a-f]+")) {
+                    if (entry != null) {
+                        break;
+                    }
+                    if (Long.parseLong(start, 16) == address) {
+                        entry = new StringBuilder();
+                    }
+                }
+                if (entry != null) {
+                    entry.append(line).append('\n');
+                }
+            }
+            return entry != null ? entry.toString() : null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String vmFlags(long address) throws IOException {
+        String entry = findMapping("/proc/self/smaps", address);
+        assertNotNull("no mapping found", entry);
+        int idx = entry.indexOf("VmFlags:");
+        Assume.assumeTrue(idx >= 0);
+        return entry.substring(idx + "VmFlags:".length(), entry.indexOf('\n', idx));
+    }
+
+    @Test
+    public void allocateWithoutOptions() {
+        Map<AllocationOption, Object> options = Collections.emptyMap();
+        Pointer p = Memory.allocateDirect(runtime, SIZE, options);
+        try {
+            assertTrue(p.isDirect());
+            assertEquals(SIZE, p.size());
+            assertEquals(0L, p.getLongLong(0));
+            assertEquals(0L, p.getLongLong(SIZE - 8));
+            p.putLongLong(SIZE - 8, 0xfee1deadcafebabeL);
+            assertEquals(0xfee1deadcafebabeL, p.getLongLong(SIZE - 8));
+        } finally {
+            Memory.dispose(p);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void allocationIsBounded() {
+        Map<AllocationOption, Object> options = Collections.emptyMap();
+        Pointer p = Memory.allocateDirect(runtime, 100, options);
+        try {
+            p.getByte(100);
+        } finally {
+            Memory.dispose(p);
+        }
+    }
+
+    @Test
+    public void transparentHugePages() throws IOException {
+        Assume.assumeTrue(isLinux());
+        Map<AllocationOption, Object> options = new EnumMap<AllocationOption, Object>(AllocationOption.class);
+        options.put(AllocationOption.TransparentHugePages, Boolean.TRUE);
+        Pointer p = Memory.allocateDirect(runtime, SIZE, options);
+        try {
+            assertEquals(0L, p.address() & (2 * 1024 * 1024 - 1));
+            p.putByte(0, (byte) 1);
+            assertTrue(vmFlags(p.address()).contains(" hg"));
+        } finally {
+            Memory.dispose(p);
+        }
+    }
+
+    @Test
+    public void hugePagesFallBack() throws IOException {
+        Assume.assumeTrue(isLinux());
+        Map<AllocationOption, Object> options = new EnumMap<AllocationOption, Object>(AllocationOption.class);
+        options.put(AllocationOption.HugePages, Boolean.TRUE);
+        Pointer p = Memory.allocateDirect(runtime, SIZE, options);
+        try {
+            p.putInt(SIZE - 4, 0xdeadbeef);
+            assertEquals(0xdeadbeef, p.getInt(SIZE - 4));
+            String flags = vmFlags(p.address());
+            assertTrue(flags, flags.contains(" ht") || flags.contains(" hg"));
+        } finally {
+            Memory.dispose(p);
+        }
+    }
+
+    @Test
+    public void bindToNumaNode() throws IOException {
+        Assume.assumeTrue(isLinux());
+        LibNuma numa;
+        try {
+            numa = Library.loadLibrary("libnuma.so.1", LibNuma.class);
+        } catch (UnsatisfiedLinkError ule) {
+            numa = null;
+        }
+        Assume.assumeTrue(numa != null && numa.numa_available() >= 0);
+
+        Map<AllocationOption, Object> options = new EnumMap<AllocationOption, Object>(AllocationOption.class);
+        options.put(AllocationOption.NumaNode, 0);
+        Pointer p = Memory.allocateDirect(runtime, SIZE, options);
+        try {
+            p.putByte(0, (byte) 1);
+            String entry = findMapping("/proc/self/numa_maps", p.address());
+            assertNotNull("no mapping found", entry);
+            assertTrue(entry, entry.contains("bind:0"));
+        } finally {
+            Memory.dispose(p);
+        }
+    }
+
+    @Test
+    public void nullOptions() {
+        Pointer p = Memory.allocateDirect(runtime, SIZE, null);
+        try {
+            p.putInt(SIZE - 4, 0x12345678);
+            assertEquals(0x12345678, p.getInt(SIZE - 4));
+        } finally {
+            Memory.dispose(p);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class AtomicMemoryTest {
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    private void compareAndSet(Pointer memory) {
+        memory.putInt(4, 1);
+        assertFalse(memory.compareAndSetInt(4, 2, 3));
+        assertEquals(1, memory.getIntVolatile(4));
+        assertTrue(memory.compareAndSetInt(4, 1, 3));
+        assertEquals(3, memory.getInt(4));
+
+        memory.putLongLong(8, 0x1234567890L);
+        assertFalse(memory.compareAndSetLongLong(8, 0L, 1L));
+        assertTrue(memory.compareAndSetLongLong(8, 0x1234567890L, 0x9876543210L));
+        assertEquals(0x9876543210L, memory.getLongLongVolatile(8));
+    }
+
+    private void getAndAdd(Pointer memory) {
+        memory.putIntVolatile(0, 10);
+        assertEquals(10, memory.getAndAddInt(0, 5));
+        assertEquals(15, memory.getInt(0));
+        memory.putLongLongOrdered(8, Integer.MAX_VALUE);
+        assertEquals((long) Integer.MAX_VALUE, memory.getAndAddLongLong(8, 1));
+        assertEquals(Integer.MAX_VALUE + 1L, memory.getLongLong(8));
+    }
+
+    @Test public void directCompareAndSet() {
+        compareAndSet(Memory.allocateDirect(runtime, 16, true));
+    }
+
+    @Test public void heapCompareAndSet() {
+        compareAndSet(Memory.allocate(runtime, 16));
+    }
+
+    @Test public void sliceCompareAndSet() {
+        compareAndSet(Memory.allocateDirect(runtime, 32, true).slice(8, 16));
+        compareAndSet(Memory.allocateDirect(runtime, 32, true).slice(8));
+    }
+
+    @Test public void directGetAndAdd() {
+        getAndAdd(Memory.allocateDirect(runtime, 16, true));
+    }
+
+    @Test public void heapGetAndAdd() {
+        getAndAdd(Memory.allocate(runtime, 16));
+    }
+
+    @Test public void cursorGetAndAdd() {
+        Pointer memory = Memory.allocateDirect(runtime, 16, true);
+        getAndAdd(Memory.newCursor(runtime, memory.address()).pointer());
+        assertEquals(15, memory.getInt(0));
+    }
+
+    @Test public void address() {
+        Pointer memory = Memory.allocateDirect(runtime, 16, true);
+        memory.putAddressVolatile(0, 0xdead0000L);
+        assertEquals(0xdead0000L, memory.getAddressVolatile(0));
+        assertFalse(memory.compareAndSetAddress(0, 0L, 1L));
+        assertTrue(memory.compareAndSetAddress(0, 0xdead0000L, 0xbeef0000L));
+        assertEquals(0xbeef0000L, memory.getAddress(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void sliceOutOfBounds() {
+        Memory.allocateDirect(runtime, 32, true).slice(8, 8).compareAndSetLongLong(4, 0, 1);
+    }
+
+    @Test
+    public void misalignedDirect() {
+        // the locking fallback used without Unsafe does not care about alignment
+        Assume.assumeTrue(!"false".equals(System.getProperty("jnr.ffi.unsafe")));
+        try {
+            Memory.allocateDirect(runtime, 16, true).getAndAddInt(2, 1);
+            fail("misaligned atomic access should fail");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private void concurrentCounters(final Pointer memory) throws InterruptedException {
+        final int THREADS = 4, ITERATIONS = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int n = 0; n < ITERATIONS; n++) {
+                        memory.getAndAddInt(0, 1);
+                        memory.getAndAddLongLong(8, 2);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(THREADS * ITERATIONS, memory.getIntVolatile(0));
+        assertEquals(THREADS * ITERATIONS * 2L, memory.getLongLongVolatile(8));
+    }
+
+    @Test public void concurrentDirectCounters() throws InterruptedException {
+        concurrentCounters(Memory.allocateDirect(runtime, 16, true));
+    }
+
+    @Test public void concurrentHeapCounters() throws InterruptedException {
+        concurrentCounters(Memory.allocate(runtime, 16));
+    }
+}
@@ -0,0 +1,156 @@
+/* 
+ * Copyright (C) 2012, 2008 Wayne Meissner
+ * 
+ * This file is part of jffi.
+ *
+ * This code is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package jnr.ffi;
+
+import jnr.ffi.provider.jffi.NativeMemoryManager;
+import jnr.ffi.provider.jffi.NativeMemoryStatistics;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DirectMemoryTest {
+    static final int SIZE = 1024 * 1024;
+    static Runtime runtime;
+    static NativeMemoryManager mm;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+        mm = (NativeMemoryManager) runtime.getMemoryManager();
+    }
+
+    @Test
+    public void disposeFreesImmediately() {
+        Pointer p = Memory.allocateDirect(runtime, SIZE);
+        long allocated = mm.getOutstandingBytes();
+        assertTrue(allocated >= SIZE);
+        Memory.dispose(p);
+        assertTrue("memory not freed", mm.getOutstandingBytes() <= allocated - SIZE);
+    }
+
+    @Test
+    public void disposeTwice() {
+        Pointer p = Memory.allocateDirect(runtime, SIZE);
+        Memory.dispose(p);
+        long freed = mm.getOutstandingBytes();
+        Memory.dispose(p);
+        assertTrue("memory freed twice", mm.getOutstandingBytes() > freed - SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void disposeSliceIsRejected() {
+        Pointer p = Memory.allocateDirect(runtime, SIZE);
+        Memory.dispose(p.slice(16, 16));
+    }
+
+    @Test
+    public void disposeSliceLeavesMemoryAllocated() {
+        Pointer p = Memory.allocateDirect(runtime, SIZE);
+        long allocated = mm.getOutstandingBytes();
+        try {
+            Memory.dispose(p.slice(0, 16));
+            fail("slice was disposed");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(allocated, mm.getOutstandingBytes());
+        Memory.dispose(p);
+    }
+
+    @Test
+    public void disposeUncheckedView() {
+        Pointer p = Memory.allocateDirect(runtime, SIZE);
+        long allocated = mm.getOutstandingBytes();
+        Memory.dispose(Memory.unchecked(p));
+        assertTrue("memory not freed", mm.getOutstandingBytes() <= allocated - SIZE);
+    }
+
+    @Test
+    public void disposeIgnoresForeignPointers() {
+        Memory.dispose(Memory.allocate(runtime, 16));
+        Memory.dispose(Pointer.wrap(runtime, 0x1234L));
+    }
+
+    @Test
+    public void unreachableMemoryIsReaped() throws InterruptedException {
+        Pointer p = Memory.allocateDirect(runtime, SIZE);
+        long allocated = mm.getOutstandingBytes();
+        p = null;
+
+        for (int i = 0; i < 100 && mm.getOutstandingBytes() > allocated - SIZE; ++i) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertTrue("memory not reaped", mm.getOutstandingBytes() <= allocated - SIZE);
+    }
+
+    @Test
+    public void statistics() {
+        Pointer p = Memory.allocateDirect(runtime, 100);
+        NativeMemoryStatistics stats = mm.getStatistics();
+        assertTrue(stats.getOutstandingBytes() >= 100);
+        assertTrue(stats.getHighWaterBytes() >= stats.getOutstandingBytes());
+        assertTrue(stats.getTotalBytes() >= stats.getOutstandingBytes());
+        assertTrue("no allocation in 128 byte size class", stats.getSizeClassCounts()[7] > 0);
+        Memory.dispose(p);
+    }
+
+    @Test
+    public void arenaIsAccounted() {
+        MemoryArena arena = Memory.newArena(runtime, SIZE);
+        arena.allocate(8);
+        long allocated = mm.getOutstandingBytes();
+        arena.close();
+        assertTrue("arena memory not accounted", mm.getOutstandingBytes() <= allocated - SIZE);
+    }
+
+    @Test
+    public void sampledAllocationSites() throws InterruptedException {
+        mm.setAllocationSampleRate(1);
+        try {
+            Pointer p = Memory.allocateDirect(runtime, 12345);
+            assertNotNull("allocation not sampled", findAllocation(mm.getStatistics().getLiveAllocations(), 12345));
+            p = null;
+
+            for (int i = 0; i < 100 && findAllocation(mm.getStatistics().getUndisposedAllocations(), 12345) == null; ++i) {
+                System.gc();
+                Thread.sleep(50);
+            }
+
+            NativeMemoryStatistics.Allocation leak = findAllocation(mm.getStatistics().getUndisposedAllocations(), 12345);
+            assertNotNull("undisposed allocation not reported", leak);
+            assertNull(findAllocation(mm.getStatistics().getLiveAllocations(), 12345));
+            assertTrue(leak.toString().contains("sampledAllocationSites"));
+
+            p = Memory.allocateDirect(runtime, 54321);
+            Memory.dispose(p);
+            assertNull(findAllocation(mm.getStatistics().getLiveAllocations(), 54321));
+        } finally {
+            mm.setAllocationSampleRate(0);
+        }
+    }
+
+    private static NativeMemoryStatistics.Allocation findAllocation(java.util.List<NativeMemoryStatistics.Allocation> allocations, long size) {
+        for (NativeMemoryStatistics.Allocation a : allocations) {
+            if (a.getSize() == size) {
+                return a;
+            }
+        }
+        return null;
+    }
+}
@@ -48,6 +48,15 @@ public class EnumTest {
         }
         private final int value;
     }
+
+    public static enum OrdinalEnum {
+        FIRST, SECOND, THIRD
+    }
+
+    public static interface OrdinalEnumLib {
+        public OrdinalEnum ret_int32_t(OrdinalEnum e);
+        public OrdinalEnum add_int32_t(OrdinalEnum i1, int i2);
+    }
     
     public static interface TestLib {
         public int ret_int32_t(TestEnum e);
@@ -62,10 +71,12 @@ public class EnumTest {
     }
     static TestLib testlib;
     static ReturnEnumLib retenum;
+    static OrdinalEnumLib ordinalenum;
     @BeforeClass
     public static void setUpClass() throws Exception {
         testlib = TstUtil.loadTestLib(TestLib.class);
         retenum = TstUtil.loadTestLib(ReturnEnumLib.class);
+        ordinalenum = TstUtil.loadTestLib(OrdinalEnumLib.class);
     }
 
     @AfterClass
@@ -95,4 +106,20 @@ public class EnumTest {
         assertEquals("Wrong value returned for enum", TestEnum.Z, retenum.ret_int32_t(TestEnum.Z.intValue()));
         assertEquals("Wrong value returned for enum", TestEnum.C, retenum.add_int32_t(1, 2));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void enumArgumentAndResult() {
+        for (TestEnum e : TestEnum.values()) {
+            assertSame("Wrong value returned for enum", e, retenum.ret_int32_t(e));
+        }
+        assertSame("Wrong value returned for enum", TestEnum.C, retenum.add_int32_t(TestEnum.A, TestEnum.B));
+    }
+
+    @Test
+    public void ordinalEnum() {
+        for (OrdinalEnum e : OrdinalEnum.values()) {
+            assertSame("Wrong value returned for enum", e, ordinalenum.ret_int32_t(e));
+        }
+        assertSame("Wrong value returned for enum", OrdinalEnum.THIRD, ordinalenum.add_int32_t(OrdinalEnum.SECOND, 1));
+    }
+}
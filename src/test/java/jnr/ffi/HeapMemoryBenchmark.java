@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+/**
+ * Measures get/put throughput on heap memory, as used by structs that are not backed by
+ * direct memory.
+ *
+ * <p>This is not run as part of the test suite; run it directly with
+ * {@code java jnr.ffi.HeapMemoryBenchmark [iterations]}, and again with
+ * {@code -Djnr.ffi.unsafe=false} to compare against the portable byte-at-a-time accessors.
+ */
+public class HeapMemoryBenchmark {
+
+    private static long getInt(Pointer p, long iterations) {
+        long sum = 0;
+        for (long i = 0; i < iterations; ++i) {
+            for (int off = 0; off < 64; off += 4) {
+                sum += p.getInt(off);
+            }
+        }
+        return sum;
+    }
+
+    private static long getLongLong(Pointer p, long iterations) {
+        long sum = 0;
+        for (long i = 0; i < iterations; ++i) {
+            for (int off = 0; off < 64; off += 8) {
+                sum += p.getLongLong(off);
+            }
+        }
+        return sum;
+    }
+
+    private static long putInt(Pointer p, long iterations) {
+        for (long i = 0; i < iterations; ++i) {
+            for (int off = 0; off < 64; off += 4) {
+                p.putInt(off, (int) i + off);
+            }
+        }
+        return p.getInt(0);
+    }
+
+    private static long putLongLong(Pointer p, long iterations) {
+        for (long i = 0; i < iterations; ++i) {
+            for (int off = 0; off < 64; off += 8) {
+                p.putLongLong(off, i + off);
+            }
+        }
+        return p.getLongLong(0);
+    }
+
+    private static void report(String name, int opsPerIteration, long iterations, long elapsed) {
+        System.out.printf("%-12s %8.2f ns/op%n", name, (double) elapsed / (iterations * opsPerIteration));
+    }
+
+    public static void main(String[] args) {
+        Runtime runtime = Runtime.getSystemRuntime();
+        long iterations = args.length > 0 ? Long.parseLong(args[0]) : 10000000L;
+        Pointer p = Memory.allocate(runtime, 64);
+        long sink = 0;
+
+        for (int round = 0; round < 2; ++round) {
+            long start = System.nanoTime();
+            sink += getInt(p, iterations);
+            long t1 = System.nanoTime();
+            sink += getLongLong(p, iterations);
+            long t2 = System.nanoTime();
+            sink += putInt(p, iterations);
+            long t3 = System.nanoTime();
+            sink += putLongLong(p, iterations);
+            long t4 = System.nanoTime();
+
+            // the first round is warm up
+            if (round > 0) {
+                report("getInt", 16, iterations, t1 - start);
+                report("getLongLong", 8, iterations, t2 - t1);
+                report("putInt", 16, iterations, t3 - t2);
+                report("putLongLong", 8, iterations, t4 - t3);
+            }
+        }
+        System.out.println("(" + sink + ")");
+    }
+}
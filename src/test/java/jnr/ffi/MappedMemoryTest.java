@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class MappedMemoryTest {
+    static Runtime runtime;
+    private File file;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("jnr-ffi", ".map");
+        byte[] data = new byte[3 * 4096 + 17];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private byte[] readFile() throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int n = 0;
+            while (n < data.length) {
+                n += in.read(data, n, data.length - n);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    @Test
+    public void mapWholeFile() throws IOException {
+        Pointer p = Memory.map(runtime, file, MapMode.READ_ONLY);
+        try {
+            assertTrue(p.isDirect());
+            assertEquals(file.length(), p.size());
+            for (int i = 0; i < p.size(); i++) {
+                assertEquals((byte) i, p.getByte(i));
+            }
+        } finally {
+            Memory.unmap(p);
+        }
+    }
+
+    @Test
+    public void mapUnalignedRegion() throws IOException {
+        Pointer p = Memory.map(runtime, file, MapMode.READ_ONLY, 4097, 100);
+        try {
+            assertEquals(100, p.size());
+            assertEquals((byte) 4097, p.getByte(0));
+            assertEquals((byte) 4196, p.getByte(99));
+        } finally {
+            Memory.unmap(p);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void mappedMemoryIsBounded() throws IOException {
+        Pointer p = Memory.map(runtime, file, MapMode.READ_ONLY, 0, 16);
+        try {
+            p.getByte(16);
+        } finally {
+            Memory.unmap(p);
+        }
+    }
+
+    @Test
+    public void readWriteMappingIsWrittenToFile() throws IOException {
+        Pointer p = Memory.map(runtime, file, MapMode.READ_WRITE, 8192, 16);
+        try {
+            p.putInt(0, 0xdeadbeef);
+            Memory.sync(p);
+        } finally {
+            Memory.unmap(p);
+        }
+
+        byte[] data = readFile();
+        Pointer check = Memory.allocate(runtime, 4);
+        check.put(0, data, 8192, 4);
+        assertEquals(0xdeadbeef, check.getInt(0));
+    }
+
+    @Test
+    public void privateMappingIsNotWrittenToFile() throws IOException {
+        Pointer p = Memory.map(runtime, file, MapMode.PRIVATE);
+        try {
+            p.putByte(10, (byte) 0x7f);
+            assertEquals((byte) 0x7f, p.getByte(10));
+            Memory.sync(p);
+        } finally {
+            Memory.unmap(p);
+        }
+
+        assertEquals((byte) 10, readFile()[10]);
+    }
+
+    @Test
+    public void adviseSlice() throws IOException {
+        Pointer p = Memory.map(runtime, file, MapMode.READ_ONLY);
+        try {
+            assertTrue(Memory.advise(p, MemoryAdvice.SEQUENTIAL));
+            assertTrue(Memory.advise(p.slice(5000, 100), MemoryAdvice.WILL_NEED));
+            assertEquals((byte) 5000, p.getByte(5000));
+        } finally {
+            Memory.unmap(p);
+        }
+    }
+
+    @Test
+    public void unmapTwice() throws IOException {
+        Pointer p = Memory.map(runtime, file, MapMode.READ_ONLY);
+        Memory.unmap(p);
+        Memory.unmap(p);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void syncAfterUnmap() throws IOException {
+        Pointer p = Memory.map(runtime, file, MapMode.READ_WRITE);
+        Memory.unmap(p);
+        Memory.sync(p);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unmapAllocatedMemory() {
+        Memory.unmap(Memory.allocateDirect(runtime, 16));
+    }
+
+    @Test
+    public void unmapSliceIsRejected() throws IOException {
+        Pointer p = Memory.map(runtime, file, MapMode.READ_ONLY, 5000, 100);
+        try {
+            Memory.unmap(p.slice(10));
+            fail("slice was unmapped");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals((byte) 5000, p.getByte(0));
+        Memory.unmap(p);
+    }
+
+    @Test(expected = IOException.class)
+    public void mapMissingFile() throws IOException {
+        Memory.map(runtime, new File(file.getPath() + ".missing"), MapMode.READ_ONLY, 0, 16);
+    }
+}
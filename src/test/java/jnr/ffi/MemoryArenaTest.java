@@ -0,0 +1,130 @@
+/* 
+ * Copyright (C) 2012, 2008 Wayne Meissner
+ * 
+ * This file is part of jffi.
+ *
+ * This code is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package jnr.ffi;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MemoryArenaTest {
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    @Test
+    public void allocationsAreDirectAndBounded() {
+        MemoryArena arena = Memory.newArena(runtime);
+        try {
+            Pointer p = arena.allocate(16);
+            assertTrue(p.isDirect());
+            assertEquals(16, p.size());
+            p.putLong(8, 0xdeadbeefL);
+            assertEquals(0xdeadbeefL, p.getLong(8));
+            try {
+                p.putLong(16, 0L);
+                fail("write past end of arena block should fail");
+            } catch (IndexOutOfBoundsException ex) {
+            }
+        } finally {
+            arena.close();
+        }
+    }
+
+    @Test
+    public void allocationsDoNotOverlap() {
+        MemoryArena arena = Memory.newArena(runtime, 256);
+        try {
+            Pointer[] pointers = new Pointer[100];
+            for (int i = 0; i < pointers.length; ++i) {
+                pointers[i] = arena.allocate(12);
+                pointers[i].putInt(0, i);
+                pointers[i].putInt(8, -i);
+            }
+            for (int i = 0; i < pointers.length; ++i) {
+                assertEquals(i, pointers[i].getInt(0));
+                assertEquals(-i, pointers[i].getInt(8));
+                assertEquals("allocation not aligned", 0, pointers[i].address() % 8);
+            }
+        } finally {
+            arena.close();
+        }
+    }
+
+    @Test
+    public void alignedAllocation() {
+        MemoryArena arena = Memory.newArena(runtime);
+        try {
+            arena.allocate(3);
+            assertEquals(0, arena.allocate(64, 64, false).address() % 64);
+        } finally {
+            arena.close();
+        }
+    }
+
+    @Test
+    public void oversizedAllocation() {
+        MemoryArena arena = Memory.newArena(runtime, 128);
+        try {
+            Pointer small = arena.allocate(8);
+            Pointer big = arena.allocate(4096, true);
+            for (int i = 0; i < 4096; ++i) {
+                assertEquals(0, big.getByte(i));
+            }
+            assertEquals(small.address() + 8, arena.allocate(8).address());
+        } finally {
+            arena.close();
+        }
+    }
+
+    @Test
+    public void resetKeepsCurrentChunk() {
+        MemoryArena arena = Memory.newArena(runtime, 1024);
+        try {
+            long first = arena.allocate(8).address();
+            arena.allocate(4096);
+            arena.reset();
+            assertEquals(1024, arena.capacity());
+            assertEquals(first, arena.allocate(8).address());
+        } finally {
+            arena.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void allocateAfterClose() {
+        MemoryArena arena = Memory.newArena(runtime);
+        arena.allocate(8);
+        arena.close();
+        assertEquals(0, arena.capacity());
+        arena.allocate(8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeOverflowIsRejected() {
+        MemoryArena arena = Memory.newArena(runtime);
+        try {
+            arena.allocate(Integer.MAX_VALUE - 8, 64, false);
+        } finally {
+            arena.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MemoryCursorTest {
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    @Test
+    public void followLinkedList() {
+        final int NEXT = 0, VALUE = runtime.addressSize();
+        final int NODE_SIZE = VALUE + 4;
+        Pointer[] nodes = new Pointer[5];
+        for (int i = nodes.length - 1; i >= 0; --i) {
+            nodes[i] = Memory.allocateDirect(runtime, NODE_SIZE, true);
+            nodes[i].putInt(VALUE, i + 1);
+            nodes[i].putAddress(NEXT, i < nodes.length - 1 ? nodes[i + 1].address() : 0L);
+        }
+
+        MemoryCursor node = Memory.newCursor(runtime, nodes[0].address());
+        Pointer p = node.pointer();
+        int count = 0, total = 0;
+        while (!node.isNull()) {
+            total += p.getInt(VALUE);
+            ++count;
+            node.follow(NEXT);
+        }
+        assertEquals(5, count);
+        assertEquals(15, total);
+    }
+
+    @Test
+    public void advanceOverArray() {
+        Pointer array = Memory.allocateDirect(runtime, 40);
+        for (int i = 0; i < 10; ++i) {
+            array.putInt(i * 4, i * i);
+        }
+
+        MemoryCursor cursor = Memory.newCursor(runtime, array.address());
+        for (int i = 0; i < 10; ++i, cursor.advance(4)) {
+            assertEquals(i * i, cursor.pointer().getInt(0));
+        }
+        assertEquals(array.address() + 40, cursor.address());
+    }
+
+    @Test
+    public void toPointerAndSliceDoNotMove() {
+        Pointer memory = Memory.allocateDirect(runtime, 16);
+        memory.putInt(0, 0xdeadbeef);
+        memory.putInt(8, 0xcafebabe);
+        MemoryCursor cursor = Memory.newCursor(runtime, 0L).bind(memory);
+        Pointer fixed = cursor.toPointer();
+        Pointer slice = cursor.pointer().slice(8);
+        cursor.advance(8);
+        assertEquals(0xcafebabe, cursor.pointer().getInt(0));
+        assertEquals(0xdeadbeef, fixed.getInt(0));
+        assertEquals(0xcafebabe, slice.getInt(0));
+        assertNull(cursor.bind(0L).toPointer());
+    }
+
+    @Test
+    public void transferToHeap() {
+        Pointer memory = Memory.allocateDirect(runtime, 16);
+        memory.putLongLong(8, 0x0123456789abcdefL);
+        Pointer heap = Memory.allocate(runtime, 8);
+        Memory.newCursor(runtime, memory.address()).advance(8).pointer().transferTo(0, heap, 0, 8);
+        assertEquals(0x0123456789abcdefL, heap.getLongLong(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotBindToHeapMemory() {
+        Memory.newCursor(runtime, 0L).bind(Memory.allocate(runtime, 8));
+    }
+}
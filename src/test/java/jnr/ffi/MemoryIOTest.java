@@ -206,6 +206,47 @@ public class MemoryIOTest {
         testGetLong(heap(SIZE), SIZE);
     }
 
+    @Test public void testHeapMemoryIOUnalignedMatchesDirect() {
+        final int SIZE = 32;
+        Pointer heap = heap(SIZE), direct = direct(SIZE);
+        for (int i = 0; i < SIZE; ++i) {
+            heap.putByte(i, (byte) (i * 37 + 11));
+            direct.putByte(i, (byte) (i * 37 + 11));
+        }
+        for (int off = 0; off <= SIZE - 8; ++off) {
+            assertEquals("short at " + off, direct.getShort(off), heap.getShort(off));
+            assertEquals("int at " + off, direct.getInt(off), heap.getInt(off));
+            assertEquals("long long at " + off, direct.getLongLong(off), heap.getLongLong(off));
+            assertEquals("address at " + off, direct.getAddress(off), heap.getAddress(off));
+        }
+        heap.putLongLong(3, 0x0102030405060708L);
+        direct.putLongLong(3, 0x0102030405060708L);
+        heap.putInt(13, 0xcafebabe);
+        direct.putInt(13, 0xcafebabe);
+        for (int i = 0; i < SIZE; ++i) {
+            assertEquals("byte at " + i, direct.getByte(i), heap.getByte(i));
+        }
+    }
+
+    @Test public void testHeapMemoryIOBoundsChecked() {
+        Pointer memory = heap(8);
+        try {
+            memory.getInt(5);
+            fail("Should have thrown IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        try {
+            memory.putLongLong(1, 0L);
+            fail("Should have thrown IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        try {
+            memory.getShort(-1);
+            fail("Should have thrown IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+    }
+
     @Test public void testHeapMemoryIOPutFloat() {
         final int SIZE = 16;
         Pointer memory = heap(SIZE);
@@ -400,4 +441,115 @@ public class MemoryIOTest {
             assertEquals("Wrong byte at index " + i, MAGIC[i], dst.getByte(DSTOFF + i));
         }
     }
-}
\ No newline at end of file
+
+    private Pointer[] allKinds(int size) {
+        return new Pointer[] {
+            Memory.allocateDirect(runtime, size),
+            Memory.allocate(runtime, size),
+            Pointer.wrap(runtime, ByteBuffer.allocate(size)),
+            Pointer.wrap(runtime, ByteBuffer.allocateDirect(size)),
+            Memory.allocateDirect(runtime, size + 16).slice(16, size),
+            Memory.allocate(runtime, size + 16).slice(16, size),
+            Memory.allocate(runtime, size + 16).slice(16),
+        };
+    }
+
+    @Test public void transferBetweenAllKinds() throws Exception {
+        final int SIZE = 64, SRCOFF = 3, DSTOFF = 7, COUNT = 40;
+        for (Pointer src : allKinds(SIZE)) {
+            for (Pointer dst : allKinds(SIZE)) {
+                for (int i = 0; i < SIZE; ++i) {
+                    src.putByte(i, (byte) (i + 1));
+                }
+                dst.setMemory(0, SIZE, (byte) 0);
+                src.transferTo(SRCOFF, dst, DSTOFF, COUNT);
+                for (int i = 0; i < SIZE; ++i) {
+                    byte expected = i >= DSTOFF && i < DSTOFF + COUNT ? (byte) (i - DSTOFF + SRCOFF + 1) : 0;
+                    assertEquals("transferTo " + src + " -> " + dst + " at " + i, expected, dst.getByte(i));
+                }
+
+                dst.setMemory(0, SIZE, (byte) 0);
+                dst.transferFrom(DSTOFF, src, SRCOFF, COUNT);
+                for (int i = 0; i < SIZE; ++i) {
+                    byte expected = i >= DSTOFF && i < DSTOFF + COUNT ? (byte) (i - DSTOFF + SRCOFF + 1) : 0;
+                    assertEquals("transferFrom " + src + " -> " + dst + " at " + i, expected, dst.getByte(i));
+                }
+            }
+        }
+    }
+
+    @Test public void bulkNativeLongsAndAddresses() throws Exception {
+        final int COUNT = 5, LONG = runtime.longSize(), ADDR = runtime.addressSize();
+        long[] values = { 1L, -2L, 0x7fffffffL, Integer.MIN_VALUE, 42L };
+        long[] addresses = { 0L, 0x1000L, 0x7fff0000L, 0xfffff000L, 0x12345678L };
+        for (Pointer p : allKinds(64)) {
+            p.putNativeLongs(0, values, 0, COUNT);
+            for (int i = 0; i < COUNT; ++i) {
+                assertEquals(p + " at " + i, values[i], p.getNativeLong(i * LONG));
+            }
+            long[] dst = new long[COUNT + 1];
+            p.getNativeLongs(LONG, dst, 1, COUNT - 1);
+            for (int i = 1; i < COUNT; ++i) {
+                assertEquals(p + " at " + i, values[i], dst[i]);
+            }
+
+            p.putAddresses(0, addresses, 0, COUNT);
+            for (int i = 0; i < COUNT; ++i) {
+                assertEquals(p + " at " + i, addresses[i], p.getAddress(i * ADDR));
+            }
+            p.getAddresses(0, dst, 0, COUNT);
+            for (int i = 0; i < COUNT; ++i) {
+                assertEquals(p + " at " + i, addresses[i], dst[i]);
+            }
+        }
+    }
+
+    @Test public void transferOverlapping() throws Exception {
+        for (Pointer p : allKinds(64)) {
+            for (int i = 0; i < 64; ++i) {
+                p.putByte(i, (byte) i);
+            }
+            p.transferTo(0, p, 8, 32);
+            for (int i = 0; i < 32; ++i) {
+                assertEquals("wrong byte at " + (i + 8) + " in " + p, (byte) i, p.getByte(i + 8));
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void transferOutOfBounds() throws Exception {
+        Memory.allocateDirect(runtime, 16).transferTo(8, Memory.allocateDirect(runtime, 64), 0, 16);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void transferToSliceOutOfBounds() throws Exception {
+        Memory.allocateDirect(runtime, 64).transferTo(0, Memory.allocate(runtime, 64).slice(48, 16), 0, 32);
+    }
+
+    @Test public void uncheckedView() throws Exception {
+        Pointer memory = direct(16);
+        Pointer bounded = memory.slice(0, 8);
+        Pointer unchecked = Memory.unchecked(bounded);
+        assertEquals(bounded.address(), unchecked.address());
+        assertEquals(8, unchecked.size());
+        unchecked.putInt(0, 0xdeadbeef);
+        assertEquals(0xdeadbeef, memory.getInt(0));
+
+        // reads past the end of the view are not checked
+        memory.putInt(8, 0xcafebabe);
+        assertEquals(0xcafebabe, unchecked.getInt(8));
+        assertEquals(0xcafebabe, unchecked.slice(4, 4).getInt(4));
+        assertSame(unchecked, Memory.unchecked(unchecked));
+
+        try {
+            unchecked.checkBounds(4, 8);
+            fail("Should have thrown IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+    }
+
+    @Test public void uncheckedHeapIsUnchanged() throws Exception {
+        Pointer memory = heap(16);
+        assertSame(memory, Memory.unchecked(memory));
+    }
+}
@@ -18,6 +18,8 @@
 
 package jnr.ffi;
 
+import jnr.ffi.annotations.In;
+import jnr.ffi.annotations.Out;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -39,6 +41,7 @@ public class StringTest {
         void string_set(StringBuilder dst, CharSequence src);
         void string_concat(StringBuilder dst, CharSequence src);
         void string_concat(StringBuffer dst, CharSequence src);
+        void string_set(@Out StringBuilder dst, @In byte[] src);
     }
     static TestLib testlib;
     @BeforeClass
@@ -99,4 +102,21 @@ public class StringTest {
         testlib.string_concat(buffer, MAGIC);
         assertEquals("StringBuilder was not set", ORIG + MAGIC, buffer.toString());        
     }
+
+    @Test
+    public void testSetOutStringBuilder() {
+        String MAGIC = "deadbeef";
+        StringBuilder buffer = new StringBuilder(1024);
+        buffer.append("garbage that should be replaced");
+        testlib.string_set(buffer, (MAGIC + "\u0000").getBytes());
+        assertEquals("StringBuilder was not set", MAGIC, buffer.toString());
+    }
+
+    @Test
+    public void testSetOutStringBuilderNonAscii() {
+        byte[] MAGIC = "dead\u00e9beef\u0000".getBytes();
+        StringBuilder buffer = new StringBuilder(1024);
+        testlib.string_set(buffer, MAGIC);
+        assertEquals("StringBuilder was not set", new String(MAGIC, 0, MAGIC.length - 1), buffer.toString());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+/**
+ * Compares summing a field over an array of structs through {@link StructLayout} fields
+ * against a {@link StructLayout#newAccessor generated accessor}.
+ *
+ * <p>This is not run as part of the test suite; run it directly with
+ * {@code java jnr.ffi.StructAccessorBenchmark [iterations]}.
+ */
+public class StructAccessorBenchmark {
+    private static final int COUNT = 1024;
+
+    public static final class Point extends StructLayout {
+        public final Signed32 x = new Signed32();
+        public final Signed32 y = new Signed32();
+        public final Signed64 id = new Signed64();
+
+        public Point(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static interface PointAccessor {
+        int y(Pointer p, long offset);
+    }
+
+    private static long sumFields(Point layout, Pointer[] structs, long iterations) {
+        long sum = 0;
+        for (long n = 0; n < iterations; ++n) {
+            for (int i = 0; i < COUNT; ++i) {
+                sum += layout.y.get(structs[i]);
+            }
+        }
+        return sum;
+    }
+
+    private static long sumAccessor(PointAccessor accessor, Pointer memory, int size, long iterations) {
+        long sum = 0;
+        for (long n = 0; n < iterations; ++n) {
+            for (int i = 0; i < COUNT; ++i) {
+                sum += accessor.y(memory, (long) i * size);
+            }
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) {
+        Runtime runtime = Runtime.getSystemRuntime();
+        long iterations = args.length > 0 ? Long.parseLong(args[0]) : 20000L;
+        Point layout = new Point(runtime);
+        PointAccessor accessor = layout.newAccessor(PointAccessor.class);
+        final int size = layout.size();
+        Pointer memory = Memory.allocateDirect(runtime, size * COUNT);
+        Pointer[] structs = new Pointer[COUNT];
+        for (int i = 0; i < COUNT; ++i) {
+            structs[i] = memory.slice(i * size, size);
+            layout.y.set(structs[i], i);
+        }
+        long sink = 0;
+
+        for (int round = 0; round < 4; ++round) {
+            long start = System.nanoTime();
+            sink += sumFields(layout, structs, iterations);
+            long fields = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            sink += sumAccessor(accessor, memory, size, iterations);
+            long generated = System.nanoTime() - start;
+
+            // the first round is warm up
+            if (round > 0) {
+                System.out.printf("field    %6.2f ns/read%n", (double) fields / (iterations * COUNT));
+                System.out.printf("accessor %6.2f ns/read%n", (double) generated / (iterations * COUNT));
+            }
+        }
+        System.out.println("(" + sink + ")");
+    }
+}
@@ -0,0 +1,145 @@
+/* 
+ * Copyright (C) 2012, 2008 Wayne Meissner
+ * 
+ * This file is part of jffi.
+ *
+ * This code is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package jnr.ffi;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TemporaryMemoryTest {
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    @Test
+    public void temporaryMemoryIsDirect() {
+        assertTrue(Memory.allocateTemporary(runtime, NativeType.SINT, true).isDirect());
+        MemoryArena scope = Memory.openTemporaryScope(runtime);
+        try {
+            Pointer p = Memory.allocateTemporary(runtime, NativeType.SLONGLONG, true);
+            assertTrue(p.isDirect());
+            assertEquals(0L, p.getLongLong(0));
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    public void unscopedAllocationsShareABlock() {
+        Pointer first = Memory.allocateTemporary(runtime, 64, true);
+        Pointer second = Memory.allocateTemporary(runtime, 64, true);
+        if (second.address() != first.address() + 64) {
+            // the first allocation filled the previous block
+            first = second;
+            second = Memory.allocateTemporary(runtime, 64, true);
+        }
+        assertEquals(first.address() + 64, second.address());
+        assertEquals(0L, second.getLongLong(56));
+        first.putLongLong(0, 42L);
+        assertEquals(42L, first.getLongLong(0));
+    }
+
+    @Test
+    public void largeUnscopedAllocation() {
+        Pointer p = Memory.allocateTemporary(runtime, 1024 * 1024, true);
+        assertEquals(1024 * 1024, p.size());
+        assertEquals(0, p.getByte(1024 * 1024 - 1));
+    }
+
+    @Test
+    public void closingScopeReleasesMemory() {
+        MemoryArena scope = Memory.openTemporaryScope(runtime);
+        long first;
+        try {
+            first = Memory.allocateTemporary(runtime, 64, false).address();
+            assertEquals(first + 64, Memory.allocateTemporary(runtime, 64, false).address());
+        } finally {
+            scope.close();
+        }
+
+        scope = Memory.openTemporaryScope(runtime);
+        try {
+            assertEquals(first, Memory.allocateTemporary(runtime, 64, false).address());
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    public void nestedScopes() {
+        MemoryArena outer = Memory.openTemporaryScope(runtime);
+        try {
+            Pointer a = Memory.allocateTemporary(runtime, 16, false);
+            a.putLong(0, 0x1234L);
+            long inner;
+            MemoryArena scope = Memory.openTemporaryScope(runtime);
+            try {
+                inner = Memory.allocateTemporary(runtime, 16, false).address();
+                assertEquals(16, scope.capacity());
+            } finally {
+                scope.close();
+            }
+            assertEquals(inner, Memory.allocateTemporary(runtime, 16, false).address());
+            assertEquals(0x1234L, a.getLong(0));
+        } finally {
+            outer.close();
+        }
+    }
+
+    @Test
+    public void largeAllocations() {
+        MemoryArena scope = Memory.openTemporaryScope(runtime);
+        try {
+            Pointer small = Memory.allocateTemporary(runtime, 8, false);
+            small.putLong(0, 42L);
+            Pointer big = Memory.allocateTemporary(runtime, 1024 * 1024, true);
+            assertEquals(0, big.getByte(1024 * 1024 - 1));
+            assertEquals(42L, small.getLong(0));
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void scopesMustBeClosedInOrder() {
+        MemoryArena outer = Memory.openTemporaryScope(runtime);
+        MemoryArena inner = Memory.openTemporaryScope(runtime);
+        try {
+            outer.close();
+        } finally {
+            inner.close();
+            outer.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void allocateFromOuterScope() {
+        MemoryArena outer = Memory.openTemporaryScope(runtime);
+        MemoryArena inner = Memory.openTemporaryScope(runtime);
+        try {
+            outer.allocate(8);
+        } finally {
+            inner.close();
+            outer.close();
+        }
+    }
+}
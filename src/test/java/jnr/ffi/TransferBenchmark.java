@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Measures {@link Pointer#transferTo} throughput for every pair of memory kinds and a range of sizes.
+ *
+ * <p>This is not run as part of the test suite; run it directly with
+ * {@code java jnr.ffi.TransferBenchmark [iterations]}.
+ */
+public class TransferBenchmark {
+    private static final String[] KINDS = { "direct", "heap", "buffer", "direct buffer", "direct slice", "heap slice" };
+    private static final int[] SIZES = { 16, 256, 4096, 65536 };
+
+    private static Pointer allocate(Runtime runtime, String kind, int size) {
+        if ("direct".equals(kind)) {
+            return Memory.allocateDirect(runtime, size);
+        } else if ("heap".equals(kind)) {
+            return Memory.allocate(runtime, size);
+        } else if ("buffer".equals(kind)) {
+            return Pointer.wrap(runtime, ByteBuffer.allocate(size));
+        } else if ("direct buffer".equals(kind)) {
+            return Pointer.wrap(runtime, ByteBuffer.allocateDirect(size));
+        } else if ("direct slice".equals(kind)) {
+            return Memory.allocateDirect(runtime, size + 8).slice(8, size);
+        } else {
+            return Memory.allocate(runtime, size + 8).slice(8, size);
+        }
+    }
+
+    private static long run(Pointer src, Pointer dst, int size, long iterations) {
+        long start = System.nanoTime();
+        for (long i = 0; i < iterations; ++i) {
+            src.transferTo(0, dst, 0, size);
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) {
+        Runtime runtime = Runtime.getSystemRuntime();
+        long budget = args.length > 0 ? Long.parseLong(args[0]) : 64L * 1024 * 1024;
+
+        System.out.printf("%-14s %-14s %8s %12s %10s%n", "source", "destination", "size", "ns/op", "MB/s");
+        for (int size : SIZES) {
+            long iterations = Math.max(1000, budget / size);
+            for (String srcKind : KINDS) {
+                for (String dstKind : KINDS) {
+                    Pointer src = allocate(runtime, srcKind, size);
+                    Pointer dst = allocate(runtime, dstKind, size);
+                    run(src, dst, size, iterations); // warm up
+                    long elapsed = run(src, dst, size, iterations);
+                    double nsPerOp = (double) elapsed / iterations;
+                    System.out.printf("%-14s %-14s %8d %12.1f %10.1f%n", srcKind, dstKind, size,
+                            nsPerOp, size / nsPerOp * 1e9 / (1024 * 1024));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+/**
+ * Compares a tight read loop over bounds checked direct memory against an
+ * {@link Memory#unchecked unchecked} view of the same memory.
+ *
+ * <p>This is not run as part of the test suite; run it directly with
+ * {@code java jnr.ffi.UncheckedMemoryBenchmark [iterations]}.
+ */
+public class UncheckedMemoryBenchmark {
+    private static final int SIZE = 4096;
+
+    private static long sum(Pointer p, long iterations) {
+        long sum = 0;
+        for (long i = 0; i < iterations; ++i) {
+            for (int off = 0; off < SIZE; off += 4) {
+                sum += p.getInt(off);
+            }
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) {
+        Runtime runtime = Runtime.getSystemRuntime();
+        long iterations = args.length > 0 ? Long.parseLong(args[0]) : 100000L;
+        Pointer memory = Memory.allocateDirect(runtime, SIZE + 64, true);
+        Pointer[] pointers = { memory.slice(64, SIZE), Memory.unchecked(memory.slice(64, SIZE)) };
+        String[] names = { "bounded", "unchecked" };
+        long sink = 0;
+
+        for (int round = 0; round < 3; ++round) {
+            for (int i = 0; i < pointers.length; ++i) {
+                long start = System.nanoTime();
+                sink += sum(pointers[i], iterations);
+                long elapsed = System.nanoTime() - start;
+                // the first round is warm up
+                if (round > 0) {
+                    System.out.printf("%-10s %8.3f ns/read%n", names[i], (double) elapsed / (iterations * (SIZE / 4)));
+                }
+            }
+        }
+        System.out.println("(" + sink + ")");
+    }
+}
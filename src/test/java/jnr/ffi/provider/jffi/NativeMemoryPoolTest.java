@@ -0,0 +1,117 @@
+/* 
+ * Copyright (C) 2012, 2008 Wayne Meissner
+ * 
+ * This file is part of jffi.
+ *
+ * This code is free software: you can redistribute it and/or modify it under 
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class NativeMemoryPoolTest {
+
+    @Test
+    public void blockSizes() {
+        assertEquals(16, NativeMemoryPool.blockSize(1));
+        assertEquals(16, NativeMemoryPool.blockSize(16));
+        assertEquals(32, NativeMemoryPool.blockSize(17));
+        assertEquals(512, NativeMemoryPool.blockSize(500));
+    }
+
+    @Test
+    public void freedBlockIsRecycled() {
+        NativeMemoryPool pool = new NativeMemoryPool(512, 4, 2);
+        long address = pool.allocate(64, false);
+        pool.free(address, 64);
+        assertEquals(address, pool.allocate(60, false));
+        pool.free(address, 60);
+    }
+
+    @Test
+    public void clearRecycledBlock() {
+        NativeMemoryPool pool = new NativeMemoryPool(512, 4, 2);
+        long address = pool.allocate(64, false);
+        NativeMemoryPool.IO.setMemory(address, 64, (byte) 0xff);
+        pool.free(address, 64);
+        address = pool.allocate(64, true);
+        for (int i = 0; i < 64; ++i) {
+            assertEquals(0, NativeMemoryPool.IO.getByte(address + i));
+        }
+        pool.free(address, 64);
+    }
+
+    @Test
+    public void largeBlocksAreNotPooled() {
+        NativeMemoryPool pool = new NativeMemoryPool(512, 4, 2);
+        assertFalse(pool.isPooled(513));
+        long address = pool.allocate(4096, true);
+        assertTrue(address != 0L);
+        pool.free(address, 4096);
+    }
+
+    @Test
+    public void fullPoolReleasesBlocks() {
+        NativeMemoryPool pool = new NativeMemoryPool(512, 4, 2);
+        long[] blocks = new long[16];
+        for (int i = 0; i < blocks.length; ++i) {
+            blocks[i] = pool.allocate(128, false);
+        }
+        for (int i = 0; i < blocks.length; ++i) {
+            pool.free(blocks[i], 128);
+        }
+
+        // 4 blocks in the thread magazine, 2 full magazines in the depot, the rest released
+        assertEquals(4, pool.getReleases());
+
+        Set<Long> recycled = new HashSet<Long>();
+        for (int i = 0; i < 12; ++i) {
+            recycled.add(pool.allocate(128, false));
+        }
+        assertEquals(12, recycled.size());
+        assertTrue(pool.getHits() >= 8);
+        assertEquals(16, pool.getMisses());
+    }
+
+    @Test
+    public void blocksFreedOnOtherThreadAreRecycled() throws InterruptedException {
+        final NativeMemoryPool pool = new NativeMemoryPool(512, 4, 2);
+        final long[] blocks = new long[8];
+        for (int i = 0; i < blocks.length; ++i) {
+            blocks[i] = pool.allocate(256, false);
+        }
+
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < blocks.length; ++i) {
+                    pool.free(blocks[i], 256);
+                }
+            }
+        });
+        t.start();
+        t.join();
+
+        // The first full magazine was pushed to the depot when the 5th block was freed
+        Set<Long> freed = new HashSet<Long>();
+        for (long address : blocks) {
+            freed.add(address);
+        }
+        for (int i = 0; i < 4; ++i) {
+            assertTrue("block not recycled", freed.contains(pool.allocate(256, false)));
+        }
+    }
+}
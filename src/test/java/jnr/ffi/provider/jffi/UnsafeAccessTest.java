@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UnsafeAccessTest {
+    private UnsafeAccess unsafe;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(!"false".equals(System.getProperty("jnr.ffi.unsafe")));
+        unsafe = UnsafeAccess.INSTANCE;
+    }
+
+    @Test
+    public void available() {
+        assertNotNull(unsafe);
+        assertTrue(NativeAtomics.AVAILABLE);
+    }
+
+    @Test
+    public void heapArrayAccess() {
+        byte[] array = new byte[16];
+        long base = unsafe.arrayBaseOffset(byte[].class);
+        unsafe.putLong(array, base + 8, 0x0123456789abcdefL);
+        unsafe.putInt(array, base, 0xdeadbeef);
+        unsafe.putShort(array, base + 4, (short) 0x1234);
+        assertEquals(0x0123456789abcdefL, unsafe.getLong(array, base + 8));
+        assertEquals(0xdeadbeef, unsafe.getInt(array, base));
+        assertEquals((short) 0x1234, unsafe.getShort(array, base + 4));
+    }
+
+    @Test
+    public void nativeAtomics() {
+        AllocatedDirectMemoryIO memory = new AllocatedDirectMemoryIO(16, true);
+        long address = memory.address();
+        assertTrue(unsafe.compareAndSwapInt(null, address, 0, 5));
+        assertFalse(unsafe.compareAndSwapInt(null, address, 0, 6));
+        assertEquals(5, unsafe.getIntVolatile(null, address));
+        unsafe.putOrderedLong(null, address + 8, 7L);
+        assertTrue(unsafe.compareAndSwapLong(null, address + 8, 7L, 9L));
+        assertEquals(9L, unsafe.getLongVolatile(null, address + 8));
+        assertEquals(9L, memory.getLongLong(8));
+    }
+}
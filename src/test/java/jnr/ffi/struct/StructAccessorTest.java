@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.struct;
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.StructLayout;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class StructAccessorTest {
+    static Runtime runtime;
+    static Fields layout;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+        layout = new Fields();
+    }
+
+    public static class Fields extends StructLayout {
+        public final Signed8 s8 = new Signed8();
+        public final Unsigned8 u8 = new Unsigned8();
+        public final Signed16 s16 = new Signed16();
+        public final Unsigned16 u16 = new Unsigned16();
+        public final Signed32 s32 = new Signed32();
+        public final Unsigned32 u32 = new Unsigned32();
+        public final Signed64 s64 = new Signed64();
+        public final SignedLong sl = new SignedLong();
+        public final UnsignedLong ul = new UnsignedLong();
+        public final Float f = new Float();
+        public final Double d = new Double();
+        private final Pointer p = new Pointer();
+
+        public Fields() {
+            super(runtime);
+        }
+    }
+
+    public static interface FieldsAccessor {
+        byte s8(Pointer p);
+        void s8(Pointer p, byte value);
+        short u8(Pointer p);
+        void u8(Pointer p, short value);
+        short s16(Pointer p);
+        void s16(Pointer p, short value);
+        int u16(Pointer p);
+        void u16(Pointer p, int value);
+        int s32(Pointer p);
+        int s32(Pointer p, long offset);
+        void s32(Pointer p, int value);
+        void s32(Pointer p, long offset, int value);
+        long u32(Pointer p);
+        void u32(Pointer p, long value);
+        long s64(Pointer p);
+        long s64(Pointer p, long offset);
+        void setS64(Pointer p, long value);
+        long sl(Pointer p);
+        void sl(Pointer p, long value);
+        long ul(Pointer p);
+        void ul(Pointer p, long value);
+        float f(Pointer p);
+        void f(Pointer p, float value);
+        double d(Pointer p);
+        void d(Pointer p, long offset, double value);
+        long p(Pointer p);
+        void p(Pointer p, long value);
+    }
+
+    public static interface BadType {
+        long s32(Pointer p);
+    }
+
+    public static interface NoSuchField {
+        int missing(Pointer p);
+    }
+
+
+    private void readAndWrite(Pointer memory) {
+        FieldsAccessor a = layout.newAccessor(FieldsAccessor.class);
+
+        a.s8(memory, (byte) -3);
+        assertEquals(-3, layout.s8.get(memory));
+        assertEquals(-3, a.s8(memory));
+
+        a.u8(memory, (short) 0xfe);
+        assertEquals((short) 0xfe, layout.u8.get(memory));
+        assertEquals((short) 0xfe, a.u8(memory));
+
+        a.s16(memory, (short) -1234);
+        assertEquals(-1234, layout.s16.get(memory));
+        assertEquals(-1234, a.s16(memory));
+
+        a.u16(memory, 0xfedc);
+        assertEquals(0xfedc, layout.u16.get(memory));
+        assertEquals(0xfedc, a.u16(memory));
+
+        a.s32(memory, -123456);
+        assertEquals(-123456, layout.s32.get(memory));
+        assertEquals(-123456, a.s32(memory));
+
+        a.u32(memory, 0xfedcba98L);
+        assertEquals(0xfedcba98L, layout.u32.get(memory));
+        assertEquals(0xfedcba98L, a.u32(memory));
+
+        a.setS64(memory, 0x123456789abcdefL);
+        assertEquals(0x123456789abcdefL, layout.s64.get(memory));
+        assertEquals(0x123456789abcdefL, a.s64(memory, 0L));
+
+        a.sl(memory, -5L);
+        assertEquals(-5L, layout.sl.get(memory));
+        assertEquals(-5L, a.sl(memory));
+
+        a.ul(memory, 0xfffffff0L);
+        assertEquals(0xfffffff0L, layout.ul.get(memory));
+        assertEquals(0xfffffff0L, a.ul(memory));
+
+        a.f(memory, 1.5f);
+        assertEquals(1.5f, layout.f.get(memory), 0f);
+        assertEquals(1.5f, a.f(memory), 0f);
+
+        a.d(memory, 0, 2.25);
+        assertEquals(2.25, layout.d.get(memory), 0d);
+        assertEquals(2.25, a.d(memory), 0d);
+
+        a.p(memory, 0x1000L);
+        assertEquals(0x1000L, memory.getAddress(layout.p.offset()));
+        assertEquals(0x1000L, a.p(memory));
+    }
+
+    @Test public void direct() {
+        readAndWrite(Memory.allocateDirect(runtime, layout.size()));
+    }
+
+    @Test public void heap() {
+        readAndWrite(Memory.allocate(runtime, layout.size()));
+    }
+
+    @Test public void buffer() {
+        readAndWrite(Pointer.wrap(runtime, ByteBuffer.allocate(layout.size()).order(runtime.byteOrder())));
+    }
+
+    @Test public void slice() {
+        readAndWrite(Memory.allocateDirect(runtime, layout.size() + 16).slice(16, layout.size()));
+    }
+
+    @Test public void directBufferSlice() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(layout.size() + 16).order(runtime.byteOrder());
+        readAndWrite(Pointer.wrap(runtime, buffer).slice(16, layout.size()));
+        assertEquals(-123456, buffer.getInt(16 + (int) layout.s32.offset()));
+    }
+
+    @Test public void accessorClassIsShared() {
+        FieldsAccessor a = layout.newAccessor(FieldsAccessor.class);
+        assertSame(a.getClass(), layout.newAccessor(FieldsAccessor.class).getClass());
+        assertSame(a.getClass(), new Fields().newAccessor(FieldsAccessor.class).getClass());
+    }
+
+    @Test public void cursor() {
+        Pointer memory = Memory.allocateDirect(runtime, layout.size());
+        readAndWrite(Memory.newCursor(runtime, memory.address()).pointer());
+        assertEquals(-123456, layout.s32.get(memory));
+    }
+
+    @Test public void structArray() {
+        FieldsAccessor a = layout.newAccessor(FieldsAccessor.class);
+        final int COUNT = 10, SIZE = layout.size();
+        for (Pointer memory : new Pointer[] { Memory.allocateDirect(runtime, SIZE * COUNT), Memory.allocate(runtime, SIZE * COUNT) }) {
+            for (int i = 0; i < COUNT; ++i) {
+                a.s32(memory, (long) i * SIZE, i * 3);
+                layout.s64.set(memory.slice(i * SIZE), i * 5L);
+            }
+            for (int i = 0; i < COUNT; ++i) {
+                assertEquals(i * 3, layout.s32.get(memory.slice(i * SIZE)));
+                assertEquals(i * 3, a.s32(memory, (long) i * SIZE));
+                assertEquals(i * 5L, a.s64(memory, (long) i * SIZE));
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void sliceBoundsChecked() {
+        FieldsAccessor a = layout.newAccessor(FieldsAccessor.class);
+        a.s32(Memory.allocateDirect(runtime, layout.size() * 2).slice(0, layout.size()), (long) layout.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongValueType() {
+        layout.newAccessor(BadType.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingField() {
+        layout.newAccessor(NoSuchField.class);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.struct;
+
+import jnr.ffi.Library;
+import jnr.ffi.Memory;
+import jnr.ffi.MemoryArena;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.Struct;
+import jnr.ffi.StructAllocator;
+import jnr.ffi.TstUtil;
+import jnr.ffi.annotations.Direct;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StructAllocatorTest {
+    public static interface TestLib {
+        int struct_align_Signed32(Int32Align s);
+    }
+
+    static TestLib testlib;
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        testlib = TstUtil.loadTestLib(TestLib.class);
+        runtime = Library.getRuntime(testlib);
+    }
+
+    public static class Int32Align extends Struct {
+        public final Signed8 first = new Signed8();
+        public final Signed32 i = new Signed32();
+
+        public Int32Align(Runtime runtime) {
+            super(runtime);
+        }
+
+        public Int32Align(Runtime runtime, StructAllocator allocator) {
+            super(runtime, allocator);
+        }
+    }
+
+    @Direct
+    public static class DirectInt32Align extends Int32Align {
+        public DirectInt32Align(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    @Test public void heapByDefault() {
+        Int32Align s = new Int32Align(runtime);
+        s.i.set(1);
+        assertFalse(Struct.getMemory(s).isDirect());
+    }
+
+    @Test public void directAllocator() {
+        Int32Align s = new Int32Align(runtime, StructAllocator.DIRECT);
+        assertEquals(0, s.i.get());
+        assertTrue(Struct.isDirect(s));
+        assertTrue(Struct.getMemory(s).isDirect());
+        s.i.set(0x12345678);
+        assertEquals(0x12345678, testlib.struct_align_Signed32(s));
+    }
+
+    @Test public void directAnnotation() {
+        DirectInt32Align s = new DirectInt32Align(runtime);
+        s.i.set(7);
+        assertTrue(Struct.isDirect(s));
+        Pointer memory = Struct.getMemory(s);
+        assertEquals(7, testlib.struct_align_Signed32(s));
+        assertSame(memory, Struct.getMemory(s));
+    }
+
+    @Test public void pooledAllocator() {
+        StructAllocator pool = StructAllocator.pooled(256);
+        Int32Align[] structs = new Int32Align[100];
+        for (int n = 0; n < structs.length; n++) {
+            structs[n] = new Int32Align(runtime, pool);
+            structs[n].i.set(n);
+        }
+
+        for (int n = 0; n < structs.length; n++) {
+            Pointer memory = Struct.getMemory(structs[n]);
+            assertTrue(memory.isDirect());
+            assertEquals(0, memory.address() % Struct.alignment(structs[n]));
+            assertEquals(n, testlib.struct_align_Signed32(structs[n]));
+        }
+        assertEquals(Struct.size(structs[0]), Struct.getMemory(structs[1]).address() - Struct.getMemory(structs[0]).address());
+    }
+
+    @Test public void arenaAllocator() {
+        MemoryArena arena = Memory.newArena(runtime);
+        try {
+            Int32Align s = new Int32Align(runtime, StructAllocator.arena(arena));
+            s.i.set(-3);
+            assertTrue(Struct.isDirect(s));
+            assertEquals(-3, testlib.struct_align_Signed32(s));
+        } finally {
+            arena.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPoolBlockSize() {
+        StructAllocator.pooled(0);
+    }
+}
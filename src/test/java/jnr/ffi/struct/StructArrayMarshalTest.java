@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.struct;
+
+import jnr.ffi.Library;
+import jnr.ffi.Runtime;
+import jnr.ffi.Struct;
+import jnr.ffi.StructAllocator;
+import jnr.ffi.TstUtil;
+import jnr.ffi.annotations.In;
+import jnr.ffi.annotations.Out;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StructArrayMarshalTest {
+    public static interface TestLib {
+        void fillIntBuffer(@Out Pair[] buf, int value, int size);
+        void copyIntBuffer(Pair[] dst, @In Pair[] src, int size);
+    }
+
+    static TestLib testlib;
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        testlib = TstUtil.loadTestLib(TestLib.class);
+        runtime = Library.getRuntime(testlib);
+    }
+
+    public static class Pair extends Struct {
+        public final Signed32 a = new Signed32();
+        public final Signed32 b = new Signed32();
+
+        public Pair(Runtime runtime) {
+            super(runtime);
+        }
+
+        public Pair(Runtime runtime, StructAllocator allocator) {
+            super(runtime, allocator);
+        }
+    }
+
+    private static Pair[] heapPairs(int length) {
+        Pair[] pairs = new Pair[length];
+        for (int i = 0; i < length; i++) {
+            pairs[i] = new Pair(runtime);
+        }
+
+        return pairs;
+    }
+
+    @Test public void contiguousArrayIsPassedDirectly() {
+        Pair[] pairs = Struct.arrayOf(runtime, Pair.class, 4);
+        testlib.fillIntBuffer(pairs, 0x1eefcafe, 8);
+        for (Pair p : pairs) {
+            assertEquals(0x1eefcafe, p.a.get());
+            assertEquals(0x1eefcafe, p.b.get());
+        }
+    }
+
+    @Test public void heapStructsAreGatheredAndScattered() {
+        Pair[] src = heapPairs(3);
+        for (int i = 0; i < src.length; i++) {
+            src[i].a.set(i);
+            src[i].b.set(-i);
+        }
+
+        Pair[] dst = heapPairs(3);
+        testlib.copyIntBuffer(dst, src, 6);
+        for (int i = 0; i < dst.length; i++) {
+            assertEquals(i, dst[i].a.get());
+            assertEquals(-i, dst[i].b.get());
+            assertFalse(Struct.isDirect(dst[i]));
+        }
+    }
+
+    @Test public void nonContiguousDirectStructs() {
+        Pair[] pairs = new Pair[3];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = new Pair(runtime, StructAllocator.DIRECT);
+        }
+
+        testlib.fillIntBuffer(pairs, 7, 6);
+        for (Pair p : pairs) {
+            assertEquals(7, p.a.get());
+            assertEquals(7, p.b.get());
+        }
+    }
+
+    @Test public void reorderedArrayOf() {
+        Pair[] pairs = Struct.arrayOf(runtime, Pair.class, 3);
+        Pair[] reversed = { pairs[2], pairs[1], pairs[0] };
+        reversed[0].a.set(1);
+        reversed[1].a.set(2);
+        reversed[2].a.set(3);
+
+        Pair[] dst = heapPairs(3);
+        testlib.copyIntBuffer(dst, reversed, 6);
+        assertEquals(1, dst[0].a.get());
+        assertEquals(2, dst[1].a.get());
+        assertEquals(3, dst[2].a.get());
+    }
+
+    @Test public void nullElementsAreZero() {
+        Pair[] src = heapPairs(4);
+        src[0] = null;
+        src[1].a.set(5);
+        src[2] = null;
+        src[3].b.set(6);
+
+        Pair[] dst = Struct.arrayOf(runtime, Pair.class, 4);
+        dst[0].a.set(99);
+        dst[2].b.set(99);
+        testlib.copyIntBuffer(dst, src, 8);
+        assertEquals(0, dst[0].a.get());
+        assertEquals(5, dst[1].a.get());
+        assertEquals(0, dst[2].b.get());
+        assertEquals(6, dst[3].b.get());
+    }
+
+    @Test public void outArrayWithLeadingNull() {
+        Pair[] pairs = heapPairs(3);
+        pairs[0] = null;
+        testlib.fillIntBuffer(pairs, 3, 6);
+        assertEquals(3, pairs[1].a.get());
+        assertEquals(3, pairs[2].b.get());
+    }
+}
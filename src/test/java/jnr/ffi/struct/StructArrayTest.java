@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.struct;
+
+import jnr.ffi.Memory;
+import jnr.ffi.MemoryCursor;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.StructArray;
+import jnr.ffi.StructLayout;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class StructArrayTest {
+    static Runtime runtime;
+    static Point layout;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+        layout = new Point();
+    }
+
+    public static class Point extends StructLayout {
+        public final Signed8 tag = new Signed8();
+        public final Signed32 x = new Signed32();
+        public final Double weight = new Double();
+
+        public Point() {
+            super(runtime);
+        }
+    }
+
+    @Test public void allocateIsZeroed() {
+        StructArray<Point> points = StructArray.allocate(layout, 10);
+        assertEquals(10, points.length());
+        assertEquals(layout.size(), points.stride());
+        assertEquals(10L * layout.size(), points.getMemory().size());
+        for (int i = 0; i < points.length(); i++) {
+            assertEquals(0, layout.x.get(points.get(i)));
+        }
+    }
+
+    @Test public void cursorVisitsEachElement() {
+        StructArray<Point> points = StructArray.allocate(layout, 16);
+        MemoryCursor p = points.cursor();
+        for (int i = 0; i < points.length(); i++, p.advance(points.stride())) {
+            layout.x.set(p.pointer(), i * 3);
+        }
+
+        for (int i = 0; i < points.length(); i++) {
+            assertEquals(i * 3, points.getMemory().getInt(points.offsetOf(i) + layout.x.offset()));
+            assertEquals(i * 3, layout.x.get(points.seek(p, i).pointer()));
+        }
+    }
+
+    @Test public void columns() {
+        StructArray<Point> points = StructArray.allocate(layout, 8);
+        int[] xs = { 1, 2, 3, 4, 5, 6, 7, 8 };
+        double[] weights = { 0.5, 1.5, 2.5, 3.5, 4.5, 5.5, 6.5, 7.5 };
+        byte[] tags = { -1, -2, -3, -4, -5, -6, -7, -8 };
+        points.putColumn(layout.x, 0, xs, 0, xs.length);
+        points.putColumn(layout.weight, 0, weights, 0, weights.length);
+        points.putColumn(layout.tag, 0, tags, 0, tags.length);
+
+        for (int i = 0; i < points.length(); i++) {
+            Pointer p = points.get(i);
+            assertEquals(xs[i], layout.x.get(p));
+            assertEquals(weights[i], layout.weight.get(p), 0d);
+            assertEquals(tags[i], layout.tag.get(p));
+        }
+
+        int[] part = new int[5];
+        points.getColumn(layout.x, 3, part, 1, 4);
+        assertArrayEquals(new int[] { 0, 4, 5, 6, 7 }, part);
+    }
+
+    @Test public void wrapExistingMemory() {
+        Pointer memory = Memory.allocateDirect(runtime, layout.size() * 4);
+        memory.putInt(2 * layout.size() + layout.x.offset(), 42);
+        StructArray<Point> points = StructArray.wrap(layout, memory, 4);
+        assertEquals(42, layout.x.get(points.get(2)));
+        assertSame(memory, points.getMemory());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void wrapTooSmall() {
+        StructArray.wrap(layout, Memory.allocateDirect(runtime, layout.size() * 2), 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrapHeapMemory() {
+        StructArray.wrap(layout, Memory.allocate(runtime, layout.size()), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrapDirectBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(layout.size() * 2).order(runtime.byteOrder());
+        StructArray.wrap(layout, Pointer.wrap(runtime, buffer).slice(0, layout.size()), 1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexOutOfBounds() {
+        StructArray.allocate(layout, 2).offsetOf(2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void columnOutOfBounds() {
+        StructArray.allocate(layout, 2).getColumn(layout.x, 1, new int[2], 0, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void columnFromOtherLayout() {
+        StructArray.allocate(layout, 2).getColumn(new Point().x, 0, new int[2], 0, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void columnNarrowerThanArray() {
+        StructArray.allocate(layout, 2).getColumn(layout.tag, 0, new int[2], 0, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void columnWiderThanArray() {
+        StructArray.allocate(layout, 2).putColumn(layout.weight, 0, new float[2], 0, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void integerColumnIntoFloatArray() {
+        StructArray.allocate(layout, 2).getColumn(layout.x, 0, new float[2], 0, 2);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.struct;
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.Struct;
+import jnr.ffi.StructAllocator;
+import jnr.ffi.StructArray;
+import jnr.ffi.StructLayout;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class StructCopyTest {
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    public static class Pair extends Struct {
+        public final Signed32 a = new Signed32();
+        public final Signed64 b = new Signed64();
+
+        public Pair(Runtime runtime) {
+            super(runtime);
+        }
+
+        public Pair(Runtime runtime, StructAllocator allocator) {
+            super(runtime, allocator);
+        }
+    }
+
+    public static class Outer extends Struct {
+        public final Signed8 tag = new Signed8();
+        public final Pair pair = inner(new Pair(getRuntime()));
+
+        public Outer(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static class PairLayout extends StructLayout {
+        public final Signed32 a = new Signed32();
+        public final Signed64 b = new Signed64();
+
+        public PairLayout(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    private static ByteBuffer buffer(int size, boolean direct) {
+        ByteBuffer buf = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        return buf.order(ByteOrder.nativeOrder());
+    }
+
+    @Test public void byteArrayRoundTrip() {
+        for (StructAllocator allocator : new StructAllocator[] { null, StructAllocator.DIRECT }) {
+            Pair src = new Pair(runtime, allocator);
+            src.a.set(0x11223344);
+            src.b.set(-5L);
+
+            byte[] bytes = new byte[Struct.size(src) + 2];
+            Struct.copyTo(src, bytes, 2);
+            ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder());
+            assertEquals(0x11223344, buf.getInt(2 + (int) src.a.offset()));
+            assertEquals(-5L, buf.getLong(2 + (int) src.b.offset()));
+
+            Pair dst = new Pair(runtime);
+            Struct.copyFrom(dst, bytes, 2);
+            assertEquals(0x11223344, dst.a.get());
+            assertEquals(-5L, dst.b.get());
+        }
+    }
+
+    @Test public void byteBufferRoundTrip() {
+        for (boolean direct : new boolean[] { false, true }) {
+            Pair src = new Pair(runtime, StructAllocator.DIRECT);
+            src.a.set(7);
+            src.b.set(8);
+
+            ByteBuffer buf = buffer(100, direct);
+            buf.position(3);
+            Struct.copyTo(src, buf);
+            assertEquals(3 + Struct.size(src), buf.position());
+            assertEquals(7, buf.getInt(3 + (int) src.a.offset()));
+
+            buf.position(3);
+            Pair dst = new Pair(runtime);
+            Struct.copyFrom(dst, buf);
+            assertEquals(3 + Struct.size(src), buf.position());
+            assertEquals(7, dst.a.get());
+            assertEquals(8, dst.b.get());
+        }
+    }
+
+    @Test public void pointerRoundTrip() {
+        Pair src = new Pair(runtime);
+        src.a.set(1);
+        src.b.set(2);
+        Pointer memory = Memory.allocateDirect(runtime, 64);
+        Struct.copyTo(src, memory, 8);
+        assertEquals(1, memory.getInt(8 + src.a.offset()));
+
+        Pair dst = new Pair(runtime, StructAllocator.DIRECT);
+        Struct.copyFrom(dst, memory, 8);
+        assertEquals(1, dst.a.get());
+        assertEquals(2, dst.b.get());
+    }
+
+    @Test public void innerStruct() {
+        Outer outer = new Outer(runtime);
+        outer.tag.set((byte) 1);
+        outer.pair.a.set(2);
+        outer.pair.b.set(3);
+
+        byte[] bytes = new byte[Struct.size(outer.pair)];
+        Struct.copyTo(outer.pair, bytes, 0);
+        Pair copy = new Pair(runtime);
+        Struct.copyFrom(copy, bytes, 0);
+        assertEquals(2, copy.a.get());
+        assertEquals(3, copy.b.get());
+    }
+
+    @Test public void structArrayRoundTrip() {
+        Pair[] src = Struct.arrayOf(runtime, Pair.class, 3);
+        for (int i = 0; i < src.length; i++) {
+            src[i].a.set(i);
+            src[i].b.set(i * 10);
+        }
+
+        int stride = (int) (Struct.getMemory(src[1]).address() - Struct.getMemory(src[0]).address());
+        ByteBuffer buf = buffer(3 * stride, true);
+        Struct.copyTo(src, buf);
+        assertFalse(buf.hasRemaining());
+
+        buf.flip();
+        Pair[] dst = { new Pair(runtime), new Pair(runtime), new Pair(runtime) };
+        Struct.copyFrom(dst, buf);
+        for (int i = 0; i < dst.length; i++) {
+            assertEquals(i, dst[i].a.get());
+            assertEquals(i * 10, dst[i].b.get());
+        }
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void bufferTooSmall() {
+        Struct.copyTo(new Pair(runtime), ByteBuffer.allocate(4));
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void arrayBufferTooSmall() {
+        Struct.copyFrom(new Pair[] { new Pair(runtime), new Pair(runtime) }, ByteBuffer.allocate(20));
+    }
+
+    @Test public void layoutCopy() {
+        PairLayout layout = new PairLayout(runtime);
+        Pointer src = Memory.allocateDirect(runtime, layout.size());
+        layout.a.set(src, 9);
+        layout.b.set(src, 10);
+
+        ByteBuffer buf = buffer(layout.size(), false);
+        layout.copyTo(src, buf);
+        buf.flip();
+        Pointer dst = Memory.allocate(runtime, layout.size());
+        layout.copyFrom(dst, buf);
+        assertEquals(9, layout.a.get(dst));
+        assertEquals(10, layout.b.get(dst));
+
+        byte[] bytes = new byte[layout.size()];
+        layout.copyTo(src, bytes, 0);
+        Pointer dst2 = Memory.allocateDirect(runtime, layout.size());
+        layout.copyFrom(dst2, bytes, 0);
+        assertEquals(9, layout.a.get(dst2));
+    }
+
+    @Test public void structArrayRange() {
+        PairLayout layout = new PairLayout(runtime);
+        StructArray<PairLayout> src = StructArray.allocate(layout, 4);
+        for (int i = 0; i < src.length(); i++) {
+            layout.a.set(src.get(i), i + 1);
+        }
+
+        ByteBuffer buf = buffer(2 * src.stride(), true);
+        src.copyTo(1, 2, buf);
+        buf.flip();
+
+        StructArray<PairLayout> dst = StructArray.allocate(layout, 2);
+        dst.copyFrom(0, 2, buf);
+        assertEquals(2, layout.a.get(dst.get(0)));
+        assertEquals(3, layout.a.get(dst.get(1)));
+
+        byte[] bytes = new byte[4 * src.stride()];
+        src.copyTo(0, 4, bytes, 0);
+        dst.copyFrom(0, 2, bytes, 2 * src.stride());
+        assertEquals(3, layout.a.get(dst.get(0)));
+        assertEquals(4, layout.a.get(dst.get(1)));
+    }
+}
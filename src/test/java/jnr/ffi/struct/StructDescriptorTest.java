@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.struct;
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.Struct;
+import jnr.ffi.StructDescriptor;
+import jnr.ffi.StructLayout;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StructDescriptorTest {
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    public static class Point extends Struct {
+        public final Signed32 x = new Signed32();
+        public final Signed32 y = new Signed32();
+
+        public Point(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static class Shape extends Struct {
+        public final Signed8 kind = new Signed8();
+        public final Point origin = inner(new Point(getRuntime()));
+        public final Signed16[] sides = array(new Signed16[2]);
+        public final AsciiString label = new AsciiString(8);
+        public Point notInner;
+
+        public Shape(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static class Sized extends Struct {
+        public final Signed32 count = new Signed32();
+        public final Signed32[] values;
+        public final Signed8 tail;
+
+        public Sized(Runtime runtime, int length) {
+            super(runtime);
+            new Signed32();
+            values = array(new Signed32[length]);
+            tail = new Signed8();
+        }
+    }
+
+    public static class PointLayout extends StructLayout {
+        public final Signed32 x = new Signed32();
+        public final Signed32 y = new Signed32();
+
+        public PointLayout(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static class ShapeLayout extends StructLayout {
+        public final Signed8 kind = new Signed8();
+        public final PointLayout origin = inner(new PointLayout(getRuntime()));
+        public final Signed16Array sides = new Signed16Array(2);
+        public final BitField flag = new BitField(1);
+
+        public ShapeLayout(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    private static List<String> names(final List<Long> offsets, Struct struct) {
+        final List<String> names = new ArrayList<String>();
+        StructDescriptor.of(struct.getClass()).accept(struct, new StructDescriptor.Visitor() {
+            public void visit(String name, Object field, Pointer memory, long offset) {
+                names.add(name);
+                offsets.add(offset);
+            }
+        });
+
+        return names;
+    }
+
+    @Test public void structFields() {
+        Shape shape = new Shape(runtime);
+        shape.notInner = new Point(runtime);
+        StructDescriptor descriptor = StructDescriptor.of(Shape.class);
+        assertSame(descriptor, StructDescriptor.of(Shape.class));
+        assertEquals(5, descriptor.size());
+        assertEquals("kind", descriptor.getName(0));
+
+        List<Long> offsets = new ArrayList<Long>();
+        List<String> names = names(offsets, shape);
+        assertEquals(java.util.Arrays.asList("kind", "origin.x", "origin.y", "sides[0]", "sides[1]", "label"), names);
+        assertEquals(shape.origin.y.offset(), (long) offsets.get(2));
+        assertEquals(shape.sides[1].offset(), (long) offsets.get(4));
+    }
+
+    @Test public void structMembersFollowTheInstance() {
+        List<Long> offsets = new ArrayList<Long>();
+        assertEquals(java.util.Arrays.asList("count", "values[0]", "tail"), names(offsets, new Sized(runtime, 1)));
+        assertEquals(8L, (long) offsets.get(1));
+
+        offsets.clear();
+        Sized sized = new Sized(runtime, 3);
+        assertEquals(java.util.Arrays.asList("count", "values[0]", "values[1]", "values[2]", "tail"), names(offsets, sized));
+        assertEquals(sized.tail.offset(), (long) offsets.get(4));
+    }
+
+    @Test public void structToString() {
+        Point p = new Point(runtime);
+        p.x.set(1);
+        p.y.set(-2);
+        assertEquals("Point { \n    x = 1\n    y = -2\n}\n", p.toString());
+    }
+
+    @Test public void structContentEquals() {
+        Point a = new Point(runtime), b = new Point(runtime);
+        a.x.set(3);
+        assertFalse(Struct.contentEquals(a, b));
+        b.x.set(3);
+        assertTrue(Struct.contentEquals(a, b));
+        assertEquals(Struct.contentHashCode(a), Struct.contentHashCode(b));
+
+        Shape shape = new Shape(runtime);
+        shape.origin.x.set(3);
+        assertTrue(Struct.contentEquals(a, shape.origin));
+        assertEquals(Struct.contentHashCode(a), Struct.contentHashCode(shape.origin));
+        assertFalse(Struct.contentEquals(a, shape));
+    }
+
+    @Test public void layoutFields() {
+        final ShapeLayout layout = new ShapeLayout(runtime);
+        assertSame(StructDescriptor.of(layout), StructDescriptor.of(layout));
+        final List<String> names = new ArrayList<String>();
+        Pointer memory = Memory.allocateDirect(runtime, layout.size(), true);
+        StructDescriptor.of(layout).accept(memory, new StructDescriptor.Visitor() {
+            public void visit(String name, Object field, Pointer memory, long offset) {
+                names.add(name + "@" + offset);
+            }
+        });
+        assertEquals(java.util.Arrays.asList("kind@0", "origin.x@4", "origin.y@8", "sides@12", "flag@16"), names);
+    }
+
+    @Test public void layoutToString() {
+        ShapeLayout layout = new ShapeLayout(runtime);
+        Pointer memory = Memory.allocateDirect(runtime, layout.size(), true);
+        layout.origin.y.set(memory, 5);
+        layout.sides.set(memory, 1, (short) 6);
+        layout.flag.set(memory, 1);
+        assertEquals("ShapeLayout { \n    kind = 0\n    origin.x = 0\n    origin.y = 5\n    sides = [0, 6]\n    flag = 1\n}\n",
+                layout.toString(memory));
+        assertTrue(layout.toString().contains("origin.y @ 8"));
+    }
+
+    @Test public void layoutContentEquals() {
+        PointLayout layout = new PointLayout(runtime);
+        Pointer a = Memory.allocateDirect(runtime, layout.size(), true);
+        Pointer b = Memory.allocate(runtime, layout.size());
+        layout.y.set(a, 9);
+        assertFalse(layout.contentEquals(a, b));
+        layout.y.set(b, 9);
+        assertTrue(layout.contentEquals(a, b));
+        assertEquals(layout.contentHashCode(a), layout.contentHashCode(b));
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.struct;
+
+import jnr.ffi.NativeType;
+import jnr.ffi.Runtime;
+import jnr.ffi.Struct;
+import jnr.ffi.Union;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks struct instances laid out from a recorded per-class layout match the first instance.
+ */
+public class StructLayoutCacheTest {
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    public static final class Mixed extends Struct {
+        public final Signed8 s8 = new Signed8();
+        public final Pointer p = new Pointer();
+        public final Signed16 s16 = new Signed16();
+        public final Signed64 s64 = new Signed64();
+        public final UTF8String name = new UTF8String(5);
+        public final Signed32 i32 = new Signed32();
+
+        public Mixed() {
+            super(runtime);
+        }
+    }
+
+    public static final class Sized extends Struct {
+        public final Signed8 tag = new Signed8();
+        public final Signed32[] values;
+        public final Signed8 trailer = new Signed8();
+
+        public Sized(int count) {
+            super(runtime);
+            values = array(new Signed32[count]);
+        }
+    }
+
+    public static final class Explicit extends Struct {
+        public final Signed32 a = new Signed32(new Offset(8));
+        public final Signed8 b = new Signed8();
+
+        public Explicit() {
+            super(runtime);
+        }
+    }
+
+    public static final class U extends Union {
+        public final Signed8 b = new Signed8();
+        public final Signed64 l = new Signed64();
+
+        public U() {
+            super(runtime);
+        }
+    }
+
+    public static final class Outer extends Struct {
+        public final Signed8 b = new Signed8();
+        public final Mixed inner = inner(new Mixed());
+        public final Signed32 i = new Signed32();
+
+        public Outer() {
+            super(runtime);
+        }
+    }
+
+    public static final class SizedInConstructor extends Struct {
+        public final Signed8 tag = new Signed8();
+        public final int sizeBefore = Struct.size(this);
+        public final Signed64 value = new Signed64();
+        public final Signed16 trailer = new Signed16();
+
+        public SizedInConstructor() {
+            super(runtime);
+        }
+    }
+
+    private static void assertSameLayout(Mixed expected, Mixed actual) {
+        assertEquals(Struct.size(expected), Struct.size(actual));
+        assertEquals(Struct.alignment(expected), Struct.alignment(actual));
+        assertEquals(expected.s8.offset(), actual.s8.offset());
+        assertEquals(expected.p.offset(), actual.p.offset());
+        assertEquals(expected.s16.offset(), actual.s16.offset());
+        assertEquals(expected.s64.offset(), actual.s64.offset());
+        assertEquals(expected.name.offset(), actual.name.offset());
+        assertEquals(expected.i32.offset(), actual.i32.offset());
+    }
+
+    @Test public void replayedLayoutMatches() {
+        Mixed first = new Mixed();
+        assertEquals(0, first.s8.offset());
+        assertEquals(runtime.addressSize(), first.p.offset());
+        assertEquals(2 * runtime.addressSize(), first.s16.offset());
+        assertEquals(2 * runtime.addressSize() + 8, first.s64.offset());
+
+        for (int i = 0; i < 3; ++i) {
+            Mixed m = new Mixed();
+            assertSameLayout(first, m);
+            m.i32.set(i);
+            assertEquals(i, m.i32.intValue());
+        }
+    }
+
+    @Test public void layoutDependingOnConstructorArguments() {
+        for (int count : new int[] { 2, 4, 1, 4, 0 }) {
+            Sized s = new Sized(count);
+            // field initializers run before the constructor body
+            assertEquals(1, s.trailer.offset());
+            for (int i = 0; i < count; ++i) {
+                assertEquals(4 + 4 * i, s.values[i].offset());
+            }
+            assertEquals(count > 0 ? 4 : 1, Struct.alignment(s));
+            assertEquals(count > 0 ? 4 + 4 * count : 2, Struct.size(s));
+        }
+    }
+
+    @Test public void explicitOffset() {
+        for (int i = 0; i < 2; ++i) {
+            Explicit e = new Explicit();
+            assertEquals(8, e.a.offset());
+            assertEquals(12, e.b.offset());
+            assertEquals(13, Struct.size(e));
+        }
+    }
+
+    @Test public void union() {
+        for (int i = 0; i < 2; ++i) {
+            U u = new U();
+            assertEquals(0, u.b.offset());
+            assertEquals(0, u.l.offset());
+            assertEquals(8, Struct.size(u));
+        }
+    }
+
+    @Test public void sizeCalledWhileConstructing() {
+        final int align = runtime.findType(NativeType.SLONGLONG).alignment();
+        for (int i = 0; i < 3; ++i) {
+            SizedInConstructor s = new SizedInConstructor();
+            assertEquals(1, s.sizeBefore);
+            assertEquals(align, s.value.offset());
+            assertEquals(align + 8, s.trailer.offset());
+            assertEquals(align + 10, Struct.size(s));
+            assertEquals(align, Struct.alignment(s));
+        }
+    }
+
+    @Test public void nestedStruct() {
+        for (int i = 0; i < 2; ++i) {
+            Outer o = new Outer();
+            assertEquals(runtime.addressSize(), o.inner.s8.offset());
+            assertEquals(runtime.addressSize() + Struct.size(o.inner), o.i.offset());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.struct;
+
+import jnr.ffi.Library;
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.StructLayout;
+import jnr.ffi.TstUtil;
+import jnr.ffi.annotations.In;
+import jnr.ffi.annotations.LongLong;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class StructLayoutFieldsTest {
+    public static interface TestLib {
+        void struct_set_string(Pointer s, @In String string);
+        Pointer struct_make_struct(byte b, short s, int i, @LongLong long ll, float f, double d);
+    }
+
+    static TestLib testlib;
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        testlib = TstUtil.loadTestLib(TestLib.class);
+        runtime = Library.getRuntime(testlib);
+    }
+
+    public static class Numbers extends StructLayout {
+        public final Signed8 b = new Signed8();
+        public final Signed16 s = new Signed16();
+        public final Signed32 i = new Signed32();
+        public final Signed64 j = new Signed64();
+        public final SignedLong l = new SignedLong();
+        public final Float f = new Float();
+        public final Double d = new Double();
+
+        public Numbers(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    /** Same layout as struct test1 in libtest */
+    public static class Test1 extends StructLayout {
+        public final Numbers numbers = inner(new Numbers(getRuntime()));
+        public final AsciiString string = new AsciiString(32);
+
+        public Test1(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static class Arrays extends StructLayout {
+        public final Signed8 tag = new Signed8();
+        public final Signed8Array bytes = new Signed8Array(3);
+        public final Signed16Array shorts = new Signed16Array(3);
+        public final Signed32Array ints = new Signed32Array(4);
+        public final Signed64Array longs = new Signed64Array(2);
+        public final FloatArray floats = new FloatArray(2);
+        public final DoubleArray doubles = new DoubleArray(2);
+
+        public Arrays(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static class Flags extends StructLayout {
+        public final BitField a = new BitField(3);
+        public final BitField b = new BitField(5);
+        public final BitField c = new BitField(30);
+        public final Signed8 x = new Signed8();
+        public final BitField d = new BitField(32);
+
+        public Flags(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    @Test public void nestedLayoutAndString() {
+        Test1 layout = new Test1(runtime);
+        Pointer p = testlib.struct_make_struct((byte) 1, (short) 2, 3, 4L, 5f, 6d);
+        assertEquals(3, layout.numbers.i.get(p));
+        assertEquals(6d, layout.numbers.d.get(p), 0d);
+
+        testlib.struct_set_string(p, "hello");
+        assertEquals("hello", layout.string.get(p));
+
+        layout.string.set(p, "world");
+        assertEquals("world", p.getString(layout.string.offset()));
+        assertEquals(32, layout.string.length());
+    }
+
+    @Test public void inlineArrays() {
+        Arrays layout = new Arrays(runtime);
+        assertEquals(1, layout.bytes.offset());
+        assertEquals(4, layout.shorts.offset());
+        assertEquals(12, layout.ints.offset());
+
+        Pointer p = Memory.allocateDirect(runtime, layout.size(), true);
+        layout.ints.set(p, 0, new int[] { 1, 2, 3, 4 }, 0, 4);
+        layout.ints.set(p, 2, 30);
+        assertEquals(30, layout.ints.get(p, 2));
+        assertEquals(4, p.getInt(layout.ints.offset() + 12));
+
+        int[] ints = new int[3];
+        layout.ints.get(p, 1, ints, 0, 3);
+        assertArrayEquals(new int[] { 2, 30, 4 }, ints);
+
+        layout.bytes.set(p, 2, (byte) -1);
+        layout.shorts.set(p, 1, (short) 7);
+        layout.longs.set(p, 1, Long.MIN_VALUE);
+        layout.floats.set(p, 0, 1.5f);
+        layout.doubles.set(p, 1, 2.5d);
+        assertEquals(-1, layout.bytes.get(p, 2));
+        assertEquals(7, layout.shorts.get(p, 1));
+        assertEquals(Long.MIN_VALUE, layout.longs.get(p, 1));
+        assertEquals(1.5f, layout.floats.get(p, 0), 0f);
+        assertEquals(2.5d, layout.doubles.get(p, 1), 0d);
+        assertEquals(0, layout.tag.get(p));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void arrayIndexOutOfBounds() {
+        Arrays layout = new Arrays(runtime);
+        layout.ints.get(Memory.allocateDirect(runtime, layout.size(), true), 4);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void arrayRangeOutOfBounds() {
+        Arrays layout = new Arrays(runtime);
+        layout.longs.get(Memory.allocateDirect(runtime, layout.size(), true), 1, new long[2], 0, 2);
+    }
+
+    @Test public void bitFields() {
+        Flags layout = new Flags(runtime);
+        assertEquals(0, layout.a.offset());
+        assertEquals(0, layout.b.offset());
+        assertEquals(4, layout.c.offset());
+        assertEquals(8, layout.x.offset());
+        assertEquals(12, layout.d.offset());
+        assertEquals(16, layout.size());
+
+        Pointer p = Memory.allocateDirect(runtime, layout.size(), true);
+        layout.a.set(p, 5);
+        layout.b.set(p, 17);
+        layout.c.set(p, -1);
+        layout.d.set(p, 0xdeadbeef);
+        assertEquals(5, layout.a.get(p));
+        assertEquals(17, layout.b.get(p));
+        assertEquals((1 << 30) - 1, layout.c.get(p));
+        assertEquals(0xdeadbeef, layout.d.get(p));
+
+        int unit = p.getInt(0);
+        if (runtime.byteOrder() == ByteOrder.LITTLE_ENDIAN) {
+            assertEquals(5 | (17 << 3), unit);
+        } else {
+            assertEquals((5 << 29) | (17 << 24), unit);
+        }
+
+        layout.a.set(p, 8);
+        assertEquals(0, layout.a.get(p));
+        assertEquals(17, layout.b.get(p));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBitFieldWidth() {
+        new StructLayout(runtime) {
+            public final BitField bad = new BitField(33);
+        };
+    }
+}
@@ -360,6 +360,38 @@ public class StructLayoutTest {
         assertEquals("incorrect inner struct field value", (byte) 0x12, t.s.s8.get(ptr));
     }
 
+    private class MiddleStruct extends StructLayout {
+        public final Signed32 y = new Signed32();
+        public final InnerStruct c = inner(new InnerStruct());
+        public final Unsigned8 bits = new Unsigned8();
+
+        public MiddleStruct() {
+            super(runtime);
+        }
+    }
+
+    private class OuterStruct extends StructLayout {
+        public final Signed32 x = new Signed32();
+        public final MiddleStruct b = inner(new MiddleStruct());
+
+        public OuterStruct() {
+            super(runtime);
+        }
+    }
+
+    @Test public void nestedInnerStruct() {
+        OuterStruct t = new OuterStruct();
+        assertEquals("incorrect nested field offset", 4, t.b.y.offset());
+        assertEquals("incorrect nested field offset", 8, t.b.c.s8.offset());
+        assertEquals("incorrect nested field offset", 9, t.b.bits.offset());
+
+        Pointer ptr = Memory.allocate(runtime, t.size());
+        ptr.putByte(8, (byte) 0x34);
+        assertEquals("incorrect nested struct field value", (byte) 0x34, t.b.c.s8.get(ptr));
+        t.b.c.s8.set(ptr, (byte) 0x56);
+        assertEquals("incorrect nested struct field value", (byte) 0x56, ptr.getByte(8));
+    }
+
     static final class LongPadding extends StructLayout {
 
         public final Signed8 s8 = new Signed8();
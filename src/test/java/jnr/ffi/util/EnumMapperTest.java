@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EnumMapperTest {
+    public enum Ordinal {
+        A, B, C
+    }
+
+    public enum Dense implements EnumMapper.IntegerEnum {
+        MINUS(-3), ONE(1), TEN(10);
+
+        private final int value;
+
+        Dense(int value) {
+            this.value = value;
+        }
+
+        public int intValue() {
+            return value;
+        }
+    }
+
+    public enum Sparse implements EnumMapper.IntegerEnum {
+        SMALL(-1), BIG(0x40000000), MIN(Integer.MIN_VALUE), MAX(Integer.MAX_VALUE), ZERO(0), FLAG(0x8000);
+
+        private final int value;
+
+        Sparse(int value) {
+            this.value = value;
+        }
+
+        public int intValue() {
+            return value;
+        }
+    }
+
+    public enum WithUnknown implements EnumMapper.IntegerEnum {
+        ON(1), OFF(2), __UNKNOWN_NATIVE_VALUE(-1);
+
+        private final int value;
+
+        WithUnknown(int value) {
+            this.value = value;
+        }
+
+        public int intValue() {
+            return value;
+        }
+    }
+
+    public enum Empty {
+    }
+
+    @Test public void ordinalValues() {
+        EnumMapper mapper = EnumMapper.getInstance(Ordinal.class);
+        for (Ordinal e : Ordinal.values()) {
+            assertEquals(e.ordinal(), mapper.intValue(e));
+            assertSame(e, mapper.valueOf(e.ordinal()));
+            assertSame(e, mapper.valueOf(Integer.valueOf(e.ordinal())));
+            assertSame(e, mapper.valueOf((Number) Long.valueOf(e.ordinal())));
+        }
+    }
+
+    @Test public void denseValues() {
+        EnumMapper mapper = EnumMapper.getInstance(Dense.class);
+        for (Dense e : Dense.values()) {
+            assertSame(e, mapper.valueOf(e.intValue()));
+        }
+    }
+
+    @Test public void sparseValues() {
+        EnumMapper mapper = EnumMapper.getInstance(Sparse.class);
+        for (Sparse e : Sparse.values()) {
+            assertSame(e, mapper.valueOf(e.intValue()));
+            assertEquals(e.intValue(), mapper.intValue(e));
+        }
+    }
+
+    @Test public void unknownValueDefault() {
+        EnumMapper mapper = EnumMapper.getInstance(WithUnknown.class);
+        assertSame(WithUnknown.ON, mapper.valueOf(1));
+        assertSame(WithUnknown.__UNKNOWN_NATIVE_VALUE, mapper.valueOf(3));
+        assertSame(WithUnknown.__UNKNOWN_NATIVE_VALUE, mapper.valueOf(Integer.MIN_VALUE));
+    }
+
+    @Test public void unknownValues() {
+        int[] unknown = { -4, 0, 2, 9, 11, Integer.MIN_VALUE, Integer.MAX_VALUE };
+        for (int value : unknown) {
+            try {
+                EnumMapper.getInstance(Dense.class).valueOf(value);
+                fail("no exception for " + value);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+
+        int[] sparse = { 1, 0x8001, 0x3fffffff, Integer.MIN_VALUE + 1 };
+        for (int value : sparse) {
+            try {
+                EnumMapper.getInstance(Sparse.class).valueOf(value);
+                fail("no exception for " + value);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyEnum() {
+        EnumMapper.getInstance(Empty.class).valueOf(0);
+    }
+}
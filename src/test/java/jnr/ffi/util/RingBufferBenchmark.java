@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.util;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+
+/**
+ * Measures the throughput of a {@link RingBuffer} with one consumer draining records published
+ * by a number of producer threads.
+ *
+ * <p>This is not run as part of the test suite; run it directly with
+ * {@code java jnr.ffi.util.RingBufferBenchmark [producers] [records]}.
+ */
+public class RingBufferBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        final int producers = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        final long records = args.length > 1 ? Long.parseLong(args[1]) : 10000000L;
+        final long[] sum = { 0 };
+        RingBuffer.Handler handler = new RingBuffer.Handler() {
+            public void onRecord(Pointer memory, long offset, int length) {
+                sum[0] += memory.getLongLong(offset);
+            }
+        };
+
+        for (int round = 0; round < 4; ++round) {
+            final RingBuffer ring = RingBuffer.allocate(Runtime.getSystemRuntime(), 4096, 8, producers > 1);
+            Thread[] threads = new Thread[producers];
+            for (int p = 0; p < producers; p++) {
+                threads[p] = new Thread() {
+                    public void run() {
+                        for (long i = 0; i < records / producers; i++) {
+                            while (!ring.offer(i)) {
+                                Thread.yield();
+                            }
+                        }
+                    }
+                };
+            }
+
+            long start = System.nanoTime();
+            for (Thread t : threads) {
+                t.start();
+            }
+            long received = 0, total = (records / producers) * producers;
+            while (received < total) {
+                int n = ring.drain(handler, 256);
+                if (n == 0) {
+                    Thread.yield();
+                }
+                received += n;
+            }
+            long elapsed = System.nanoTime() - start;
+            for (Thread t : threads) {
+                t.join();
+            }
+            // the first round is warm up
+            if (round > 0) {
+                System.out.printf("%d producer(s): %8.2f M records/s%n", producers, total * 1000.0 / elapsed);
+            }
+        }
+        System.out.println("(" + sum[0] + ")");
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.util;
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    @Test public void offerAndPoll() {
+        RingBuffer ring = RingBuffer.allocate(runtime, 4, 16, false);
+        assertTrue(ring.isEmpty());
+        assertTrue(ring.offer(new byte[] { 1, 2, 3 }, 0, 3));
+        assertEquals(1, ring.size());
+
+        byte[] dst = new byte[16];
+        assertEquals(3, ring.poll(dst, 0));
+        assertEquals(1, dst[0]);
+        assertEquals(3, dst[2]);
+        assertEquals(-1, ring.poll(dst, 0));
+    }
+
+    @Test public void fullAndWrapAround() {
+        RingBuffer ring = RingBuffer.allocate(runtime, 4, 8, false);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.offer(round * 4 + i));
+            }
+            assertFalse(ring.offer(-1L));
+            assertEquals(4, ring.size());
+
+            final long[] expected = { round * 4 };
+            assertEquals(4, ring.drain(new RingBuffer.Handler() {
+                public void onRecord(Pointer memory, long offset, int length) {
+                    assertEquals(8, length);
+                    assertEquals(expected[0]++, memory.getLongLong(offset));
+                }
+            }));
+            assertTrue(ring.isEmpty());
+        }
+    }
+
+    @Test public void drainLimit() {
+        RingBuffer ring = RingBuffer.allocate(runtime, 8, 8, false);
+        for (int i = 0; i < 5; i++) {
+            ring.offer(i);
+        }
+        RingBuffer.Handler ignore = new RingBuffer.Handler() {
+            public void onRecord(Pointer memory, long offset, int length) {}
+        };
+        assertEquals(2, ring.drain(ignore, 2));
+        assertEquals(3, ring.size());
+        assertEquals(3, ring.drain(ignore));
+        assertEquals(0, ring.drain(ignore));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void recordTooLarge() {
+        RingBuffer.allocate(runtime, 4, 8, false).offer(new byte[9], 0, 9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityNotPowerOfTwo() {
+        RingBuffer.sizeOf(3, 8);
+    }
+
+    @Test public void attach() {
+        Pointer memory = Memory.allocateDirect(runtime, (int) RingBuffer.sizeOf(8, 12));
+        RingBuffer producer = RingBuffer.create(memory, 8, 12, false);
+        assertEquals(RingBuffer.MAGIC, memory.getInt(RingBuffer.MAGIC_OFFSET));
+        assertEquals(16, memory.getInt(RingBuffer.SLOT_SIZE_OFFSET));
+        assertEquals(8L, memory.getLongLong(RingBuffer.CAPACITY_OFFSET));
+        producer.offer(42L);
+
+        RingBuffer consumer = RingBuffer.attach(memory, false);
+        assertEquals(8, consumer.capacity());
+        assertEquals(16, consumer.slotSize());
+        byte[] dst = new byte[16];
+        assertEquals(8, consumer.poll(dst, 0));
+        assertEquals(1L, memory.getLongLong(RingBuffer.HEAD_OFFSET));
+        assertEquals(1L, memory.getLongLong(RingBuffer.TAIL_OFFSET));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void attachUninitialized() {
+        RingBuffer.attach(Memory.allocateDirect(runtime, 1024, true), false);
+    }
+
+    private void stress(final RingBuffer ring, final int producers, final int count) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final long id = (long) p << 32;
+            threads[p] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        while (!ring.offer(id | i)) {
+                            if (isInterrupted()) {
+                                return;
+                            }
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+            threads[p].start();
+        }
+
+        final long[] next = new long[producers];
+        final int[] errors = { 0 };
+        RingBuffer.Handler handler = new RingBuffer.Handler() {
+            public void onRecord(Pointer memory, long offset, int length) {
+                long value = memory.getLongLong(offset);
+                int producer = (int) (value >>> 32);
+                // records from any one producer must arrive in order
+                if ((value & 0xffffffffL) != next[producer]++) {
+                    errors[0]++;
+                }
+            }
+        };
+
+        start.countDown();
+        long received = 0, total = (long) producers * count;
+        long deadline = System.currentTimeMillis() + 60000;
+        while (received < total && System.currentTimeMillis() < deadline) {
+            int n = ring.drain(handler, 64);
+            if (n == 0) {
+                Thread.yield();
+            }
+            received += n;
+        }
+        // if the consumer gave up, producers may be spinning on a full ring
+        for (Thread t : threads) {
+            t.interrupt();
+            t.join(10000);
+            assertFalse("producer did not stop", t.isAlive());
+        }
+
+        assertEquals(total, received);
+        assertEquals(0, errors[0]);
+        for (int p = 0; p < producers; p++) {
+            assertEquals(count, next[p]);
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test public void singleProducerStress() throws InterruptedException {
+        stress(RingBuffer.allocate(runtime, 256, 8, false), 1, 500000);
+    }
+
+    @Test public void multiProducerStress() throws InterruptedException {
+        stress(RingBuffer.allocate(runtime, 256, 8, true), 4, 200000);
+    }
+}